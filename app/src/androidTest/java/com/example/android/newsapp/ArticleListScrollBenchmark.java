@@ -0,0 +1,179 @@
+package com.example.android.newsapp;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scroll benchmarks of the article list on a device. The list of {@link ArticleActivity} is
+ * given a synthetic feed of 100, 1000 or 5000 articles and flung through while the
+ * {@link FrameMonitor} runs, and the test fails if too many frames miss their vsync, a frame
+ * freezes or too many binds are slow. Each result is logged as JSON to compare builds.
+ * Run them with: ./gradlew connectedDebugAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleListScrollBenchmark {
+
+    private static final String LOG_TAG = ArticleListScrollBenchmark.class.getSimpleName();
+
+    /**
+     * Share of the frames that may miss their vsync
+     **/
+    private static final double JANK_BUDGET = 0.05;
+
+    /**
+     * Share of the binds that may be slow
+     **/
+    private static final double SLOW_BIND_BUDGET = 0.01;
+
+    /**
+     * Number of flings down the list, and their velocity in pixels per second
+     **/
+    private static final int FLINGS = 20;
+    private static final int FLING_VELOCITY = 8000;
+
+    /**
+     * Longest time a fling may take to come to rest
+     **/
+    private static final long FLING_TIMEOUT_MILLIS = 5000;
+
+    private static final String[] SECTIONS = {"Politics", "World news", "Business", "Technology"};
+
+    @Rule
+    public final ActivityTestRule<ArticleActivity> mActivityRule = new ActivityTestRule<>(ArticleActivity.class);
+
+    private Instrumentation mInstrumentation;
+    private RecyclerView mRecyclerView;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mRecyclerView = (RecyclerView) mActivityRule.getActivity().findViewById(R.id.recycler_view);
+    }
+
+    @After
+    public void tearDown() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor.stop();
+                FrameMonitor.reset();
+            }
+        });
+    }
+
+    @Test
+    public void scroll100() {
+        scroll(100);
+    }
+
+    @Test
+    public void scroll1000() {
+        scroll(1000);
+    }
+
+    @Test
+    public void scroll5000() {
+        scroll(5000);
+    }
+
+    /**
+     * Flings through a feed of the size and checks the frames and binds against the budgets.
+     */
+    private void scroll(int size) {
+        final List<Article> articles = articles(size);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // A list of its own, so the feed loader cannot replace the synthetic rows.
+                ArticleActivity activity = mActivityRule.getActivity();
+                ArticleAdapter adapter = new ArticleAdapter(ArticleDateFormatter.getInstance(activity),
+                        ImageLoader.getInstance(activity), new ArticleAdapter.OnArticleClickListener() {
+                    @Override
+                    public void onArticleClick(Article article) {
+                    }
+                });
+                mRecyclerView.setAdapter(adapter);
+                adapter.submitList(articles);
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        assertEquals(size, mRecyclerView.getAdapter().getItemCount());
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor.reset();
+                FrameMonitor.start(mActivityRule.getActivity());
+            }
+        });
+        for (int i = 0; i < FLINGS; i++) {
+            fling(i % 4 == 3 ? -FLING_VELOCITY : FLING_VELOCITY);
+        }
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor.stop();
+            }
+        });
+
+        Log.i(LOG_TAG, "scroll/" + size + " " + FrameMonitor.exportJson());
+        int frames = FrameMonitor.getFrameCount();
+        assertTrue("no frames were measured", frames > 0);
+        assertTrue("jank " + FrameMonitor.getJankRatio() + " over budget: " + FrameMonitor.dump(),
+                FrameMonitor.getJankRatio() <= JANK_BUDGET);
+        assertEquals("frozen frames: " + FrameMonitor.dump(), 0, FrameMonitor.getFrozenFrameCount());
+        int binds = (int) FrameMonitor.BIND.getCount();
+        assertTrue("slow binds over budget: " + FrameMonitor.dump(),
+                FrameMonitor.getSlowBindCount() <= Math.max(1, binds * SLOW_BIND_BUDGET));
+    }
+
+    /**
+     * Flings the list and waits until it comes to rest.
+     */
+    private void fling(final int velocity) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRecyclerView.fling(0, velocity);
+            }
+        });
+        long deadline = SystemClock.uptimeMillis() + FLING_TIMEOUT_MILLIS;
+        while (mRecyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE
+                && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+        }
+    }
+
+    /**
+     * Returns synthetic articles without thumbnails, so the network does not affect the frames.
+     */
+    private static List<Article> articles(int count) {
+        List<Article> articles = new ArrayList<>(count);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            String id = "world/2018/jul/01/synthetic-article-" + i;
+            String[] authors = i % 3 == 0 ? null : new String[]{"Author " + (i % 17), "Author " + (i % 5)};
+            articles.add(new Article(id, "Synthetic headline number " + i + " that is long enough to wrap"
+                    + " onto a second line of the row", SECTIONS[i % SECTIONS.length], authors,
+                    time - i * 60000L, "https://www.theguardian.com/" + id, null));
+        }
+        return articles;
+    }
+}
@@ -1,49 +1,87 @@
 package com.example.android.newsapp;
 
+import java.util.Arrays;
 
 /**
  * An {@link Article} object contains information related to a single article.
+ * It is kept compact, because thousands of them can be held at once: section names are
+ * interned, the publication date is only kept as a parsed time, and the website URL is
+ * only kept if it cannot be derived from the Guardian id.
  */
 public class Article {
 
+    /**
+     * Website URL of every Guardian article, followed by its id
+     **/
+    private static final String GUARDIAN_WEB_URL = "https://www.theguardian.com/";
+
+    /**
+     * No authors, shared by all articles without any
+     **/
+    private static final String[] NO_AUTHORS = new String[0];
+
+    /**
+     * Guardian id of the news article
+     */
+    private final String id;
+
     /**
      * Title of the news article
      */
-    private String articleTitle;
+    private final String articleTitle;
 
     /**
-     * Title of the section
+     * Title of the section, interned because there are only a few sections
      */
-    private String sectionTitle;
+    private final String sectionTitle;
 
     /**
-     * Article author's name
+     * Names of the article's authors, in byline order
      */
-    private String authorName;
+    private final String[] authorNames;
 
     /**
-     * The article's publication date
+     * The article's publication time in milliseconds since the epoch, or 0 if unknown
      */
-    private String publicationDate;
+    private final long publicationTime;
 
     /**
-     * Website URL of the article
+     * Website URL of the article, or null if it is the Guardian URL of the id
      */
-    private String url;
+    private final String url;
+
+    /**
+     * URL of the article's thumbnail image, or null if it has none
+     */
+    private final String thumbnailUrl;
 
     /**
      * Constructs a new {@link Article} object.
+     * @param id              is the Guardian id of the news article
      * @param articleTitle    is the title of the news article
      * @param sectionTitle    is the title of the section
-     * @param authorName      is the article author's name
-     * @param publicationDate is the article's publication date
+     * @param authorNames     are the names of the article's authors, or null if there are none
+     * @param publicationTime is the article's publication time in milliseconds since the epoch
+     * @param url             is the website URL of the article
+     * @param thumbnailUrl    is the URL of the article's thumbnail image, or null
      */
-    public Article(String articleTitle, String sectionTitle, String authorName, String publicationDate, String url) {
+    public Article(String id, String articleTitle, String sectionTitle, String[] authorNames,
+                   long publicationTime, String url, String thumbnailUrl) {
+        this.id = id;
         this.articleTitle = articleTitle;
-        this.sectionTitle = sectionTitle;
-        this.authorName = authorName;
-        this.publicationDate = publicationDate;
-        this.url = url;
+        this.sectionTitle = sectionTitle == null ? null : sectionTitle.intern();
+        this.authorNames = authorNames == null || authorNames.length == 0 ? NO_AUTHORS : authorNames;
+        this.publicationTime = publicationTime;
+        this.url = url != null && id != null && url.length() == GUARDIAN_WEB_URL.length() + id.length()
+                && url.startsWith(GUARDIAN_WEB_URL) && url.endsWith(id) ? null : url;
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    /**
+     * Returns the Guardian id of the news article.
+     */
+    public String getId() {
+        return id;
     }
 
     /**
@@ -61,23 +99,62 @@ public class Article {
     }
 
     /**
-     * Returns the article author's name.
+     * Returns the number of authors of the article.
+     */
+    public int getAuthorCount() {
+        return authorNames.length;
+    }
+
+    /**
+     * Returns the name of the author at the index, in byline order.
+     */
+    public String getAuthorName(int index) {
+        return authorNames[index];
+    }
+
+    /**
+     * Returns the names of the authors separated by commas, or null if there are none.
+     * A single author's name is returned without allocating.
      */
-    public String getAuthorName() {
-        return authorName;
+    public String getAuthorNames() {
+        if (authorNames.length == 0) {
+            return null;
+        }
+        if (authorNames.length == 1) {
+            return authorNames[0];
+        }
+        StringBuilder names = new StringBuilder(authorNames[0]);
+        for (int i = 1; i < authorNames.length; i++) {
+            names.append(", ").append(authorNames[i]);
+        }
+        return names.toString();
     }
 
     /**
-     * Returns the article's publication date.
+     * Returns true if the other article has the same authors in the same order.
      */
-    public String getPublicationDate() {
-        return publicationDate;
+    public boolean hasSameAuthors(Article other) {
+        return Arrays.equals(authorNames, other.authorNames);
+    }
+
+    /**
+     * Returns the article's publication time in milliseconds since the epoch, or 0 if unknown.
+     */
+    public long getPublicationTime() {
+        return publicationTime;
     }
 
     /**
      * Returns the website URL to find more information about the article.
      */
     public String getUrl() {
-        return url;
+        return url != null || id == null ? url : GUARDIAN_WEB_URL + id;
+    }
+
+    /**
+     * Returns the URL of the article's thumbnail image, or null if it has none.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
     }
 }
@@ -1,27 +1,30 @@
 package com.example.android.newsapp;
 
 import android.app.Activity;
-import android.app.LoaderManager;
 import android.app.LoaderManager.LoaderCallbacks;
-import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.preference.PreferenceManager;
+import android.support.v4.os.TraceCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.Adapter;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
@@ -37,21 +40,95 @@ public class ArticleActivity extends AppCompatActivity
     private static final String LOG_TAG = ArticleActivity.class.getName();
 
     /**
-     * URL for news article data from the Guardian dataset
+     * Adapter for the list of articles
      **/
-    private static final String GUARDIAN_URL =
-            "https://content.guardianapis.com/search?section=politics&show-tags=contributor&api-key=1a988780-fcc2-43c7-bfea-6fadbdf0eb62";
+    private ArticleAdapter mArticleAdapter;
 
     /**
-     * Adapter for the list of articles
+     * Adapter for the search results, shown in place of the feed while searching
      **/
-    private ArticleAdapter mArticleAdapter;
+    private ArticleAdapter mSearchAdapter;
+
+    /**
+     * RecyclerView that shows the feed or the search results
+     **/
+    private RecyclerView mArticleRecyclerView;
+
+    /**
+     * Searches the stored articles as the user types
+     **/
+    private ArticleSearch mArticleSearch;
+
+    /**
+     * Whether the search results are shown instead of the feed
+     **/
+    private boolean mSearching;
+
+    /**
+     * Query of the search results that are shown
+     **/
+    private String mSearchQuery;
+
+    /**
+     * Key of the id of the selected saved feed in the saved instance state
+     **/
+    private static final String STATE_SELECTED_FEED = "selected_feed";
 
     /**
      * Static value for the article loader ID
      **/
     private static final int ARTICLE_LOADER_ID = 1;
 
+    /**
+     * Static value for the loader ID of the pages added to the window as the user scrolls
+     **/
+    private static final int ARTICLE_PAGE_LOADER_ID = 2;
+
+    /**
+     * Key of the page number in the page loader's arguments
+     **/
+    private static final String ARG_PAGE = "page";
+
+    /**
+     * Key of whether the page loader only reads the page from the store
+     **/
+    private static final String ARG_STORE_ONLY = "store_only";
+
+    /**
+     * Keys of the publication time and id of the article the page continues from, and of
+     * whether the page holds the articles newer than it
+     **/
+    private static final String ARG_CURSOR_TIME = "cursor_time";
+    private static final String ARG_CURSOR_ID = "cursor_id";
+    private static final String ARG_NEWER = "newer";
+
+    /**
+     * Number of rows kept attached but off screen, and number of rows kept in the recycled pool
+     **/
+    private static final int ROW_CACHE_SIZE = 4;
+    private static final int RECYCLED_ROW_POOL_SIZE = 12;
+
+    /**
+     * Number of rows, besides the visible ones, whose bodies are prefetched for the reader
+     **/
+    private static final int BODY_PREFETCH_COUNT = 5;
+
+    /**
+     * Number of articles at the top of a freshly loaded feed whose bodies are prefetched
+     **/
+    private static final int TOP_BODY_PREFETCH_COUNT = 10;
+
+    /**
+     * Interval at which the relative dates of the rows are refreshed, in milliseconds
+     **/
+    private static final long DATE_TICK_INTERVAL_MILLIS = 60 * 1000;
+
+    /**
+     * Longest time the first frame is held back for the stored feed, in milliseconds. The
+     * window background is shown meanwhile, so a blank list is not drawn first.
+     **/
+    private static final long FIRST_FRAME_BUDGET_MILLIS = 200;
+
     /**
      * TextView that is displayed when the list returns empty
      **/
@@ -67,28 +144,165 @@ public class ArticleActivity extends AppCompatActivity
      **/
     private SwipeRefreshLayout swipeRefreshLayout;
 
+    /**
+     * Whether there was a network connection when the feed was last loaded
+     **/
+    private boolean mIsConnected;
+
+    /**
+     * Pages articles into the adapter as the user scrolls
+     **/
+    private ArticlePager mArticlePager;
+
+    /**
+     * Prefetches the bodies of the rows near the top of the screen for the reader
+     **/
+    private BodyPrefetcher mBodyPrefetcher;
+
+    /**
+     * What the current network and the data saver allow to be fetched
+     **/
+    private NetworkPolicy.Profile mNetworkProfile = NetworkPolicy.current();
+
+    /**
+     * Formats the publication dates of the rows
+     **/
+    private ArticleDateFormatter mDateFormatter;
+
+    /**
+     * Time the feed started loading, from {@link PipelineMetrics#now()}, or 0 once its first rows are shown
+     **/
+    private long mLoadStartNanos;
+
+    /**
+     * Whether the frame monitor was switched on from the debug menu. Kept across activities,
+     * and the monitor runs while one is started.
+     **/
+    private static boolean sMonitorFrames;
+
+    /**
+     * Records the markers of this start of the activity
+     **/
+    private StartupTracer mStartupTracer;
+
+    /**
+     * Whether the first frame is being held back for the stored feed
+     **/
+    private boolean mHoldingFirstFrame;
+
+    /**
+     * Inserts the articles announced by the live update stream at the top of the feed
+     **/
+    private LiveUpdates mLiveUpdates;
+
+    /**
+     * Pill that tells how many new stories were inserted above the visible rows
+     **/
+    private TextView mNewStoriesPill;
+
+    /**
+     * Number of new stories inserted since the user last saw the top of the list
+     **/
+    private int mNewStoryCount;
+
+    /**
+     * Tabs of the main feed and of the saved feeds
+     **/
+    private RecyclerView mFeedTabs;
+    private FeedTabAdapter mFeedTabAdapter;
+
+    /**
+     * Adapter for the articles of the selected saved feed
+     **/
+    private ArticleAdapter mTopicAdapter;
+
+    /**
+     * Saved feed of the selected tab, or null while the main feed is shown
+     **/
+    private SavedFeed mSelectedFeed;
+
+    /**
+     * Fetches the saved feeds of all tabs
+     **/
+    private FeedScheduler mFeedScheduler;
+
+    /**
+     * Shows the articles of the selected saved feed as they arrive
+     **/
+    private final FeedScheduler.Listener mFeedListener = new FeedScheduler.Listener() {
+        @Override
+        public void onFeedLoaded(SavedFeed feed, List<Article> articles) {
+            if (mSelectedFeed == null || !mSelectedFeed.getId().equals(feed.getId())) {
+                return;
+            }
+            if (articles != null) {
+                mTopicAdapter.submitList(articles);
+            }
+            if (!mSearching) {
+                swipeRefreshLayout.setRefreshing(mFeedScheduler.isLoading(feed));
+            }
+            updateEmptyState();
+        }
+    };
+
+    /**
+     * Handler that runs the date ticker on the main thread
+     **/
+    private final Handler mTickHandler = new Handler();
+
+    /**
+     * Moves the relative dates forward once a minute, instead of on every bind
+     **/
+    private final Runnable mDateTicker = new Runnable() {
+        @Override
+        public void run() {
+            mDateFormatter.tick();
+            RecyclerView.Adapter adapter = mArticleRecyclerView.getAdapter();
+            adapter.notifyItemRangeChanged(0, adapter.getItemCount(), ArticleAdapter.PAYLOAD_DATE);
+            mTickHandler.postDelayed(this, DATE_TICK_INTERVAL_MILLIS);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        TraceCompat.beginSection("ArticleActivity.onCreate");
+        try {
+            mStartupTracer = StartupTracer.begin(savedInstanceState != null);
+            if (mStartupTracer.isCold()) {
+                // Read the stored feed while the views are created. Only a launch gets here,
+                // so a process started for the background sync does not read it.
+                StartupFeed.preload(this, AsyncTask.THREAD_POOL_EXECUTOR);
+            }
+            createViews();
+            if (savedInstanceState != null) {
+                restoreSelectedFeed(savedInstanceState.getString(STATE_SELECTED_FEED));
+            }
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * Sets up the list and starts loading the feed.
+     */
+    private void createViews() {
         setContentView(R.layout.article_activity);
 
-        // Find a reference to the {@link SwipeRefreshLayout} and {@link ListView} in the layout.
+        // Find a reference to the {@link SwipeRefreshLayout} and {@link RecyclerView} in the layout.
         swipeRefreshLayout = (SwipeRefreshLayout) findViewById(R.id.swipe_refresh);
-        ListView articleListView = (ListView) findViewById(R.id.list_view);
-
-        // Create a new adapter that takes input from {@link
-        mArticleAdapter = new ArticleAdapter(this, new ArrayList<Article>());
-
-        // Set the adapter on the {@link ListView} to populate user interface.
-        articleListView.setAdapter(mArticleAdapter);
+        mArticleRecyclerView = (RecyclerView) findViewById(R.id.recycler_view);
 
-        // Set an OnItemClickListener() on the ListView, which sends an implicit intent
-        // to a web browser and opens the selected article.
-        articleListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Create new adapters for the feed and the search results, which open the article
+        // in the reader when a row is clicked.
+        ArticleAdapter.OnArticleClickListener openArticle = new ArticleAdapter.OnArticleClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                // Find the current article that was clicked.
-                Article currentArticle = mArticleAdapter.getItem(position);
+            public void onArticleClick(Article currentArticle) {
+                // Articles without a Guardian id have no body to read, so they open in a web browser.
+                if (currentArticle.getId() != null) {
+                    startActivity(ReaderActivity.newIntent(ArticleActivity.this, currentArticle));
+                    return;
+                }
 
                 // Convert the URL String into a URI object.
                 Uri articleUri = Uri.parse(currentArticle.getUrl());
@@ -99,6 +313,79 @@ public class ArticleActivity extends AppCompatActivity
                 // Send the intent to a web browser.
                 startActivity(websiteIntent);
             }
+        };
+        mDateFormatter = ArticleDateFormatter.getInstance(this);
+        ImageLoader imageLoader = ImageLoader.getInstance(this);
+        mBodyPrefetcher = BodyPrefetcher.getInstance(this);
+        mArticleAdapter = new ArticleAdapter(mDateFormatter, imageLoader, openArticle);
+        mSearchAdapter = new ArticleAdapter(mDateFormatter, imageLoader, openArticle);
+        mTopicAdapter = new ArticleAdapter(mDateFormatter, imageLoader, openArticle);
+
+        // Show the results of the local search as they arrive.
+        mArticleSearch = new ArticleSearch(ArticleStore.getInstance(this), new ArticleSearch.Listener() {
+            @Override
+            public void onSearchResults(String query, List<Article> results) {
+                mSearchQuery = query;
+                mSearchAdapter.submitList(results);
+                updateEmptyState();
+            }
+        });
+
+        // Lay the rows out in a vertical list, and lay out the rows below the screen while
+        // the main thread is idle, so flinging through long lists stays smooth.
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        layoutManager.setItemPrefetchEnabled(true);
+        mArticleRecyclerView.setLayoutManager(layoutManager);
+        mArticleRecyclerView.setHasFixedSize(true);
+
+        // Keep enough recycled rows for about two screens, so rows are rebound, not inflated.
+        mArticleRecyclerView.setItemViewCacheSize(ROW_CACHE_SIZE);
+        mArticleRecyclerView.getRecycledViewPool().setMaxRecycledViews(0, RECYCLED_ROW_POOL_SIZE);
+
+        // Set the adapter on the {@link RecyclerView} to populate user interface.
+        mArticleRecyclerView.setAdapter(mArticleAdapter);
+
+        // Set an OnScrollListener() on the RecyclerView, which loads the next page one screen
+        // before the end of the list is reached, or the previous page near the top.
+        mArticlePager = new ArticlePager(mArticleAdapter);
+        mArticleRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Prefetch the bodies of the rows the user stopped at.
+                if (newState == RecyclerView.SCROLL_STATE_IDLE && mNetworkProfile.prefetchesBodies()) {
+                    int firstVisibleItem = layoutManager.findFirstVisibleItemPosition();
+                    int visibleItemCount = layoutManager.getChildCount();
+                    mBodyPrefetcher.prefetch(((ArticleAdapter) recyclerView.getAdapter())
+                            .getArticles(firstVisibleItem, visibleItemCount + BODY_PREFETCH_COUNT));
+                }
+            }
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // Load the thumbnails of the rows just below the screen before they are reached.
+                if (dy > 0 && mNetworkProfile.getThumbnailPrefetchCount() > 0) {
+                    ((ArticleAdapter) recyclerView.getAdapter()).prefetchThumbnails(
+                            layoutManager.findLastVisibleItemPosition() + 1,
+                            mNetworkProfile.getThumbnailPrefetchCount());
+                }
+
+                // Search results and saved feeds are not paged.
+                if (mSearching || mSelectedFeed != null) {
+                    return;
+                }
+                int firstVisibleItem = layoutManager.findFirstVisibleItemPosition();
+
+                // The new stories have been seen once the top of the list is reached.
+                if (firstVisibleItem == 0) {
+                    hideNewStoriesPill();
+                }
+                int visibleItemCount = layoutManager.getChildCount();
+                int page = mArticlePager.getPageToLoad(firstVisibleItem, visibleItemCount,
+                        layoutManager.getItemCount());
+                if (page != 0) {
+                    loadPage(page);
+                }
+            }
         });
 
         // Set an onRefreshListener(), which refreshes the data when the user
@@ -106,59 +393,560 @@ public class ArticleActivity extends AppCompatActivity
         swipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
             public void onRefresh() {
-                // Calls checkNetwork() and sets boolean to false when finished.
-                swipeRefreshLayout.setRefreshing(true);
-                checkNetwork();
-                (new Handler()).postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        swipeRefreshLayout.setRefreshing(false);
-                    }
-                }, 3000);
+                refresh();
+            }
+        });
+
+        // Insert the new stories announced by the live update stream at the top of the feed.
+        // Tapping the pill scrolls up to them.
+        mNewStoriesPill = (TextView) findViewById(R.id.new_stories_pill);
+        mNewStoriesPill.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mArticleRecyclerView.smoothScrollToPosition(0);
+                hideNewStoriesPill();
+            }
+        });
+        mLiveUpdates = new LiveUpdates(this, new LiveUpdates.Listener() {
+            @Override
+            public void onNewArticles(List<Article> articles) {
+                showNewStories(articles);
             }
         });
 
-        // Displays a blank screen when app is started.
+        // Displays a blank screen when app is started, and shows the EmptyState View
+        // whenever the list has no rows.
         mEmptyState = (TextView) findViewById(R.id.empty_view);
-        articleListView.setEmptyView(mEmptyState);
+        RecyclerView.AdapterDataObserver emptyStateObserver = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
 
-        // Calls method that handles network connectivity.
-        checkNetwork();
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyState();
+            }
+        };
+        mArticleAdapter.registerAdapterDataObserver(emptyStateObserver);
+        mSearchAdapter.registerAdapterDataObserver(emptyStateObserver);
+        mTopicAdapter.registerAdapterDataObserver(emptyStateObserver);
+
+        // Show a tab for each saved feed above the list. The saved feeds are fetched through
+        // one scheduler, the visible one first.
+        mFeedScheduler = FeedScheduler.getInstance(this);
+        mFeedTabs = (RecyclerView) findViewById(R.id.feed_tabs);
+        mFeedTabs.setLayoutManager(new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false));
+        mFeedTabAdapter = new FeedTabAdapter(getString(R.string.top_stories), new FeedTabAdapter.OnTabClickListener() {
+            @Override
+            public void onTabClick(SavedFeed feed) {
+                selectFeed(feed);
+            }
+
+            @Override
+            public void onTabLongClick(SavedFeed feed) {
+                confirmUnfollow(feed);
+            }
+        });
+        mFeedTabs.setAdapter(mFeedTabAdapter);
+        updateFeedTabs();
+
+        // Starts loading the feed. The connectivity is checked by the loader, off the main thread.
+        mLoadStartNanos = PipelineMetrics.now();
+        getLoaderManager().initLoader(ARTICLE_LOADER_ID, null, this);
+
+        // Shows the refresh indicator again if a load was still running, e.g. after a rotation.
+        swipeRefreshLayout.setRefreshing(isFeedLoading());
+
+        // Shows the stored feed in the first frame, and records when the first rows are drawn.
+        showStartupFeed();
+        watchFirstContent();
     }
 
     /**
-     * Method that handles connecting to a network and initializing the Loader.
+     * Holds the first frame back until the stored feed read while the process started is in
+     * the list, or until the budget is used up, so the feed is drawn instead of a blank list.
      */
-    private void checkNetwork() {
-        // Get a reference to the ConnectivityManager and checks the state of network connectivity.
-        ConnectivityManager connectManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+    private void showStartupFeed() {
+        final View content = findViewById(android.R.id.content);
+
+        // The snapshot of the last feed is mapped rather than read, so it is restored here,
+        // before the first frame, without holding the frame back.
+        if (mArticleAdapter.getItemCount() == 0 && restoreSnapshot()) {
+            StartupFeed.discard();
+            mStartupTracer.watchFirstFrame(content);
+            return;
+        }
+        if (!StartupFeed.isPending() && !mStartupTracer.isCold()) {
+            mStartupTracer.watchFirstFrame(content);
+            return;
+        }
+        mHoldingFirstFrame = true;
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                List<Article> stored = StartupFeed.poll();
+                if (stored != null && mArticleAdapter.getItemCount() == 0) {
+                    // The rows are laid out in the next traversal, so this frame is skipped.
+                    mArticlePager.reset(stored);
+                    mProgressBar = (ProgressBar) findViewById(R.id.loading_indicator);
+                    mProgressBar.setVisibility(View.GONE);
+                    return false;
+                }
+                if (StartupFeed.isPending() && mStartupTracer.getElapsedMillis() < FIRST_FRAME_BUDGET_MILLIS) {
+                    return false;
+                }
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                mHoldingFirstFrame = false;
+                mStartupTracer.onFirstFrame();
+                return true;
+            }
+        });
+    }
 
-        // Get details on the currently active default network.
-        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+    /**
+     * Shows the snapshot of the feed written by the last load. Returns false if there is none.
+     */
+    private boolean restoreSnapshot() {
+        long start = PipelineMetrics.now();
+        FeedSnapshot snapshot = FeedSnapshot.open(FeedSnapshot.getFile(this));
+        if (snapshot == null || snapshot.size() == 0) {
+            return false;
+        }
+        mArticlePager.restore(snapshot.asList());
+        mProgressBar = (ProgressBar) findViewById(R.id.loading_indicator);
+        mProgressBar.setVisibility(View.GONE);
+        PipelineMetrics.SNAPSHOT_RESTORE.record((PipelineMetrics.now() - start) / 1000);
+        return true;
+    }
 
-        // If there is a connection, retrieve data.
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+    /**
+     * Records the first frame that draws article rows.
+     */
+    private void watchFirstContent() {
+        mArticleRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (!mHoldingFirstFrame && mArticleRecyclerView.getChildCount() > 0
+                        && mArticleAdapter.getItemCount() > 0) {
+                    mArticleRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    mStartupTracer.onFirstContent(ArticleActivity.this);
+                }
+                return true;
+            }
+        });
+    }
 
-            // Initialize the loader and pass this activity, which contains the LoaderCallbacks interface.
-            loaderManager.initLoader(ARTICLE_LOADER_ID, null, this);
+    /**
+     * Adds the search to the app bar.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.article_menu, menu);
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+
+        // Search as the user types, instead of waiting for the query to be submitted.
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mArticleSearch.setQuery(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mArticleSearch.setQuery(newText);
+                return true;
+            }
+        });
+
+        // The frame monitor is a debugging aid.
+        MenuItem frameMonitorItem = menu.findItem(R.id.action_frame_monitor);
+        frameMonitorItem.setVisible(BuildConfig.DEBUG);
+        frameMonitorItem.setChecked(sMonitorFrames);
+        menu.findItem(R.id.action_data_saver).setChecked(NetworkPolicy.isDataSaverEnabled());
+
+        // Show the search results in place of the feed while the search is open.
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                stopSearch();
+                return true;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Switches the data saver, and the frame monitor of the debug menu, on and off. The frame
+     * monitor's summary is logged when it is switched off.
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_follow_topic) {
+            showFollowTopicDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_data_saver) {
+            boolean dataSaver = !item.isChecked();
+            item.setChecked(dataSaver);
+            applyNetworkProfile(NetworkPolicy.setDataSaverEnabled(this, dataSaver));
+            return true;
+        }
+        if (item.getItemId() == R.id.action_frame_monitor) {
+            sMonitorFrames = !sMonitorFrames;
+            item.setChecked(sMonitorFrames);
+            if (sMonitorFrames) {
+                FrameMonitor.reset();
+                FrameMonitor.start(this);
+            } else {
+                FrameMonitor.stop();
+                Log.i(LOG_TAG, FrameMonitor.dump());
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Replaces the feed with the search results.
+     */
+    private void startSearch() {
+        mSearching = true;
+        mSearchQuery = null;
+        mNewStoriesPill.setVisibility(View.GONE);
+        mArticleRecyclerView.setAdapter(mSearchAdapter);
+        swipeRefreshLayout.setEnabled(false);
+        updateEmptyState();
+    }
+
+    /**
+     * Shows the feed again, at the position it was left at.
+     */
+    private void stopSearch() {
+        mSearching = false;
+        mArticleSearch.cancel();
+        mSearchAdapter.submitList(null);
+        swipeRefreshLayout.setEnabled(true);
+        mEmptyState.setText(mIsConnected ? R.string.no_articles : R.string.no_internet_connection);
+        showSelectedFeed();
+    }
+
+    /**
+     * Shows the tabs of the saved feeds, or no tabs if no topic is followed.
+     */
+    private void updateFeedTabs() {
+        List<SavedFeed> feeds = SavedFeed.loadAll(this);
+        mFeedTabAdapter.setFeeds(feeds);
+        mFeedTabs.setVisibility(feeds.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * Selects the tab of the saved feed with the id, e.g. after a rotation.
+     */
+    private void restoreSelectedFeed(String feedId) {
+        for (SavedFeed feed : mFeedTabAdapter.getFeeds()) {
+            if (feed.getId().equals(feedId)) {
+                selectFeed(feed);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Shows the articles of the saved feed, or the main feed if it is null, and fetches the
+     * saved feed before the others unless it is fresh.
+     */
+    private void selectFeed(SavedFeed feed) {
+        mSelectedFeed = feed;
+        mFeedTabAdapter.setSelectedFeed(feed);
+        mFeedScheduler.setVisibleFeed(feed);
+        if (feed != null) {
+            // Clear the rows of the last saved feed first, so they are not diffed against these.
+            mTopicAdapter.submitList(null);
+            mTopicAdapter.submitList(mFeedScheduler.getArticles(feed));
+        }
+        // The search results stay in place until the search is closed.
+        if (!mSearching) {
+            showSelectedFeed();
+        }
+    }
+
+    /**
+     * Puts the adapter of the selected tab in the list.
+     */
+    private void showSelectedFeed() {
+        if (mSelectedFeed == null) {
+            mArticleRecyclerView.setAdapter(mArticleAdapter);
+            swipeRefreshLayout.setRefreshing(isFeedLoading());
+            mNewStoriesPill.setVisibility(mNewStoryCount > 0 ? View.VISIBLE : View.GONE);
         } else {
-            // If there is no connection, hide ProgressBar.
-            mProgressBar = (ProgressBar) findViewById(R.id.loading_indicator);
-            mProgressBar.setVisibility(View.GONE);
+            mArticleRecyclerView.setAdapter(mTopicAdapter);
+            swipeRefreshLayout.setRefreshing(mFeedScheduler.isLoading(mSelectedFeed));
+            mNewStoriesPill.setVisibility(View.GONE);
+        }
+        updateEmptyState();
+    }
+
+    /**
+     * Asks for a topic, search query or tag to follow, and adds a tab for it.
+     */
+    private void showFollowTopicDialog() {
+        final EditText input = new EditText(this);
+        input.setHint(R.string.follow_topic_hint);
+        input.setSingleLine(true);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.follow_topic_title)
+                .setView(input)
+                .setPositiveButton(R.string.follow_topic_button, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        SavedFeed feed = SavedFeed.fromInput(input.getText().toString());
+                        if (feed == null) {
+                            return;
+                        }
+                        SavedFeed.add(ArticleActivity.this, feed);
+                        updateFeedTabs();
+                        selectFeed(feed);
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Asks whether to stop following the saved feed, and removes its tab if so.
+     */
+    private void confirmUnfollow(final SavedFeed feed) {
+        new AlertDialog.Builder(this)
+                .setMessage(getString(R.string.unfollow_topic_message, feed.getTitle()))
+                .setPositiveButton(R.string.unfollow_topic_button, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        SavedFeed.remove(ArticleActivity.this, feed);
+                        mFeedScheduler.forget(feed);
+                        if (mSelectedFeed != null && mSelectedFeed.getId().equals(feed.getId())) {
+                            selectFeed(null);
+                        }
+                        updateFeedTabs();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Keeps the selected tab across a configuration change.
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mSelectedFeed != null) {
+            outState.putString(STATE_SELECTED_FEED, mSelectedFeed.getId());
+        }
+    }
 
-            // And display the EmptyState View with a "No internet connection." TextView.
-            mEmptyState.setText(R.string.no_internet_connection);
+    /**
+     * Merges the new stories into the top of the feed, and tells the user about them unless
+     * the top of the list is already on screen.
+     */
+    private void showNewStories(List<Article> articles) {
+        int added = mArticlePager.insertAtTop(articles);
+        if (added == 0) {
+            return;
+        }
+        boolean mainFeedShown = !mSearching && mSelectedFeed == null;
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mArticleRecyclerView.getLayoutManager();
+        if (mainFeedShown && layoutManager.findFirstVisibleItemPosition() <= 0) {
+            // The rows are inserted above the one shown, so keep the newest in view.
+            mArticleRecyclerView.scrollToPosition(0);
+            return;
+        }
+        mNewStoryCount += added;
+        mNewStoriesPill.setText(getResources().getQuantityString(R.plurals.new_stories,
+                mNewStoryCount, mNewStoryCount));
+        if (mainFeedShown) {
+            mNewStoriesPill.setVisibility(View.VISIBLE);
         }
     }
 
     /**
-     * Handles creating the Loader and passes in the Guardian URL to {@link ArticleLoader}.
+     * Hides the pill once the new stories have been seen.
+     */
+    private void hideNewStoriesPill() {
+        mNewStoryCount = 0;
+        mNewStoriesPill.setVisibility(View.GONE);
+    }
+
+    /**
+     * Starts refreshing the relative dates and listening for new stories while the activity
+     * is visible.
      */
     @Override
-    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
-        return new ArticleLoader(this, GUARDIAN_URL);
+    protected void onStart() {
+        super.onStart();
+        mTickHandler.postDelayed(mDateTicker, DATE_TICK_INTERVAL_MILLIS);
+        mLiveUpdates.start();
+        applyNetworkProfile(NetworkPolicy.current());
+
+        // Bring the saved feeds up to date, the visible one first.
+        mFeedScheduler.addListener(mFeedListener);
+        mFeedScheduler.requestAll(mFeedTabAdapter.getFeeds());
+        if (mSelectedFeed != null) {
+            // Articles may have arrived while the activity was stopped.
+            List<Article> articles = mFeedScheduler.getArticles(mSelectedFeed);
+            if (articles != null) {
+                mTopicAdapter.submitList(articles);
+            }
+            swipeRefreshLayout.setRefreshing(mFeedScheduler.isLoading(mSelectedFeed));
+        }
+        if (sMonitorFrames) {
+            FrameMonitor.start(this);
+        }
+    }
+
+    /**
+     * Stops refreshing the relative dates and listening for new stories.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mTickHandler.removeCallbacks(mDateTicker);
+        mLiveUpdates.stop();
+        mFeedScheduler.removeListener(mFeedListener);
+
+        // The monitor watches this activity's window, so it stops with it.
+        if (FrameMonitor.isEnabled()) {
+            FrameMonitor.stop();
+            Log.i(LOG_TAG, FrameMonitor.dump());
+        }
+
+        // Writes the load pipeline metrics, cache savings, connection reuse and request outcomes
+        // to the log in debug builds.
+        if (BuildConfig.DEBUG) {
+            PipelineMetrics.logDump();
+            HttpCache cache = HttpCache.getInstalled();
+            if (cache != null) {
+                Log.i(LOG_TAG, cache.toString());
+            }
+            Log.i(LOG_TAG, HttpConnections.dump());
+            Log.i(LOG_TAG, QueryUtils.getRequestExecutor().dump());
+            Log.i(LOG_TAG, NetworkPolicy.dump());
+        }
+    }
+
+    /**
+     * Shows or hides the thumbnails of every list, and sets how far ahead the rows are
+     * prefetched, for what the network and the data saver allow.
+     */
+    private void applyNetworkProfile(NetworkPolicy.Profile profile) {
+        mNetworkProfile = profile;
+        mArticleAdapter.setThumbnailsEnabled(profile.showsThumbnails());
+        mSearchAdapter.setThumbnailsEnabled(profile.showsThumbnails());
+        mTopicAdapter.setThumbnailsEnabled(profile.showsThumbnails());
+    }
+
+    /**
+     * Shows the EmptyState View only when the list has no rows, or when a search found nothing.
+     */
+    private void updateEmptyState() {
+        if (mSearching) {
+            mEmptyState.setText(R.string.no_search_results);
+            boolean noResults = mSearchAdapter.getItemCount() == 0 && !TextUtils.isEmpty(mSearchQuery);
+            mEmptyState.setVisibility(noResults ? View.VISIBLE : View.GONE);
+            return;
+        }
+        if (mSelectedFeed != null) {
+            // A saved feed that is still loading is not empty yet.
+            boolean empty = mTopicAdapter.getItemCount() == 0 && !mFeedScheduler.isLoading(mSelectedFeed);
+            mEmptyState.setVisibility(empty ? View.VISIBLE : View.GONE);
+            return;
+        }
+        mEmptyState.setVisibility(mArticleAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Reloads the feed when the user pulls to refresh. A pull while the feed is loading joins
+     * that load instead of starting another one.
+     */
+    private void refresh() {
+        if (mSelectedFeed != null) {
+            mFeedScheduler.request(mSelectedFeed, true);
+            swipeRefreshLayout.setRefreshing(mFeedScheduler.isLoading(mSelectedFeed));
+            return;
+        }
+        if (isFeedLoading()) {
+            return;
+        }
+
+        // Restarting the loader cancels a load of the previous loader that is still running.
+        getLoaderManager().restartLoader(ARTICLE_LOADER_ID, null, this);
+    }
+
+    /**
+     * Returns true if the feed loader is running.
+     */
+    private boolean isFeedLoading() {
+        Loader<List<Article>> loader = getLoaderManager().getLoader(ARTICLE_LOADER_ID);
+        return loader instanceof ArticleLoader && ((ArticleLoader) loader).isLoading();
+    }
+
+    /**
+     * Starts loading a page of the feed as the user scrolls. The page continues from the
+     * article at the edge of the window, like the first page does from the top of the store.
+     * A page that was in the window before was stored when it was fetched, so it is only
+     * read back from the store.
+     */
+    private void loadPage(int page) {
+        Article cursor = mArticlePager.getCursor(page);
+        if (cursor == null) {
+            return;
+        }
+        mArticlePager.setLoading(page);
+
+        Bundle args = new Bundle();
+        args.putInt(ARG_PAGE, page);
+        args.putLong(ARG_CURSOR_TIME, cursor.getPublicationTime());
+        args.putString(ARG_CURSOR_ID, cursor.getId());
+        args.putBoolean(ARG_NEWER, mArticlePager.isBeforeWindow(page));
+        args.putBoolean(ARG_STORE_ONLY, mArticlePager.wasLoaded(page));
+        getLoaderManager().restartLoader(ARTICLE_PAGE_LOADER_ID, args, this);
+    }
+
+    /**
+     * Handles creating the Loader and passes in the Guardian URLs of the page to {@link ArticleLoader}.
+     * The first page is sized for the current network; the pages loaded while scrolling keep
+     * its size, and ask each section for the articles published before the one they continue from.
+     */
+    @Override
+    public Loader<List<Article>> onCreateLoader(int id, Bundle bundle) {
+        int sectionPageSize = NetworkPolicy.current().getPageSize();
+        if (bundle == null) {
+            return new ArticleLoader(this, GuardianFeed.buildPageUrls(1, sectionPageSize), sectionPageSize);
+        }
+
+        Loader<List<Article>> feedLoader = getLoaderManager().getLoader(ARTICLE_LOADER_ID);
+        if (feedLoader instanceof ArticleLoader) {
+            sectionPageSize = ((ArticleLoader) feedLoader).getSectionPageSize();
+        }
+        long cursorTime = bundle.getLong(ARG_CURSOR_TIME);
+        return new ArticleLoader(this, GuardianFeed.buildOlderPageUrls(cursorTime, sectionPageSize),
+                bundle.getInt(ARG_PAGE), sectionPageSize, cursorTime, bundle.getString(ARG_CURSOR_ID),
+                bundle.getBoolean(ARG_NEWER), bundle.getBoolean(ARG_STORE_ONLY));
     }
 
     /**
@@ -166,21 +954,49 @@ public class ArticleActivity extends AppCompatActivity
      */
     @Override
     public void onLoadFinished(Loader<List<Article>> loader, List<Article> articles) {
+        // The frames right after the rows change are measured on their own, if the monitor runs.
+        FrameMonitor.onDataSwapped();
 
-        // Hides ProgressBar when data is loaded
+        // Pages after the first one are added to the pager's window.
+        if (loader.getId() == ARTICLE_PAGE_LOADER_ID) {
+            mArticlePager.onPageLoaded(((ArticleLoader) loader).getPage(), articles);
+            return;
+        }
+
+        // The stored feed of the startup is no longer needed once the loader has delivered.
+        StartupFeed.discard();
+
+        // Hides ProgressBar when data is loaded, and the refresh indicator once the load is over.
         mProgressBar = (ProgressBar) findViewById(R.id.loading_indicator);
         mProgressBar.setVisibility(View.GONE);
+        if (mSelectedFeed == null) {
+            swipeRefreshLayout.setRefreshing(((ArticleLoader) loader).isLoading());
+        }
 
-        // Sets the EmptyState TextView to display "No articles found."
-        mEmptyState.setText(R.string.no_articles);
+        // Sets the EmptyState TextView to display "No articles found.", or
+        // "No internet connection." if nothing was stored and there is no network.
+        mIsConnected = ((ArticleLoader) loader).isConnected();
+        if (!mSearching) {
+            mEmptyState.setText(mIsConnected ? R.string.no_articles : R.string.no_internet_connection);
+        }
 
-        // Clears the adapter of previous data
-        mArticleAdapter.clear();
+        // Records how long it took until the first rows could be shown.
+        if (mLoadStartNanos != 0 && articles != null && !articles.isEmpty()) {
+            PipelineMetrics.recordSince(PipelineMetrics.TIME_TO_FIRST_ROW, mLoadStartNanos);
+            mLoadStartNanos = 0;
+        }
+
+        // Replaces the pages in the adapter with the first page. Only changed rows are updated.
+        // The first page holds the new stories, so the pill is no longer needed.
+        mArticlePager.reset(articles);
+        hideNewStoriesPill();
 
-        // If there is a valid list of {@link Article}s, add them to the adapter
-        // and update the ListView.
-        if (articles != null && !articles.isEmpty()) {
-            mArticleAdapter.addAll(articles);
+        // The load measured the network, which may now allow more or less.
+        applyNetworkProfile(NetworkPolicy.current());
+
+        // Once the feed is fresh, prefetch the bodies of the articles at the top of it.
+        if (!((ArticleLoader) loader).isLoading() && articles != null && mNetworkProfile.prefetchesBodies()) {
+            mBodyPrefetcher.prefetch(articles.subList(0, Math.min(articles.size(), TOP_BODY_PREFETCH_COUNT)));
         }
     }
 
@@ -191,6 +1007,9 @@ public class ArticleActivity extends AppCompatActivity
     @Override
     public void onLoaderReset(Loader<List<Article>> loader) {
         Log.i(LOG_TAG, "onLoaderReset() called");
-        mArticleAdapter.clear();
+        if (loader.getId() == ARTICLE_LOADER_ID) {
+            mArticlePager.reset(null);
+            swipeRefreshLayout.setRefreshing(false);
+        }
     }
 }
\ No newline at end of file
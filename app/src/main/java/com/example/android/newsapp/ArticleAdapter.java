@@ -1,85 +1,280 @@
 package com.example.android.newsapp;
 
-import android.app.Activity;
-import android.content.Context;
-import android.support.v4.content.ContextCompat;
+import android.content.res.Resources;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * An {@link ArticleAdapter} knows how to create a list item layout for each article
  * in the data source (a list of {@link Article} objects).
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * New lists are diffed against the current one off the main thread, so only the rows
+ * that changed are rebound.
  */
-public class ArticleAdapter extends ArrayAdapter<Article> {
+public class ArticleAdapter extends ListAdapter<Article, ArticleAdapter.ArticleViewHolder> {
 
-    public ArticleAdapter(Activity context, ArrayList<Article> articles) {
-        super(context, 0, articles);
-    }
+    /**
+     * Decides which rows of two lists are the same article, and whether they changed.
+     */
+    private static final DiffUtil.ItemCallback<Article> DIFF_CALLBACK = new DiffUtil.ItemCallback<Article>() {
+        @Override
+        public boolean areItemsTheSame(Article oldArticle, Article newArticle) {
+            return TextUtils.equals(stableKey(oldArticle), stableKey(newArticle));
+        }
+
+        @Override
+        public boolean areContentsTheSame(Article oldArticle, Article newArticle) {
+            return TextUtils.equals(oldArticle.getArticleTitle(), newArticle.getArticleTitle())
+                    && TextUtils.equals(oldArticle.getSectionTitle(), newArticle.getSectionTitle())
+                    && oldArticle.hasSameAuthors(newArticle)
+                    && TextUtils.equals(oldArticle.getThumbnailUrl(), newArticle.getThumbnailUrl())
+                    && oldArticle.getPublicationTime() == newArticle.getPublicationTime();
+        }
+    };
 
     /**
-     * To hold ArrayList Views.
+     * Payload of a change that only needs the date label of a row to be rebound
+     **/
+    public static final Object PAYLOAD_DATE = new Object();
+
+    /**
+     * Is notified when a row is clicked.
      */
+    public interface OnArticleClickListener {
+        void onArticleClick(Article article);
+    }
+
+    /**
+     * Listener notified of clicks on the rows
+     **/
+    private final OnArticleClickListener mClickListener;
 
-    static class ArticleViewHolder {
+    /**
+     * Formats the publication dates of the rows
+     **/
+    private final ArticleDateFormatter mDateFormatter;
+
+    /**
+     * Loads the thumbnails of the rows
+     **/
+    private final ImageLoader mImageLoader;
+
+    /**
+     * Size of the thumbnails in pixels, known once the first row has been created
+     **/
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
+
+    /**
+     * Whether the thumbnails are shown, which the {@link NetworkPolicy} turns off on slow
+     * networks and in data saver mode
+     **/
+    private boolean mThumbnailsEnabled = true;
+
+    public ArticleAdapter(ArticleDateFormatter dateFormatter, ImageLoader imageLoader,
+                          OnArticleClickListener clickListener) {
+        super(DIFF_CALLBACK);
+        mDateFormatter = dateFormatter;
+        mImageLoader = imageLoader;
+        mClickListener = clickListener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * To hold the Views of a row.
+     */
+    static class ArticleViewHolder extends RecyclerView.ViewHolder {
         private TextView title;
         private TextView author;
         private TextView section;
         private TextView date;
+        private ImageView thumbnail;
+        private Article article;
+
+        ArticleViewHolder(View itemView) {
+            super(itemView);
+            // Finds title, author, section and date TextViews.
+            title = (TextView) itemView.findViewById(R.id.title);
+            author = (TextView) itemView.findViewById(R.id.author);
+            section = (TextView) itemView.findViewById(R.id.section);
+            date = (TextView) itemView.findViewById(R.id.date);
+            thumbnail = (ImageView) itemView.findViewById(R.id.thumbnail);
+        }
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Get the {@link Article} object located at the current position.
-        Article currentArticle = getItem(position);
+    public ArticleViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (mThumbnailWidth == 0) {
+            Resources resources = parent.getResources();
+            mThumbnailWidth = resources.getDimensionPixelSize(R.dimen.thumbnail_width);
+            mThumbnailHeight = resources.getDimensionPixelSize(R.dimen.thumbnail_height);
+        }
+        View itemView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.article_list_item, parent, false);
+        final ArticleViewHolder holder = new ArticleViewHolder(itemView);
 
-        ArticleViewHolder holder;
+        // Sends clicks on the row to the listener with the article it shows.
+        itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (holder.article != null) {
+                    mClickListener.onArticleClick(holder.article);
+                }
+            }
+        });
+        return holder;
+    }
 
-        // Checks if the view is being reused, otherwise inflate.
-        if (convertView == null) {
-            convertView = LayoutInflater.from(getContext()).inflate(R.layout.article_list_item, parent, false);
-            holder = new ArticleViewHolder();
-            // Finds title, author, section and date TextViews.
-            holder.title = (TextView) convertView.findViewById(R.id.title);
-            holder.author = (TextView) convertView.findViewById(R.id.author);
-            holder.section = (TextView) convertView.findViewById(R.id.section);
-            holder.date = (TextView) convertView.findViewById(R.id.date);
-            convertView.setTag(holder);
-        } else {
-            holder = (ArticleViewHolder) convertView.getTag();
-        }
+    @Override
+    public void onBindViewHolder(ArticleViewHolder holder, int position) {
+        long bindStart = FrameMonitor.beginBind();
+
+        // Get the {@link Article} object located at the current position.
+        Article currentArticle = getItem(position);
+        holder.article = currentArticle;
 
         // Sets title to current Article object.
         holder.title.setText(currentArticle.getArticleTitle());
 
         // Do not show the textview if there is no author for the article.
-        String authorText = currentArticle.getAuthorName();
+        String authorText = currentArticle.getAuthorNames();
         if (authorText == null) {
             holder.author.setVisibility(View.GONE);
         } else {
+            holder.author.setVisibility(View.VISIBLE);
             holder.author.setText(authorText);
         }
 
         // Sets section to current Article object.
         holder.section.setText(currentArticle.getSectionTitle());
 
-        String originalDate = currentArticle.getPublicationDate();
-        String date = null;
-
         // Sets text of the date TextView.
-        holder.date.setText(currentArticle.getPublicationDate());
+        bindDate(holder, currentArticle);
 
-        return convertView;
+        // Loads the thumbnail off the main thread, or hides it if the article has none.
+        String thumbnailUrl = currentArticle.getThumbnailUrl();
+        if (thumbnailUrl == null || !mThumbnailsEnabled) {
+            mImageLoader.cancel(holder.thumbnail);
+            holder.thumbnail.setVisibility(View.GONE);
+        } else {
+            holder.thumbnail.setVisibility(View.VISIBLE);
+            mImageLoader.load(thumbnailUrl, holder.thumbnail, mThumbnailWidth, mThumbnailHeight);
+        }
+        FrameMonitor.endBind(bindStart);
+    }
+
+    /**
+     * Stops loading the thumbnail of a row that was scrolled away, so its image does not
+     * hold up the rows that are shown.
+     */
+    @Override
+    public void onViewRecycled(ArticleViewHolder holder) {
+        mImageLoader.cancel(holder.thumbnail);
+        holder.article = null;
+    }
+
+    /**
+     * Shows or hides the thumbnails of the rows. Hidden thumbnails are not downloaded.
+     */
+    public void setThumbnailsEnabled(boolean enabled) {
+        if (mThumbnailsEnabled != enabled) {
+            mThumbnailsEnabled = enabled;
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Returns the articles of the rows from the position on, at most count of them.
+     */
+    public List<Article> getArticles(int position, int count) {
+        int start = Math.max(0, position);
+        int end = Math.min(getItemCount(), start + count);
+        List<Article> articles = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            articles.add(getItem(i));
+        }
+        return articles;
+    }
+
+    /**
+     * Loads the thumbnails of the rows from the position on into memory, so they are shown
+     * straight away once they are scrolled to.
+     */
+    public void prefetchThumbnails(int position, int count) {
+        if (mThumbnailWidth == 0 || !mThumbnailsEnabled) {
+            return;
+        }
+        int end = Math.min(getItemCount(), position + count);
+        for (int i = Math.max(0, position); i < end; i++) {
+            String thumbnailUrl = getItem(i).getThumbnailUrl();
+            if (thumbnailUrl != null) {
+                mImageLoader.prefetch(thumbnailUrl, mThumbnailWidth, mThumbnailHeight);
+            }
+        }
+    }
+
+    /**
+     * Rebinds only the date label when that is all that changed, e.g. on a tick of the clock.
+     */
+    @Override
+    public void onBindViewHolder(ArticleViewHolder holder, int position, List<Object> payloads) {
+        if (!payloads.isEmpty() && onlyDatePayloads(payloads)) {
+            bindDate(holder, getItem(position));
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * Shows the cached label of the publication time, or nothing if the time is unknown.
+     */
+    private void bindDate(ArticleViewHolder holder, Article article) {
+        holder.date.setText(mDateFormatter.format(article.getPublicationTime()));
+    }
+
+    private static boolean onlyDatePayloads(List<Object> payloads) {
+        for (int i = 0; i < payloads.size(); i++) {
+            if (payloads.get(i) != PAYLOAD_DATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an id derived from the article's Guardian id, which stays the same across
+     * refreshes so RecyclerView can keep its rows and scroll position.
+     */
+    @Override
+    public long getItemId(int position) {
+        String key = stableKey(getItem(position));
+        if (key == null) {
+            return RecyclerView.NO_ID;
+        }
+
+        // 64-bit FNV-1a hash of the key, so collisions are practically impossible.
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the Guardian id of the article, or its URL if it has no id.
+     */
+    private static String stableKey(Article article) {
+        return article.getId() != null ? article.getId() : article.getUrl();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.example.android.newsapp;
+
+import android.provider.BaseColumns;
+
+/**
+ * API Contract for the local article store.
+ */
+public final class ArticleContract {
+
+    /**
+     * A private constructor for {@link ArticleContract} because it only holds constants.
+     */
+    private ArticleContract() {
+    }
+
+    /**
+     * Inner class that defines constant values for the articles database table.
+     * Each entry in the table represents a single {@link Article}.
+     */
+    public static final class ArticleEntry implements BaseColumns {
+
+        /**
+         * Name of database table for articles
+         **/
+        public static final String TABLE_NAME = "articles";
+
+        /**
+         * Unique ID number for the row (only for use in the database table).
+         * Type: INTEGER
+         **/
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * Guardian id of the article, used as the key for upserts.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_ARTICLE_ID = "article_id";
+
+        /**
+         * Title of the article.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_TITLE = "title";
+
+        /**
+         * Title of the section.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_SECTION = "section";
+
+        /**
+         * Names of the article's authors, separated by {@link #AUTHOR_SEPARATOR}.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_AUTHORS = "authors";
+
+        /**
+         * Separator of the names in {@link #COLUMN_AUTHORS}, which never occurs in a name
+         **/
+        public static final String AUTHOR_SEPARATOR = "\n";
+
+        /**
+         * Publication time of the article, in milliseconds since the epoch.
+         * Type: INTEGER
+         **/
+        public static final String COLUMN_PUBLICATION_TIME = "publication_time";
+
+        /**
+         * Website URL of the article.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_URL = "url";
+
+        /**
+         * URL of the article's thumbnail image.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+
+        /**
+         * Time the article was last written to the store, in milliseconds since the epoch.
+         * Type: INTEGER
+         **/
+        public static final String COLUMN_FETCHED_AT = "fetched_at";
+
+        /**
+         * Whether the article is part of the main feed, 1, or only of saved feeds, 0.
+         * Type: INTEGER
+         **/
+        public static final String COLUMN_IN_MAIN_FEED = "in_main_feed";
+    }
+
+    /**
+     * Inner class that defines constant values for the full-text search index of the articles.
+     * Each entry indexes the searchable text of the {@link ArticleEntry} row whose
+     * {@link ArticleEntry#_ID} is its docid, and is kept up to date by triggers.
+     */
+    public static final class ArticleSearchEntry {
+
+        /**
+         * Name of the FTS4 table of the index
+         **/
+        public static final String TABLE_NAME = "articles_search";
+
+        /**
+         * Id of the indexed {@link ArticleEntry} row.
+         * Type: INTEGER
+         **/
+        public static final String DOCID = "docid";
+
+        /**
+         * Indexed columns, with the same names and content as in {@link ArticleEntry}
+         **/
+        public static final String COLUMN_TITLE = ArticleEntry.COLUMN_TITLE;
+        public static final String COLUMN_SECTION = ArticleEntry.COLUMN_SECTION;
+        public static final String COLUMN_AUTHORS = ArticleEntry.COLUMN_AUTHORS;
+    }
+
+    /**
+     * Inner class that defines constant values for the stored article bodies. Bodies are kept
+     * apart from the {@link ArticleEntry} rows, so listing the feed never reads them and
+     * refreshing an article from the feed does not drop its body.
+     */
+    public static final class ArticleBodyEntry {
+
+        /**
+         * Name of database table for article bodies
+         **/
+        public static final String TABLE_NAME = "article_bodies";
+
+        /**
+         * Guardian id of the article the body belongs to.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_ARTICLE_ID = ArticleEntry.COLUMN_ARTICLE_ID;
+
+        /**
+         * Plain text body of the article.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_BODY = "body";
+
+        /**
+         * Time the body was stored, in milliseconds since the epoch.
+         * Type: INTEGER
+         **/
+        public static final String COLUMN_FETCHED_AT = ArticleEntry.COLUMN_FETCHED_AT;
+    }
+
+    /**
+     * Inner class that defines constant values for the articles of the saved feeds. Each
+     * entry places an {@link ArticleEntry} in a {@link SavedFeed}, so an article that several
+     * feeds show is stored once and referenced by each of them.
+     */
+    public static final class FeedArticleEntry {
+
+        /**
+         * Name of database table for the articles of the saved feeds
+         **/
+        public static final String TABLE_NAME = "feed_articles";
+
+        /**
+         * Id of the saved feed, from {@link SavedFeed#getId()}.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_FEED_ID = "feed_id";
+
+        /**
+         * Guardian id of the article.
+         * Type: TEXT
+         **/
+        public static final String COLUMN_ARTICLE_ID = ArticleEntry.COLUMN_ARTICLE_ID;
+
+        /**
+         * Position of the article in the feed, starting at 0.
+         * Type: INTEGER
+         **/
+        public static final String COLUMN_POSITION = "position";
+    }
+}
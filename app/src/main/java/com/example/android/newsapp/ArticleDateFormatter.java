@@ -0,0 +1,169 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.v4.util.LongSparseArray;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats publication times for the article rows, as relative labels such as "2h ago" for
+ * recent articles and as dates for older ones. Every label is built once and cached, so
+ * binding a row does not allocate. Relative labels are computed against a clock that only
+ * moves when {@link #tick()} is called.
+ */
+public final class ArticleDateFormatter {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Articles older than this many days are labelled with their date
+     **/
+    private static final int RELATIVE_DAYS = 7;
+
+    /**
+     * Maximum number of cached date labels
+     **/
+    private static final int MAX_DATE_LABELS = 512;
+
+    /**
+     * Single instance shared by the whole app
+     **/
+    private static ArticleDateFormatter sInstance;
+
+    /**
+     * Resources the labels are read from
+     **/
+    private final Resources mResources;
+
+    /**
+     * Cached relative labels, indexed by the number of minutes, hours or days
+     **/
+    private final String[] mMinuteLabels = new String[60];
+    private final String[] mHourLabels = new String[24];
+    private final String[] mDayLabels = new String[RELATIVE_DAYS];
+
+    /**
+     * Cached date labels, keyed by the local day number
+     **/
+    private final LongSparseArray<String> mDateLabels = new LongSparseArray<>();
+
+    /**
+     * Formats the date labels
+     **/
+    private final DateFormat mDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+
+    /**
+     * Time zone of the date labels
+     **/
+    private final TimeZone mTimeZone = TimeZone.getDefault();
+
+    /**
+     * The time relative labels are computed against
+     **/
+    private volatile long mNow = System.currentTimeMillis();
+
+    private ArticleDateFormatter(Context context) {
+        mResources = context.getResources();
+    }
+
+    /**
+     * Returns the single {@link ArticleDateFormatter} of the app.
+     */
+    public static synchronized ArticleDateFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleDateFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Moves the clock of the relative labels to the current time.
+     */
+    public void tick() {
+        mNow = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the label for the publication time, or null if the time is unknown.
+     */
+    public String format(long time) {
+        if (time <= 0) {
+            return null;
+        }
+
+        long age = Math.max(0, mNow - time);
+        if (age < MINUTE) {
+            return minuteLabel(0);
+        } else if (age < HOUR) {
+            return minuteLabel((int) (age / MINUTE));
+        } else if (age < DAY) {
+            return hourLabel((int) (age / HOUR));
+        } else if (age < RELATIVE_DAYS * DAY) {
+            return dayLabel((int) (age / DAY));
+        }
+        return dateLabel(time);
+    }
+
+    /**
+     * Builds the labels of the articles ahead of time, so the first bind of their rows
+     * does not allocate either. Call it off the main thread.
+     */
+    public void prewarm(List<Article> articles) {
+        if (articles == null) {
+            return;
+        }
+        for (Article article : articles) {
+            format(article.getPublicationTime());
+        }
+    }
+
+    private String minuteLabel(int minutes) {
+        String label = mMinuteLabels[minutes];
+        if (label == null) {
+            label = minutes == 0
+                    ? mResources.getString(R.string.date_just_now)
+                    : mResources.getString(R.string.date_minutes_ago, minutes);
+            mMinuteLabels[minutes] = label;
+        }
+        return label;
+    }
+
+    private String hourLabel(int hours) {
+        String label = mHourLabels[hours];
+        if (label == null) {
+            label = mResources.getString(R.string.date_hours_ago, hours);
+            mHourLabels[hours] = label;
+        }
+        return label;
+    }
+
+    private String dayLabel(int days) {
+        String label = mDayLabels[days];
+        if (label == null) {
+            label = mResources.getString(R.string.date_days_ago, days);
+            mDayLabels[days] = label;
+        }
+        return label;
+    }
+
+    private synchronized String dateLabel(long time) {
+        // Every article published on the same local day shares one label.
+        long day = (time + mTimeZone.getOffset(time)) / DAY;
+        String label = mDateLabels.get(day);
+        if (label == null) {
+            if (mDateLabels.size() >= MAX_DATE_LABELS) {
+                mDateLabels.clear();
+            }
+            label = mDateFormat.format(new Date(time));
+            mDateLabels.put(day, label);
+        }
+        return label;
+    }
+}
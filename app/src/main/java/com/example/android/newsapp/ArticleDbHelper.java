@@ -0,0 +1,146 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.newsapp.ArticleContract.ArticleBodyEntry;
+import com.example.android.newsapp.ArticleContract.ArticleEntry;
+import com.example.android.newsapp.ArticleContract.ArticleSearchEntry;
+import com.example.android.newsapp.ArticleContract.FeedArticleEntry;
+
+/**
+ * Database helper for the local article store. Manages database creation and version management.
+ */
+public class ArticleDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name of the database file
+     **/
+    private static final String DATABASE_NAME = "articles.db";
+
+    /**
+     * Database version. If you change the database schema, you must increment the database version.
+     **/
+    private static final int DATABASE_VERSION = 8;
+
+    /**
+     * Constructs a new instance of {@link ArticleDbHelper}.
+     * @param context of the app
+     */
+    public ArticleDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * This is called when the database is created for the first time.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // Create a String that contains the SQL statement to create the articles table.
+        String SQL_CREATE_ARTICLES_TABLE = "CREATE TABLE " + ArticleEntry.TABLE_NAME + " ("
+                + ArticleEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ArticleEntry.COLUMN_ARTICLE_ID + " TEXT NOT NULL UNIQUE, "
+                + ArticleEntry.COLUMN_TITLE + " TEXT, "
+                + ArticleEntry.COLUMN_SECTION + " TEXT, "
+                + ArticleEntry.COLUMN_AUTHORS + " TEXT, "
+                + ArticleEntry.COLUMN_PUBLICATION_TIME + " INTEGER NOT NULL DEFAULT 0, "
+                + ArticleEntry.COLUMN_URL + " TEXT, "
+                + ArticleEntry.COLUMN_THUMBNAIL_URL + " TEXT, "
+                + ArticleEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL DEFAULT 0, "
+                + ArticleEntry.COLUMN_IN_MAIN_FEED + " INTEGER NOT NULL DEFAULT 0);";
+
+        // Index the articles of the main feed by publication time, which the feed is ordered
+        // and evicted by.
+        String SQL_CREATE_DATE_INDEX = "CREATE INDEX articles_publication_time ON "
+                + ArticleEntry.TABLE_NAME + " (" + ArticleEntry.COLUMN_IN_MAIN_FEED + ", "
+                + ArticleEntry.COLUMN_PUBLICATION_TIME + ");";
+
+        // Create the full-text index of the titles, sections and authors. Words are stemmed,
+        // so e.g. "election" also finds "elections".
+        String SQL_CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE " + ArticleSearchEntry.TABLE_NAME
+                + " USING fts4("
+                + ArticleSearchEntry.COLUMN_TITLE + ", "
+                + ArticleSearchEntry.COLUMN_SECTION + ", "
+                + ArticleSearchEntry.COLUMN_AUTHORS + ", "
+                + "tokenize=porter);";
+
+        // Keep the index up to date as articles are stored, updated and evicted.
+        String SQL_CREATE_INSERT_TRIGGER = "CREATE TRIGGER articles_search_insert AFTER INSERT ON "
+                + ArticleEntry.TABLE_NAME + " BEGIN INSERT INTO " + ArticleSearchEntry.TABLE_NAME + " ("
+                + ArticleSearchEntry.DOCID + ", "
+                + ArticleSearchEntry.COLUMN_TITLE + ", "
+                + ArticleSearchEntry.COLUMN_SECTION + ", "
+                + ArticleSearchEntry.COLUMN_AUTHORS + ") VALUES ("
+                + "new." + ArticleEntry._ID + ", "
+                + "new." + ArticleEntry.COLUMN_TITLE + ", "
+                + "new." + ArticleEntry.COLUMN_SECTION + ", "
+                + "new." + ArticleEntry.COLUMN_AUTHORS + "); END;";
+        String SQL_CREATE_UPDATE_TRIGGER = "CREATE TRIGGER articles_search_update AFTER UPDATE OF "
+                + ArticleEntry.COLUMN_TITLE + ", "
+                + ArticleEntry.COLUMN_SECTION + ", "
+                + ArticleEntry.COLUMN_AUTHORS + " ON " + ArticleEntry.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + ArticleSearchEntry.TABLE_NAME
+                + " WHERE " + ArticleSearchEntry.DOCID + " = old." + ArticleEntry._ID + "; "
+                + "INSERT INTO " + ArticleSearchEntry.TABLE_NAME + " ("
+                + ArticleSearchEntry.DOCID + ", "
+                + ArticleSearchEntry.COLUMN_TITLE + ", "
+                + ArticleSearchEntry.COLUMN_SECTION + ", "
+                + ArticleSearchEntry.COLUMN_AUTHORS + ") VALUES ("
+                + "new." + ArticleEntry._ID + ", "
+                + "new." + ArticleEntry.COLUMN_TITLE + ", "
+                + "new." + ArticleEntry.COLUMN_SECTION + ", "
+                + "new." + ArticleEntry.COLUMN_AUTHORS + "); END;";
+        String SQL_CREATE_DELETE_TRIGGER = "CREATE TRIGGER articles_search_delete AFTER DELETE ON "
+                + ArticleEntry.TABLE_NAME + " BEGIN DELETE FROM " + ArticleSearchEntry.TABLE_NAME
+                + " WHERE " + ArticleSearchEntry.DOCID + " = old." + ArticleEntry._ID + "; END;";
+
+        // Create the table of the article bodies, keyed by the Guardian id of the article.
+        String SQL_CREATE_BODIES_TABLE = "CREATE TABLE " + ArticleBodyEntry.TABLE_NAME + " ("
+                + ArticleBodyEntry.COLUMN_ARTICLE_ID + " TEXT PRIMARY KEY, "
+                + ArticleBodyEntry.COLUMN_BODY + " TEXT NOT NULL, "
+                + ArticleBodyEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL DEFAULT 0);";
+
+        // Create the table of the articles of the saved feeds, which only refers to the
+        // articles, so an article in several feeds is stored once.
+        String SQL_CREATE_FEED_ARTICLES_TABLE = "CREATE TABLE " + FeedArticleEntry.TABLE_NAME + " ("
+                + FeedArticleEntry.COLUMN_FEED_ID + " TEXT NOT NULL, "
+                + FeedArticleEntry.COLUMN_ARTICLE_ID + " TEXT NOT NULL, "
+                + FeedArticleEntry.COLUMN_POSITION + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + FeedArticleEntry.COLUMN_FEED_ID + ", "
+                + FeedArticleEntry.COLUMN_ARTICLE_ID + "));";
+
+        // Execute the SQL statements.
+        db.execSQL(SQL_CREATE_ARTICLES_TABLE);
+        db.execSQL(SQL_CREATE_DATE_INDEX);
+        db.execSQL(SQL_CREATE_SEARCH_TABLE);
+        db.execSQL(SQL_CREATE_INSERT_TRIGGER);
+        db.execSQL(SQL_CREATE_UPDATE_TRIGGER);
+        db.execSQL(SQL_CREATE_DELETE_TRIGGER);
+        db.execSQL(SQL_CREATE_BODIES_TABLE);
+        db.execSQL(SQL_CREATE_FEED_ARTICLES_TABLE);
+    }
+
+    /**
+     * This is called every time the database is opened.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Rows deleted by an INSERT OR REPLACE only fire delete triggers with recursive triggers on.
+        db.execSQL("PRAGMA recursive_triggers = ON;");
+    }
+
+    /**
+     * This is called when the database needs to be upgraded.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store is only a cache of the Guardian feed, so it is rebuilt from scratch.
+        db.execSQL("DROP TABLE IF EXISTS " + FeedArticleEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleBodyEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleSearchEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -2,12 +2,21 @@ package com.example.android.newsapp;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Loads a list of articles by using an AsyncTask to perform the
- * network request to the given URL.
+ * network request to the given URL. Articles are served from the {@link ArticleStore}
+ * first, and the network response is merged into the store afterwards.
  */
 public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
     /**
@@ -16,18 +25,127 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
     private static final String LOG_TAG = ArticleLoader.class.getName();
 
     /**
-     * Query URL
+     * Query URLs, one per section of the feed
      **/
-    private String mQueryUrl;
+    private List<String> mQueryUrls;
 
     /**
-     * {@link ArticleLoader} constructor.
-     * @param context  of the activity
-     * @param queryUrl to load data
+     * Page of the feed to load, starting at 1
+     **/
+    private int mPage;
+
+    /**
+     * Number of articles per page of each section, kept for every page of the feed so the
+     * pages line up
+     **/
+    private int mSectionPageSize;
+
+    /**
+     * Publication time and id of the article a page loaded while scrolling continues from
+     **/
+    private long mCursorTime;
+    private String mCursorId;
+
+    /**
+     * Whether the page holds the articles newer than the cursor, rather than those older
+     **/
+    private boolean mNewer;
+
+    /**
+     * Whether the page is only read from the store, e.g. a page scrolled back to after it
+     * left the window
+     **/
+    private boolean mStoreOnly;
+
+    /**
+     * Whether there was a network connection at the start of the last load, so the articles
+     * were refreshed from the network
+     **/
+    private volatile boolean mRefreshFromNetwork;
+
+    /**
+     * Handler used to deliver the stored articles on the main thread
+     **/
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The most recently delivered articles
+     **/
+    private List<Article> mArticles;
+
+    /**
+     * Cancels the network requests of the load in progress, if any
+     **/
+    private volatile CancellationToken mCancellation;
+
+    /**
+     * Whether a load has been started and its final result not delivered yet.
+     * Only used on the main thread.
+     **/
+    private boolean mLoading;
+
+    /**
+     * {@link ArticleLoader} constructor for the first page of the feed, which is refreshed.
+     * @param context            of the activity
+     * @param queryUrls          to load data, one per section, for the first page
+     * @param sectionPageSize    number of articles per page of each section
      */
-    public ArticleLoader(Context context, String queryUrl) {
+    public ArticleLoader(Context context, List<String> queryUrls, int sectionPageSize) {
         super(context);
-        mQueryUrl = queryUrl;
+        mQueryUrls = queryUrls;
+        mPage = 1;
+        mSectionPageSize = sectionPageSize;
+    }
+
+    /**
+     * {@link ArticleLoader} constructor for a page loaded while scrolling, which continues
+     * from the article at the edge of the window.
+     * @param context            of the activity
+     * @param queryUrls          of each section's articles published before the cursor
+     * @param page               of the feed to load, starting at 1
+     * @param sectionPageSize    number of articles per page of each section
+     * @param cursorTime         publication time of the article the page continues from
+     * @param cursorId           id of the article the page continues from, or null
+     * @param newer              whether the page holds the articles newer than the cursor
+     * @param storeOnly          whether the page is read from the store without a refresh
+     */
+    public ArticleLoader(Context context, List<String> queryUrls, int page, int sectionPageSize,
+                         long cursorTime, String cursorId, boolean newer, boolean storeOnly) {
+        this(context, queryUrls, sectionPageSize);
+        mPage = page;
+        mCursorTime = cursorTime;
+        mCursorId = cursorId;
+        mNewer = newer;
+        mStoreOnly = storeOnly;
+    }
+
+    /**
+     * Returns the page of the feed this loader loads.
+     */
+    public int getPage() {
+        return mPage;
+    }
+
+    /**
+     * Returns the number of articles per page of each section.
+     */
+    public int getSectionPageSize() {
+        return mSectionPageSize;
+    }
+
+    /**
+     * Returns true if there was a network connection when the last load started. Without
+     * one, only stored articles are shown.
+     */
+    public boolean isConnected() {
+        return mRefreshFromNetwork;
+    }
+
+    /**
+     * Returns true while a load is running, including while its intermediate results are delivered.
+     */
+    public boolean isLoading() {
+        return mLoading;
     }
 
     /**
@@ -35,21 +153,287 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
      */
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        // Redeliver the articles that are already loaded, e.g. after a rotation.
+        if (mArticles != null) {
+            deliverArticles(mArticles);
+        }
+        if (takeContentChanged() || mArticles == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        mLoading = true;
+        super.onForceLoad();
+    }
+
+    /**
+     * Aborts the network requests of a load that is no longer wanted, e.g. because the loader
+     * was restarted. Requests that another caller still waits for carry on for that caller.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        CancellationToken cancellation = mCancellation;
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+    }
+
+    @Override
+    public void onCanceled(List<Article> articles) {
+        mLoading = false;
     }
 
     /**
-     * This performs on a background thread. It fetches the Article data from {@link QueryUtils}
-     * and returns the data.
+     * This performs on a background thread. It serves the stored articles first, then fetches
+     * the Article data of every section from {@link QueryUtils} at the same time, merges it into
+     * the store as each section arrives and returns the data.
      */
     @Override
     public List<Article> loadInBackground() {
-        if (mQueryUrl == null) {
-            return null;
+        // Stop the sections of the previous load that arrived too late for its first screen,
+        // since this load fetches them again.
+        CancellationToken previous = mCancellation;
+        if (previous != null) {
+            previous.cancel();
+        }
+        CancellationToken cancellation = new CancellationToken();
+        mCancellation = cancellation;
+
+        // The connectivity is checked here rather than by the activity, to keep the binder
+        // call off the main thread while the app starts.
+        mRefreshFromNetwork = hasConnection();
+        NetworkPolicy.update(getContext());
+        List<Article> articles = loadArticles(cancellation);
+
+        // Build the date labels here, so binding the rows on the main thread does not allocate.
+        ArticleDateFormatter.getInstance(getContext()).prewarm(articles);
+        return articles;
+    }
+
+    /**
+     * Returns the articles of the page, from the store and the network.
+     */
+    private List<Article> loadArticles(final CancellationToken cancellation) {
+        final ArticleStore store = ArticleStore.getInstance(getContext());
+
+        // Each page holds a page of every section.
+        final int pageSize = GuardianFeed.getPageSize(mSectionPageSize);
+
+        // A page scrolled back to above the window was stored when it was first shown. The
+        // first page takes every article newer than the window, so the list starts at the
+        // newest article again.
+        if (mNewer) {
+            return store.queryArticlesAfter(mCursorTime, mCursorId, mPage == 1 ? 0 : pageSize);
+        }
+
+        // Later pages continue from the last article shown, in the store like the first page.
+        // A page scrolled back to was stored when it was first shown, so it is read back
+        // without a request; one that was evicted since is fetched again. Without a
+        // connection the store is paged as it is.
+        if (mPage > 1) {
+            if (mStoreOnly || !mRefreshFromNetwork || mQueryUrls.isEmpty()) {
+                List<Article> stored = store.queryArticlesBefore(mCursorTime, mCursorId, 0, pageSize);
+                if (!stored.isEmpty() || !mRefreshFromNetwork || mQueryUrls.isEmpty()) {
+                    return stored;
+                }
+            }
+            return loadOlderPage(store, pageSize, cancellation);
+        }
+
+        // Paint the feed from disk straight away, before the network has answered.
+        List<Article> stored = store.queryArticles(0, pageSize);
+        if (!mRefreshFromNetwork || mQueryUrls.isEmpty()) {
+            return stored;
+        }
+        if (mArticles == null && !stored.isEmpty()) {
+            deliverIntermediateResult(stored);
+        }
+
+        // Fetch only the articles published since the newest stored one. Only those are
+        // merged into the store, so the list only inserts their rows.
+        List<Article> newArticles = DeltaSync.fetchNewArticles(getContext(), store, cancellation);
+        if (cancellation.isCanceled()) {
+            return stored;
+        }
+        if (newArticles != null) {
+            store.upsert(newArticles);
+            return completeRefresh(store, pageSize, cancellation, newArticles);
+        }
+
+        // The store is empty or too far behind, so full pages are fetched instead.
+        // Calls the {@link SectionFetchEngine} to send the network requests of all sections,
+        // and merges each section into the store and the list as soon as it arrives,
+        // instead of waiting for the slowest one. On a slow network the first screen shows
+        // the sections that arrived within its budget rather than waiting for every timeout.
+        // The late sections carry on in the background and are shown as they arrive; the
+        // refresh is only complete once every section has arrived or failed, and at least
+        // one of them arrived.
+        final int sectionCount = mQueryUrls.size();
+        final AtomicInteger finishedCount = new AtomicInteger();
+        final AtomicInteger loadedCount = new AtomicInteger();
+        final AtomicBoolean firstScreenDone = new AtomicBoolean();
+        final AtomicBoolean completed = new AtomicBoolean();
+        final List<Article> fetched = Collections.synchronizedList(new ArrayList<Article>());
+        List<Article> articles = SectionFetchEngine.fetch(mQueryUrls, new SectionFetchEngine.Listener() {
+            @Override
+            public void onQueryLoaded(String queryUrl, List<Article> sectionArticles) {
+                store.upsert(sectionArticles);
+                fetched.addAll(sectionArticles);
+                loadedCount.incrementAndGet();
+                onQueryFinished(true);
+            }
+
+            @Override
+            public void onQueryFailed(String queryUrl) {
+                onQueryFinished(false);
+            }
+
+            private void onQueryFinished(boolean loaded) {
+                int finished = finishedCount.incrementAndGet();
+                if (cancellation.isCanceled()) {
+                    return;
+                }
+                if (!firstScreenDone.get()) {
+                    if (loaded && finished < sectionCount) {
+                        deliverIntermediateResult(store.queryArticles(0, pageSize));
+                    }
+                } else if (finished == sectionCount && loadedCount.get() > 0
+                        && completed.compareAndSet(false, true)) {
+                    deliverIntermediateResult(completeRefresh(store, pageSize, cancellation,
+                            loadedCount.get() == sectionCount ? fetched : null));
+                } else if (loaded) {
+                    deliverIntermediateResult(store.queryArticles(0, pageSize));
+                }
+            }
+        }, cancellation, NetworkPolicy.current().getFirstScreenMillis());
+        firstScreenDone.set(true);
+
+        if (finishedCount.get() == sectionCount && loadedCount.get() > 0
+                && completed.compareAndSet(false, true)) {
+            return completeRefresh(store, pageSize, cancellation,
+                    loadedCount.get() == sectionCount ? fetched : null);
+        }
+        if (articles != null && !articles.isEmpty()) {
+            return store.queryArticles(0, pageSize);
+        }
+        return stored;
+    }
+
+    /**
+     * Finishes a refresh in which every section arrived: keeps the store bounded, pushes the
+     * next background sync back since the store is fresh, and keeps a snapshot of the
+     * refreshed first page, which the next process shows at once. Returns the first page.
+     * @param synced articles of the refresh if every section arrived, which move the
+     *               {@link DeltaSync} watermark, or null
+     */
+    private List<Article> completeRefresh(ArticleStore store, int pageSize, CancellationToken cancellation,
+                                          List<Article> synced) {
+        if (synced != null) {
+            DeltaSync.onSynced(getContext(), synced);
+        }
+        store.evict();
+        SyncScheduler.onRefreshSucceeded(getContext());
+        List<Article> articles = store.queryArticles(0, pageSize);
+        if (!cancellation.isCanceled() && !articles.isEmpty()) {
+            FeedSnapshot.write(FeedSnapshot.getFile(getContext()), articles);
         }
-        // Calls the {@link QueryUtils} fetchArticleData() method to send network request,
-        // parse its response and extract the data.
-        List<Article> articles = QueryUtils.fetchArticleData(mQueryUrl);
         return articles;
     }
+
+    /**
+     * Fetches the articles of every section published before the cursor into the store, and
+     * returns the page that follows the cursor in the store. A section's page only reaches
+     * back to its oldest article, so the page stops there, where the store could have a gap,
+     * e.g. between a refreshed first page and articles stored long ago. Returns null if a
+     * section failed, so the next scroll tries again.
+     */
+    private List<Article> loadOlderPage(ArticleStore store, int pageSize, CancellationToken cancellation) {
+        final List<List<Article>> sections = new ArrayList<>();
+        SectionFetchEngine.fetch(mQueryUrls, new SectionFetchEngine.Listener() {
+            @Override
+            public void onQueryLoaded(String queryUrl, List<Article> articles) {
+                sections.add(articles);
+            }
+
+            @Override
+            public void onQueryFailed(String queryUrl) {
+                // The missing section fails the page below.
+            }
+        }, cancellation);
+        if (cancellation.isCanceled() || sections.size() < mQueryUrls.size()) {
+            return null;
+        }
+
+        // A section that returned a full page may have older articles than its oldest one.
+        long complete = 0;
+        for (List<Article> section : sections) {
+            store.upsert(section);
+            if (section.size() >= mSectionPageSize) {
+                long oldest = Long.MAX_VALUE;
+                for (Article article : section) {
+                    oldest = Math.min(oldest, article.getPublicationTime());
+                }
+                complete = Math.max(complete, oldest);
+            }
+        }
+        return store.queryArticlesBefore(mCursorTime, mCursorId, complete, pageSize);
+    }
+
+    /**
+     * Returns true if the active network is connected.
+     */
+    private boolean hasConnection() {
+        ConnectivityManager connectManager = (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * Delivers the articles that were loaded so far while the background work carries on.
+     * A copy is delivered, so a final result made of the same list is still seen as new
+     * and ends the load.
+     */
+    private void deliverIntermediateResult(List<Article> articles) {
+        ArticleDateFormatter.getInstance(getContext()).prewarm(articles);
+        final List<Article> copy = new ArrayList<>(articles);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted() && !isAbandoned()) {
+                    deliverArticles(copy);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers the final result of a load.
+     */
+    @Override
+    public void deliverResult(List<Article> articles) {
+        mLoading = false;
+        deliverArticles(articles);
+    }
+
+    /**
+     * Remembers the delivered articles so they can be redelivered, and delivers them.
+     */
+    private void deliverArticles(List<Article> articles) {
+        mArticles = articles;
+        super.deliverResult(articles);
+    }
+
+    /**
+     * Stops the loader and forgets the delivered articles.
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+        cancelLoadInBackground();
+        mLoading = false;
+        mArticles = null;
+    }
 }
@@ -0,0 +1,353 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a window of consecutive pages of {@link Article}s in an {@link ArticleAdapter}.
+ * Pages are appended or prepended as the user scrolls, one screen before they are reached,
+ * and pages far from the viewport are dropped so the adapter stays bounded.
+ */
+public class ArticlePager {
+
+    /**
+     * Number of articles requested per page
+     **/
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Maximum number of pages kept in the adapter
+     **/
+    private static final int MAX_PAGES = 5;
+
+    /**
+     * Order of the articles in the feed: newest first, like the store sorts them
+     **/
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            long timeA = a.getPublicationTime();
+            long timeB = b.getPublicationTime();
+            if (timeA != timeB) {
+                return timeA > timeB ? -1 : 1;
+            }
+            if (a.getId() == null || b.getId() == null) {
+                return 0;
+            }
+            return b.getId().compareTo(a.getId());
+        }
+    };
+
+    /**
+     * Adapter that displays the articles of the window
+     **/
+    private final ArticleAdapter mAdapter;
+
+    /**
+     * Articles of the window, first page first
+     **/
+    private final List<Article> mArticles = new ArrayList<>();
+
+    /**
+     * Number of articles each page of the window added to the adapter, first page first
+     **/
+    private final LinkedList<Integer> mPageCounts = new LinkedList<>();
+
+    /**
+     * Ids of the articles in the adapter, so overlapping pages are not shown twice
+     **/
+    private final Set<String> mIds = new HashSet<>();
+
+    /**
+     * First page restored from a snapshot, shown as it is until the window changes, or null.
+     * Its articles are only read when a page is added, so restoring decodes only the rows shown.
+     **/
+    private List<Article> mRestored;
+
+    /**
+     * Page number of the first page in the window
+     **/
+    private int mFirstPage = 1;
+
+    /**
+     * Whether the last page of the feed has been reached
+     **/
+    private boolean mEndReached;
+
+    /**
+     * Highest page number added to the window since it was reset. Pages up to it were already
+     * fetched and stored, so they are read back from the store when scrolled to again.
+     **/
+    private int mHighestPage = 1;
+
+    /**
+     * Page number that is being loaded, or 0 if no page is loading
+     **/
+    private int mLoadingPage;
+
+    /**
+     * Constructs a new {@link ArticlePager}.
+     * @param adapter that displays the articles
+     */
+    public ArticlePager(ArticleAdapter adapter) {
+        mAdapter = adapter;
+    }
+
+    /**
+     * Replaces the window with the first page of the feed.
+     */
+    public void reset(List<Article> articles) {
+        mRestored = null;
+        mArticles.clear();
+        mIds.clear();
+        mPageCounts.clear();
+        mFirstPage = 1;
+        mHighestPage = 1;
+        mEndReached = false;
+        mLoadingPage = 0;
+
+        mPageCounts.add(addArticles(articles, 0));
+        submit();
+    }
+
+    /**
+     * Replaces the window with a first page restored from a {@link FeedSnapshot}. The list is
+     * handed to the adapter as it is, so only the rows that are bound are decoded.
+     */
+    public void restore(List<Article> articles) {
+        mArticles.clear();
+        mIds.clear();
+        mPageCounts.clear();
+        mFirstPage = 1;
+        mHighestPage = 1;
+        mEndReached = false;
+        mLoadingPage = 0;
+
+        mRestored = articles;
+        mPageCounts.add(articles.size());
+        mAdapter.submitList(articles);
+    }
+
+    /**
+     * Returns the page that should be loaded for the visible range of the list, or 0 if
+     * nothing needs loading. Pages are requested one screen before they are scrolled to.
+     */
+    public int getPageToLoad(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (mLoadingPage != 0 || mPageCounts.isEmpty() || totalItemCount == 0) {
+            return 0;
+        }
+        if (!mEndReached && firstVisibleItem + 2 * visibleItemCount >= totalItemCount) {
+            return getLastPage() + 1;
+        }
+        if (mFirstPage > 1 && firstVisibleItem <= visibleItemCount) {
+            return mFirstPage - 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the page was in the window before, so it is scrolled back to rather
+     * than shown for the first time.
+     */
+    public boolean wasLoaded(int page) {
+        return page <= mHighestPage;
+    }
+
+    /**
+     * Returns true if the page comes before the window, so it is scrolled back to from below.
+     */
+    public boolean isBeforeWindow(int page) {
+        return page < mFirstPage;
+    }
+
+    /**
+     * Returns the article the page continues from: the first article of the window for a
+     * page before it, or the last one for a page after it. Returns null if the window is empty.
+     */
+    public Article getCursor(int page) {
+        List<Article> articles = mRestored != null ? mRestored : mArticles;
+        if (articles.isEmpty()) {
+            return null;
+        }
+        return isBeforeWindow(page) ? articles.get(0) : articles.get(articles.size() - 1);
+    }
+
+    /**
+     * Marks the page as being loaded, so it is not requested twice.
+     */
+    public void setLoading(int page) {
+        mLoadingPage = page;
+    }
+
+    /**
+     * Adds a loaded page to the window. Pages that no longer border the window are ignored,
+     * e.g. a page redelivered after the window was reset.
+     */
+    public void onPageLoaded(int page, List<Article> articles) {
+        if (page == mLoadingPage) {
+            mLoadingPage = 0;
+        }
+        if (articles == null) {
+            // The request failed, so let the next scroll try again.
+            return;
+        }
+        if (page == getLastPage() + 1) {
+            appendPage(articles);
+        } else if (page == mFirstPage - 1) {
+            prependPage(articles);
+        }
+    }
+
+    /**
+     * Merges newly published articles into the first page by publication time and returns how
+     * many were inserted. They are only inserted while the window starts at the first page, as
+     * the top of the list is not the newest otherwise, and are counted as part of that page.
+     * An article older than every row of the first page is left to the page after it, unless
+     * the first page is the whole feed.
+     */
+    public int insertAtTop(List<Article> articles) {
+        if (mFirstPage != 1 || articles == null || articles.isEmpty()) {
+            return 0;
+        }
+        takeRestored();
+
+        List<Article> newest = new ArrayList<>(articles);
+        Collections.sort(newest, NEWEST_FIRST);
+
+        int pageEnd = mPageCounts.isEmpty() ? 0 : mPageCounts.getFirst();
+        boolean wholeFeed = mPageCounts.size() <= 1 && (mEndReached || pageEnd == 0);
+        int added = 0;
+        int position = 0;
+        for (Article article : newest) {
+            if (article.getId() != null && mIds.contains(article.getId())) {
+                continue;
+            }
+            // The articles are sorted, so each one goes at or below the one before it.
+            while (position < pageEnd && NEWEST_FIRST.compare(mArticles.get(position), article) <= 0) {
+                position++;
+            }
+            if (position == pageEnd && !wholeFeed) {
+                break;
+            }
+            mArticles.add(position, article);
+            if (article.getId() != null) {
+                mIds.add(article.getId());
+            }
+            position++;
+            pageEnd++;
+            added++;
+        }
+        if (added == 0) {
+            return 0;
+        }
+        if (mPageCounts.isEmpty()) {
+            mPageCounts.add(added);
+        } else {
+            mPageCounts.set(0, mPageCounts.getFirst() + added);
+        }
+        submit();
+        return added;
+    }
+
+    /**
+     * Returns the number of the last page in the window.
+     */
+    private int getLastPage() {
+        return mFirstPage + mPageCounts.size() - 1;
+    }
+
+    /**
+     * Adds a page at the end of the window and drops the first page if the window is full.
+     */
+    private void appendPage(List<Article> articles) {
+        if (articles.isEmpty()) {
+            mEndReached = true;
+            return;
+        }
+        takeRestored();
+
+        mPageCounts.addLast(addArticles(articles, mArticles.size()));
+        mHighestPage = Math.max(mHighestPage, getLastPage());
+
+        if (mPageCounts.size() > MAX_PAGES) {
+            removeArticles(0, mPageCounts.removeFirst());
+            mFirstPage++;
+        }
+        submit();
+    }
+
+    /**
+     * Adds a page at the start of the window and drops the last page if the window is full.
+     */
+    private void prependPage(List<Article> articles) {
+        takeRestored();
+        mPageCounts.addFirst(addArticles(articles, 0));
+        mFirstPage--;
+
+        if (mPageCounts.size() > MAX_PAGES) {
+            int removed = mPageCounts.removeLast();
+            removeArticles(mArticles.size() - removed, removed);
+            mEndReached = false;
+        }
+        submit();
+    }
+
+    /**
+     * Inserts the articles that are not in the window yet at the position
+     * and returns how many were inserted.
+     */
+    private int addArticles(List<Article> articles, int position) {
+        int added = 0;
+        if (articles == null) {
+            return added;
+        }
+        for (Article article : articles) {
+            if (article.getId() == null || mIds.add(article.getId())) {
+                mArticles.add(position + added, article);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Moves the articles of a restored page into the window, so pages can be added to it.
+     */
+    private void takeRestored() {
+        if (mRestored == null) {
+            return;
+        }
+        for (Article article : mRestored) {
+            mArticles.add(article);
+            if (article.getId() != null) {
+                mIds.add(article.getId());
+            }
+        }
+        mRestored = null;
+    }
+
+    /**
+     * Removes the number of articles starting at the position.
+     */
+    private void removeArticles(int position, int count) {
+        List<Article> removed = mArticles.subList(position, position + count);
+        for (Article article : removed) {
+            mIds.remove(article.getId());
+        }
+        removed.clear();
+    }
+
+    /**
+     * Hands a copy of the window to the adapter, which diffs it against the rows it shows
+     * and only inserts or removes the rows that changed. Scroll position is kept because
+     * the rows have stable ids.
+     */
+    private void submit() {
+        mAdapter.submitList(new ArrayList<>(mArticles));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.android.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Searches the {@link ArticleStore} as the user types. Queries are debounced, so a burst of
+ * keystrokes runs a single search, and run off the main thread. Results of a query that has
+ * been superseded by a newer one are dropped.
+ */
+public class ArticleSearch {
+
+    /**
+     * Time the text has to stay unchanged before it is searched, in milliseconds
+     **/
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    /**
+     * Maximum number of results of a search
+     **/
+    private static final int MAX_RESULTS = 100;
+
+    /**
+     * Receives the results of the searches on the main thread.
+     */
+    public interface Listener {
+        void onSearchResults(String query, List<Article> results);
+    }
+
+    /**
+     * Runs the searches one at a time, off the main thread
+     **/
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Store that is searched
+     **/
+    private final ArticleStore mStore;
+
+    /**
+     * Listener notified of the results
+     **/
+    private final Listener mListener;
+
+    /**
+     * Handler that debounces the queries and delivers the results on the main thread
+     **/
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The latest query
+     **/
+    private String mQuery;
+
+    /**
+     * Incremented for every query, so the results of older queries can be told apart
+     **/
+    private int mGeneration;
+
+    /**
+     * Starts the search of the latest query once the user stops typing
+     **/
+    private final Runnable mSearch = new Runnable() {
+        @Override
+        public void run() {
+            final String query = mQuery;
+            final int generation = mGeneration;
+            sExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long searchStart = PipelineMetrics.now();
+                    final List<Article> results = mStore.search(query, MAX_RESULTS);
+                    PipelineMetrics.recordSince(PipelineMetrics.SEARCH, searchStart);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mGeneration) {
+                                mListener.onSearchResults(query, results);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    };
+
+    /**
+     * Constructs a new {@link ArticleSearch}.
+     * @param store    to search
+     * @param listener notified of the results on the main thread
+     */
+    public ArticleSearch(ArticleStore store, Listener listener) {
+        mStore = store;
+        mListener = listener;
+    }
+
+    /**
+     * Searches the text once it has not changed for a moment. Must be called on the main thread.
+     */
+    public void setQuery(String query) {
+        mQuery = query;
+        mGeneration++;
+        mMainHandler.removeCallbacks(mSearch);
+        mMainHandler.postDelayed(mSearch, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Drops the pending search and the results of any running one.
+     */
+    public void cancel() {
+        mGeneration++;
+        mMainHandler.removeCallbacks(mSearch);
+    }
+}
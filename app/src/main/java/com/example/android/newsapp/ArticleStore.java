@@ -0,0 +1,640 @@
+package com.example.android.newsapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.example.android.newsapp.ArticleContract.ArticleBodyEntry;
+import com.example.android.newsapp.ArticleContract.ArticleEntry;
+import com.example.android.newsapp.ArticleContract.ArticleSearchEntry;
+import com.example.android.newsapp.ArticleContract.FeedArticleEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent local store of {@link Article}s keyed by their Guardian id. Lets the feed be
+ * painted from disk on a cold start or while offline, before the network has answered.
+ */
+public final class ArticleStore {
+
+    /**
+     * Articles that have not been refreshed for longer than this are evicted
+     **/
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Maximum number of articles kept in the main feed
+     **/
+    private static final int MAX_COUNT = 500;
+
+    /**
+     * Maximum number of articles kept in the store. Articles that fell out of the main feed
+     * are still found by {@link #search}, so it covers more than the feed shows.
+     **/
+    private static final int MAX_SEARCH_COUNT = 5000;
+
+    /**
+     * Columns read back from the articles table
+     **/
+    private static final String[] PROJECTION = {
+            ArticleEntry.COLUMN_ARTICLE_ID,
+            ArticleEntry.COLUMN_TITLE,
+            ArticleEntry.COLUMN_SECTION,
+            ArticleEntry.COLUMN_AUTHORS,
+            ArticleEntry.COLUMN_PUBLICATION_TIME,
+            ArticleEntry.COLUMN_URL,
+            ArticleEntry.COLUMN_THUMBNAIL_URL
+    };
+
+    /**
+     * Columns read back for search results, with the match statistics of each result last
+     **/
+    private static final String SEARCH_QUERY = "SELECT "
+            + "a." + ArticleEntry.COLUMN_ARTICLE_ID + ", "
+            + "a." + ArticleEntry.COLUMN_TITLE + ", "
+            + "a." + ArticleEntry.COLUMN_SECTION + ", "
+            + "a." + ArticleEntry.COLUMN_AUTHORS + ", "
+            + "a." + ArticleEntry.COLUMN_PUBLICATION_TIME + ", "
+            + "a." + ArticleEntry.COLUMN_URL + ", "
+            + "a." + ArticleEntry.COLUMN_THUMBNAIL_URL + ", "
+            + "matchinfo(" + ArticleSearchEntry.TABLE_NAME + ", 'pcx')"
+            + " FROM " + ArticleSearchEntry.TABLE_NAME
+            + " JOIN " + ArticleEntry.TABLE_NAME + " a ON a." + ArticleEntry._ID
+            + " = " + ArticleSearchEntry.TABLE_NAME + "." + ArticleSearchEntry.DOCID
+            + " WHERE " + ArticleSearchEntry.TABLE_NAME + " MATCH ?";
+
+    /**
+     * Columns read back for the articles of a saved feed, in the order of the feed
+     **/
+    private static final String FEED_QUERY = "SELECT "
+            + "a." + ArticleEntry.COLUMN_ARTICLE_ID + ", "
+            + "a." + ArticleEntry.COLUMN_TITLE + ", "
+            + "a." + ArticleEntry.COLUMN_SECTION + ", "
+            + "a." + ArticleEntry.COLUMN_AUTHORS + ", "
+            + "a." + ArticleEntry.COLUMN_PUBLICATION_TIME + ", "
+            + "a." + ArticleEntry.COLUMN_URL + ", "
+            + "a." + ArticleEntry.COLUMN_THUMBNAIL_URL
+            + " FROM " + FeedArticleEntry.TABLE_NAME + " f"
+            + " JOIN " + ArticleEntry.TABLE_NAME + " a ON a." + ArticleEntry.COLUMN_ARTICLE_ID
+            + " = f." + FeedArticleEntry.COLUMN_ARTICLE_ID
+            + " WHERE f." + FeedArticleEntry.COLUMN_FEED_ID + " = ?"
+            + " ORDER BY f." + FeedArticleEntry.COLUMN_POSITION;
+
+    /**
+     * Weight of a match in the title, section and authors columns of the search index
+     **/
+    private static final double[] SEARCH_COLUMN_WEIGHTS = {3.0, 1.0, 2.0};
+
+    /**
+     * Maximum number of words of a search query
+     **/
+    private static final int MAX_SEARCH_TERMS = 8;
+
+    /**
+     * Best search results first, and newest first among equally good results
+     **/
+    private static final Comparator<ScoredArticle> BEST_MATCH_FIRST = new Comparator<ScoredArticle>() {
+        @Override
+        public int compare(ScoredArticle a, ScoredArticle b) {
+            if (a.mScore != b.mScore) {
+                return a.mScore < b.mScore ? 1 : -1;
+            }
+            long timeA = a.mArticle.getPublicationTime();
+            long timeB = b.mArticle.getPublicationTime();
+            return timeA < timeB ? 1 : (timeA == timeB ? 0 : -1);
+        }
+    };
+
+    /**
+     * Newest articles first, and articles published at the same time by id, so the pages
+     * that continue from an article line up with the first page
+     **/
+    private static final String SORT_ORDER = ArticleEntry.COLUMN_PUBLICATION_TIME + " DESC, "
+            + ArticleEntry.COLUMN_ARTICLE_ID + " DESC";
+
+    /**
+     * Oldest articles first, in the reverse order of {@link #SORT_ORDER}
+     **/
+    private static final String REVERSE_SORT_ORDER = ArticleEntry.COLUMN_PUBLICATION_TIME + " ASC, "
+            + ArticleEntry.COLUMN_ARTICLE_ID + " ASC";
+
+    /**
+     * Selects the articles of the main feed that come after an article in {@link #SORT_ORDER},
+     * and no older than a time
+     **/
+    private static final String OLDER_SELECTION = ArticleEntry.COLUMN_IN_MAIN_FEED + " = 1 AND ("
+            + ArticleEntry.COLUMN_PUBLICATION_TIME + " < ? OR (" + ArticleEntry.COLUMN_PUBLICATION_TIME
+            + " = ? AND " + ArticleEntry.COLUMN_ARTICLE_ID + " < ?)) AND "
+            + ArticleEntry.COLUMN_PUBLICATION_TIME + " >= ?";
+
+    /**
+     * Selects the articles of the main feed that come before an article in {@link #SORT_ORDER}
+     **/
+    private static final String NEWER_SELECTION = ArticleEntry.COLUMN_IN_MAIN_FEED + " = 1 AND ("
+            + ArticleEntry.COLUMN_PUBLICATION_TIME + " > ? OR (" + ArticleEntry.COLUMN_PUBLICATION_TIME
+            + " = ? AND " + ArticleEntry.COLUMN_ARTICLE_ID + " > ?))";
+
+    /**
+     * Selects the articles of the main feed, leaving out those only the saved feeds show
+     **/
+    private static final String MAIN_FEED_SELECTION = ArticleEntry.COLUMN_IN_MAIN_FEED + " = 1";
+
+    /**
+     * Single instance shared by the whole app
+     **/
+    private static ArticleStore sInstance;
+
+    /**
+     * Database helper that opens the articles database
+     **/
+    private final ArticleDbHelper mDbHelper;
+
+    /**
+     * Creates a store of its own, e.g. for tests. The app uses {@link #getInstance}.
+     */
+    ArticleStore(Context context) {
+        mDbHelper = new ArticleDbHelper(context);
+    }
+
+    /**
+     * Returns the single {@link ArticleStore} of the app.
+     */
+    public static synchronized ArticleStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a page of the stored {@link Article}s of the main feed, newest first.
+     * @param offset number of newer articles to skip
+     * @param limit  maximum number of articles to return
+     */
+    public List<Article> queryArticles(int offset, int limit) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(ArticleEntry.TABLE_NAME, PROJECTION,
+                MAIN_FEED_SELECTION, null, null, null, SORT_ORDER, offset + "," + limit);
+        return readArticles(cursor);
+    }
+
+    /**
+     * Returns a page of the stored {@link Article}s of the main feed that follow an article,
+     * newest first. Paging from the last article shown, rather than by offset, keeps the
+     * pages in line when newer articles are stored in between.
+     * @param time   publication time of the article the page follows
+     * @param id     of the article, or null to leave out every article published at the time
+     * @param oldest earliest publication time to return, e.g. as far back as the stored
+     *               articles are known to be complete
+     * @param limit  maximum number of articles to return
+     */
+    public List<Article> queryArticlesBefore(long time, String id, long oldest, int limit) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        String timeArg = String.valueOf(time);
+        Cursor cursor = db.query(ArticleEntry.TABLE_NAME, PROJECTION, OLDER_SELECTION,
+                new String[]{timeArg, timeArg, id == null ? "" : id, String.valueOf(oldest)},
+                null, null, SORT_ORDER, String.valueOf(limit));
+        return readArticles(cursor);
+    }
+
+    /**
+     * Returns the stored {@link Article}s of the main feed that precede an article, newest
+     * first: the closest ones to it, up to the limit.
+     * @param time  publication time of the article they precede
+     * @param id    of the article, or null to leave out every article published at the time
+     * @param limit maximum number of articles to return, or 0 to return all of them
+     */
+    public List<Article> queryArticlesAfter(long time, String id, int limit) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        String timeArg = String.valueOf(time);
+        Cursor cursor = db.query(ArticleEntry.TABLE_NAME, PROJECTION, NEWER_SELECTION,
+                new String[]{timeArg, timeArg, id == null ? "\uffff" : id},
+                null, null, REVERSE_SORT_ORDER, limit == 0 ? null : String.valueOf(limit));
+        List<Article> articles = readArticles(cursor);
+        Collections.reverse(articles);
+        return articles;
+    }
+
+    /**
+     * Returns the stored {@link Article}s whose title, section or authors contain every word
+     * of the text, best matches first. The last word may be incomplete, so the results can be
+     * updated as the user types.
+     * @param text  typed by the user
+     * @param limit maximum number of articles to return
+     */
+    public List<Article> search(String text, int limit) {
+        String match = buildMatchQuery(text);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SEARCH_QUERY, new String[]{match});
+
+        // FTS4 cannot rank by itself, so every match is scored from its match statistics.
+        List<ScoredArticle> results = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                Article article = new Article(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        splitAuthors(cursor.getString(3)),
+                        cursor.getLong(4),
+                        cursor.getString(5),
+                        cursor.getString(6));
+                results.add(new ScoredArticle(article, score(cursor.getBlob(7))));
+            }
+        } finally {
+            cursor.close();
+        }
+        Collections.sort(results, BEST_MATCH_FIRST);
+
+        List<Article> articles = new ArrayList<>(Math.min(limit, results.size()));
+        for (int i = 0; i < results.size() && i < limit; i++) {
+            articles.add(results.get(i).mArticle);
+        }
+        return articles;
+    }
+
+    /**
+     * Returns the FTS query that matches every word of the text, the words being prefixes,
+     * or null if the text has no words. Characters that are not letters or digits separate
+     * words, so the text cannot inject FTS operators.
+     */
+    static String buildMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        int terms = 0;
+        int i = 0;
+        while (i < text.length() && terms < MAX_SEARCH_TERMS) {
+            // Skip to the start of the next word.
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(text.substring(start, i).toLowerCase(Locale.ROOT)).append('*');
+                terms++;
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Returns the score of a result from its matchinfo('pcx') statistics. Each hit in a column
+     * counts by the weight of the column, and hits of words that are rare in the index count
+     * more than hits of common words.
+     */
+    static double score(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount && column < SEARCH_COLUMN_WEIGHTS.length; column++) {
+                // Hits in this row, hits in all rows, and rows with hits, of the phrase in the column.
+                int index = 2 + 3 * (phrase * columnCount + column);
+                int rowHits = info.get(index);
+                int allHits = info.get(index + 1);
+                if (rowHits > 0) {
+                    score += SEARCH_COLUMN_WEIGHTS[column] * rowHits / allHits;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Inserts the articles of the main feed, replacing any stored article with the same Guardian id.
+     */
+    public void upsert(List<Article> articles) {
+        if (articles == null || articles.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+
+        // Write every row in one transaction, so the batch costs a single disk sync.
+        db.beginTransaction();
+        try {
+            writeArticles(db, articles, true);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the articles of the saved feed. The articles are upserted like any other, and
+     * the feed only refers to them, so an article shown by several feeds is stored once.
+     * They are not added to the main feed.
+     */
+    public void putFeedArticles(String feedId, List<Article> articles) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            writeArticles(db, articles, false);
+            db.delete(FeedArticleEntry.TABLE_NAME, FeedArticleEntry.COLUMN_FEED_ID + " = ?",
+                    new String[]{feedId});
+            ContentValues values = new ContentValues();
+            int position = 0;
+            for (Article article : articles) {
+                if (article.getId() == null) {
+                    continue;
+                }
+                values.clear();
+                values.put(FeedArticleEntry.COLUMN_FEED_ID, feedId);
+                values.put(FeedArticleEntry.COLUMN_ARTICLE_ID, article.getId());
+                values.put(FeedArticleEntry.COLUMN_POSITION, position++);
+                db.insertWithOnConflict(FeedArticleEntry.TABLE_NAME, null, values,
+                        SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the stored articles of the saved feed, in the order of the feed.
+     */
+    public List<Article> queryFeedArticles(String feedId) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(FEED_QUERY, new String[]{feedId});
+        return readArticles(cursor);
+    }
+
+    /**
+     * Forgets the articles of a saved feed that was removed. The articles themselves are
+     * evicted like any other once no feed refers to them.
+     */
+    public void deleteFeed(String feedId) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.delete(FeedArticleEntry.TABLE_NAME, FeedArticleEntry.COLUMN_FEED_ID + " = ?",
+                new String[]{feedId});
+    }
+
+    /**
+     * Inserts the articles, or updates the stored articles with the same Guardian id. An
+     * article written for a saved feed stays in the main feed if it was in it, and a stored
+     * thumbnail is kept when the article was fetched without one, e.g. in data saver mode.
+     * Called within a transaction.
+     * @param mainFeed whether the articles are part of the main feed
+     */
+    private static void writeArticles(SQLiteDatabase db, List<Article> articles, boolean mainFeed) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        String[] selectionArgs = new String[1];
+        for (Article article : articles) {
+            // Articles without an id cannot be merged, so they are not stored.
+            if (article.getId() == null) {
+                continue;
+            }
+            values.clear();
+            values.put(ArticleEntry.COLUMN_TITLE, article.getArticleTitle());
+            values.put(ArticleEntry.COLUMN_SECTION, article.getSectionTitle());
+            values.put(ArticleEntry.COLUMN_AUTHORS, joinAuthors(article));
+            values.put(ArticleEntry.COLUMN_PUBLICATION_TIME, article.getPublicationTime());
+            values.put(ArticleEntry.COLUMN_URL, article.getUrl());
+            if (article.getThumbnailUrl() != null) {
+                values.put(ArticleEntry.COLUMN_THUMBNAIL_URL, article.getThumbnailUrl());
+            }
+            values.put(ArticleEntry.COLUMN_FETCHED_AT, now);
+            if (mainFeed) {
+                values.put(ArticleEntry.COLUMN_IN_MAIN_FEED, 1);
+            }
+
+            // Update the stored row in place, so the columns left out keep their values.
+            selectionArgs[0] = article.getId();
+            if (db.update(ArticleEntry.TABLE_NAME, values, ArticleEntry.COLUMN_ARTICLE_ID + " = ?",
+                    selectionArgs) == 0) {
+                values.put(ArticleEntry.COLUMN_ARTICLE_ID, article.getId());
+                db.insert(ArticleEntry.TABLE_NAME, null, values);
+            }
+        }
+    }
+
+    /**
+     * Returns the stored body of the article, or null if it has not been fetched.
+     */
+    public String getBody(String articleId) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(ArticleBodyEntry.TABLE_NAME, new String[]{ArticleBodyEntry.COLUMN_BODY},
+                ArticleBodyEntry.COLUMN_ARTICLE_ID + " = ?", new String[]{articleId}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the ids, out of the given ones, of the articles whose body is not stored yet.
+     */
+    public List<String> getIdsWithoutBody(List<String> articleIds) {
+        List<String> missing = new ArrayList<>(articleIds);
+        missing.removeAll(queryIds(ArticleBodyEntry.TABLE_NAME, ArticleBodyEntry.COLUMN_ARTICLE_ID, null, articleIds));
+        return missing;
+    }
+
+    /**
+     * Returns the ids, out of the given ones, of the articles stored in the main feed.
+     */
+    public Set<String> getStoredIds(List<String> articleIds) {
+        return queryIds(ArticleEntry.TABLE_NAME, ArticleEntry.COLUMN_ARTICLE_ID, MAIN_FEED_SELECTION, articleIds);
+    }
+
+    /**
+     * Returns the ids, out of the given ones, that are in the column of the table,
+     * looked up in a single query.
+     * @param filter further condition on the rows, or null
+     */
+    private Set<String> queryIds(String table, String column, String filter, List<String> ids) {
+        Set<String> found = new HashSet<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+
+        StringBuilder selection = new StringBuilder(column).append(" IN (?");
+        for (int i = 1; i < ids.size(); i++) {
+            selection.append(",?");
+        }
+        selection.append(')');
+        if (filter != null) {
+            selection.append(" AND ").append(filter);
+        }
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(table, new String[]{column},
+                selection.toString(), ids.toArray(new String[ids.size()]), null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                found.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return found;
+    }
+
+    /**
+     * Returns the publication time of the newest article of the main feed, or 0 if there is none.
+     */
+    public long getNewestPublicationTime() {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT MAX(" + ArticleEntry.COLUMN_PUBLICATION_TIME + ") FROM "
+                + ArticleEntry.TABLE_NAME + " WHERE " + MAIN_FEED_SELECTION, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores the bodies, by article id, replacing any body stored before.
+     */
+    public void putBodies(Map<String, String> bodies) {
+        if (bodies == null || bodies.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<String, String> body : bodies.entrySet()) {
+                values.clear();
+                values.put(ArticleBodyEntry.COLUMN_ARTICLE_ID, body.getKey());
+                values.put(ArticleBodyEntry.COLUMN_BODY, body.getValue());
+                values.put(ArticleBodyEntry.COLUMN_FETCHED_AT, now);
+                db.insertWithOnConflict(ArticleBodyEntry.TABLE_NAME, null, values,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Removes articles that are too old and trims the main feed and the store to their
+     * maximum sizes, so they cannot grow without bound.
+     */
+    public void evict() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+
+        // Drop articles that have not been seen in the feed for a long time.
+        long oldest = System.currentTimeMillis() - MAX_AGE_MILLIS;
+        db.delete(ArticleEntry.TABLE_NAME, ArticleEntry.COLUMN_FETCHED_AT + " < ?",
+                new String[]{String.valueOf(oldest)});
+
+        // Keep only the newest MAX_COUNT articles in the main feed. The older ones are kept
+        // for search.
+        ContentValues values = new ContentValues();
+        values.put(ArticleEntry.COLUMN_IN_MAIN_FEED, 0);
+        db.update(ArticleEntry.TABLE_NAME, values, MAIN_FEED_SELECTION + " AND " + ArticleEntry._ID
+                + " NOT IN (SELECT " + ArticleEntry._ID + " FROM " + ArticleEntry.TABLE_NAME
+                + " WHERE " + MAIN_FEED_SELECTION + " ORDER BY " + SORT_ORDER + " LIMIT " + MAX_COUNT + ")", null);
+
+        // Keep only the newest MAX_SEARCH_COUNT articles, besides those of the saved feeds,
+        // which may be older than all of them.
+        db.delete(ArticleEntry.TABLE_NAME, ArticleEntry._ID + " NOT IN (SELECT "
+                + ArticleEntry._ID + " FROM " + ArticleEntry.TABLE_NAME
+                + " ORDER BY " + SORT_ORDER + " LIMIT " + MAX_SEARCH_COUNT + ") AND "
+                + ArticleEntry.COLUMN_ARTICLE_ID + " NOT IN (SELECT "
+                + FeedArticleEntry.COLUMN_ARTICLE_ID + " FROM " + FeedArticleEntry.TABLE_NAME + ")", null);
+
+        // Drop the references of the saved feeds to the articles that are no longer stored.
+        db.delete(FeedArticleEntry.TABLE_NAME, FeedArticleEntry.COLUMN_ARTICLE_ID + " NOT IN (SELECT "
+                + ArticleEntry.COLUMN_ARTICLE_ID + " FROM " + ArticleEntry.TABLE_NAME + ")", null);
+
+        // Drop the bodies of the articles that are no longer in the main feed or a saved feed.
+        db.delete(ArticleBodyEntry.TABLE_NAME, ArticleBodyEntry.COLUMN_ARTICLE_ID + " NOT IN (SELECT "
+                + ArticleEntry.COLUMN_ARTICLE_ID + " FROM " + ArticleEntry.TABLE_NAME + " WHERE "
+                + MAIN_FEED_SELECTION + ") AND " + ArticleBodyEntry.COLUMN_ARTICLE_ID + " NOT IN (SELECT "
+                + FeedArticleEntry.COLUMN_ARTICLE_ID + " FROM " + FeedArticleEntry.TABLE_NAME + ")", null);
+    }
+
+    /**
+     * Reads the articles of the rows of the {@link #PROJECTION}, and closes the cursor.
+     */
+    private static List<Article> readArticles(Cursor cursor) {
+        List<Article> articles = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                articles.add(new Article(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        splitAuthors(cursor.getString(3)),
+                        cursor.getLong(4),
+                        cursor.getString(5),
+                        cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    /**
+     * Returns the names of the article's authors as stored in a single column, or null if it has none.
+     */
+    private static String joinAuthors(Article article) {
+        if (article.getAuthorCount() == 0) {
+            return null;
+        }
+        StringBuilder authors = new StringBuilder(article.getAuthorName(0));
+        for (int i = 1; i < article.getAuthorCount(); i++) {
+            authors.append(ArticleEntry.AUTHOR_SEPARATOR).append(article.getAuthorName(i));
+        }
+        return authors.toString();
+    }
+
+    /**
+     * Returns the names of the authors stored in a single column, or null if there are none.
+     */
+    private static String[] splitAuthors(String authors) {
+        if (TextUtils.isEmpty(authors)) {
+            return null;
+        }
+        return TextUtils.split(authors, ArticleEntry.AUTHOR_SEPARATOR);
+    }
+
+    /**
+     * A search result and its score.
+     */
+    private static final class ScoredArticle {
+        private final Article mArticle;
+        private final double mScore;
+
+        private ScoredArticle(Article article, double score) {
+            mArticle = article;
+            mScore = score;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.app.JobIntentService;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes the first page of the feed in the {@link ArticleStore} in the background,
+ * so opening the app shows fresh articles straight from disk. It runs as a job on API 26+,
+ * where a background app may not start services, and as a service before that.
+ */
+public class ArticleSyncService extends JobIntentService {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = ArticleSyncService.class.getSimpleName();
+
+    /**
+     * Id of the sync job, unique among the jobs of the app
+     **/
+    private static final int JOB_ID = 1000;
+
+    /**
+     * Starts a sync, e.g. when the sync alarm goes off while the app is in the background.
+     */
+    public static void enqueue(Context context) {
+        enqueueWork(context, ArticleSyncService.class, JOB_ID, new Intent(context, ArticleSyncService.class));
+    }
+
+    @Override
+    protected void onHandleWork(Intent intent) {
+        // Wait for the next alarm if the device is not on an allowed network or not charging.
+        if (!SyncScheduler.areConstraintsMet(this)) {
+            SyncScheduler.onSyncSkipped(this);
+            return;
+        }
+
+        // The feed was just refreshed in the foreground, so there is nothing new to fetch.
+        if (SyncScheduler.isRecentlyRefreshed(this)) {
+            SyncScheduler.onSyncSkipped(this);
+            return;
+        }
+
+        // Page the feed like the foreground loader on the current network, so the snapshot
+        // holds the first page the feed would show.
+        int sectionPageSize = NetworkPolicy.update(this).getPageSize();
+
+        // Fetch only the articles published since the newest stored one, or the first page
+        // if the store is empty or too far behind. Requests for a page the feed is already
+        // loading are coalesced by {@link QueryUtils}, so the same page is not fetched twice.
+        ArticleStore store = ArticleStore.getInstance(this);
+        // The delta watermark only moves once every section arrived.
+        List<Article> articles = DeltaSync.fetchNewArticles(this, store, null);
+        boolean synced = articles != null;
+        if (articles == null) {
+            List<String> urls = GuardianFeed.buildPageUrls(1, sectionPageSize);
+            final AtomicInteger loadedCount = new AtomicInteger();
+            articles = SectionFetchEngine.fetch(urls, new SectionFetchEngine.Listener() {
+                @Override
+                public void onQueryLoaded(String queryUrl, List<Article> sectionArticles) {
+                    loadedCount.incrementAndGet();
+                }
+
+                @Override
+                public void onQueryFailed(String queryUrl) {
+                    // The section is left behind, so the watermark stays where it was.
+                }
+            }, null);
+            synced = loadedCount.get() == urls.size();
+        }
+        if (articles == null) {
+            Log.e(LOG_TAG, "Background sync failed.");
+            SyncScheduler.onSyncFailed(this);
+            return;
+        }
+
+        store.upsert(articles);
+        if (synced) {
+            DeltaSync.onSynced(this, articles);
+        }
+        store.evict();
+        SyncScheduler.onRefreshSucceeded(this);
+
+        // The next start shows the refreshed feed straight from the snapshot.
+        FeedSnapshot.write(FeedSnapshot.getFile(this), store.queryArticles(0, GuardianFeed.getPageSize(sectionPageSize)));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.newsapp;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Loads the body of an article for the reader. The body is read from the {@link ArticleStore}
+ * if it was prefetched, and fetched from the network and stored otherwise.
+ */
+public class BodyLoader extends AsyncTaskLoader<String> {
+
+    /**
+     * Guardian id of the article
+     **/
+    private final String mArticleId;
+
+    /**
+     * Whether the body may be fetched from the network if it is not stored
+     **/
+    private final boolean mFetchFromNetwork;
+
+    /**
+     * The loaded body
+     **/
+    private String mBody;
+
+    /**
+     * Cancels the network request of the load in progress, if any
+     **/
+    private volatile CancellationToken mCancellation;
+
+    /**
+     * {@link BodyLoader} constructor.
+     * @param context          of the activity
+     * @param articleId        Guardian id of the article
+     * @param fetchFromNetwork is false when there is no connection and only a stored body can be shown
+     */
+    public BodyLoader(Context context, String articleId, boolean fetchFromNetwork) {
+        super(context);
+        mArticleId = articleId;
+        mFetchFromNetwork = fetchFromNetwork;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mBody != null) {
+            deliverResult(mBody);
+        } else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(String body) {
+        mBody = body;
+        super.deliverResult(body);
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        CancellationToken cancellation = mCancellation;
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * This performs on a background thread. Returns the body, or null if it is neither stored
+     * nor could be fetched.
+     */
+    @Override
+    public String loadInBackground() {
+        ArticleStore store = ArticleStore.getInstance(getContext());
+        String body = store.getBody(mArticleId);
+        if (body != null || !mFetchFromNetwork) {
+            return body;
+        }
+
+        CancellationToken cancellation = new CancellationToken();
+        mCancellation = cancellation;
+        Map<String, String> bodies = QueryUtils.fetchArticleBodies(
+                BodyPrefetcher.buildBodiesUrl(Collections.singletonList(mArticleId)), cancellation);
+        if (bodies == null) {
+            return null;
+        }
+        store.putBodies(bodies);
+        return bodies.get(mArticleId);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+        cancelLoadInBackground();
+        mBody = null;
+    }
+}
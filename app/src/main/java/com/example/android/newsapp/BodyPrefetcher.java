@@ -0,0 +1,145 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Process;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads the bodies of the articles the user is likely to open into the {@link ArticleStore},
+ * so the reader opens them without waiting for the network, and offline. Bodies are only
+ * prefetched over unmetered networks, and several are fetched with a single request.
+ */
+public final class BodyPrefetcher {
+
+    /**
+     * Maximum number of bodies fetched with a single request
+     **/
+    private static final int MAX_BODIES_PER_REQUEST = 10;
+
+    /**
+     * Field of the Guardian results that holds the plain text body
+     **/
+    static final String BODY_FIELD = "bodyText";
+
+    /**
+     * Single instance shared by the whole app
+     **/
+    private static BodyPrefetcher sInstance;
+
+    /**
+     * Context of the app, used to check the network and open the store
+     **/
+    private final Context mContext;
+
+    /**
+     * Runs the prefetches one at a time, off the main thread
+     **/
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Ids of the articles whose body is waiting to be prefetched or being prefetched
+     **/
+    private final Set<String> mPending = new HashSet<>();
+
+    private BodyPrefetcher(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Returns the single {@link BodyPrefetcher} of the app.
+     */
+    public static synchronized BodyPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BodyPrefetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the URL of the Guardian query for the bodies of the articles.
+     */
+    static String buildBodiesUrl(List<String> articleIds) {
+        return new GuardianQuery()
+                .ids(articleIds.toArray(new String[articleIds.size()]))
+                .pageSize(articleIds.size())
+                .showFields(BODY_FIELD)
+                .build();
+    }
+
+    /**
+     * Prefetches the bodies of the articles that are not stored yet, if the device is on an
+     * unmetered network. Returns immediately.
+     */
+    public void prefetch(List<Article> articles) {
+        if (articles == null || articles.isEmpty() || !isOnUnmeteredNetwork()) {
+            return;
+        }
+
+        final List<String> ids = new ArrayList<>(articles.size());
+        synchronized (mPending) {
+            for (Article article : articles) {
+                String id = article.getId();
+                if (id != null && mPending.add(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    fetchMissingBodies(ids);
+                } finally {
+                    synchronized (mPending) {
+                        mPending.removeAll(ids);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches and stores the bodies of the articles that are not stored yet. Runs on a background thread.
+     */
+    private void fetchMissingBodies(List<String> ids) {
+        ArticleStore store = ArticleStore.getInstance(mContext);
+        List<String> missing = store.getIdsWithoutBody(ids);
+
+        CancellationToken token = new CancellationToken();
+        for (int start = 0; start < missing.size(); start += MAX_BODIES_PER_REQUEST) {
+            // Stop if the network became metered since the prefetch was asked for.
+            if (!isOnUnmeteredNetwork()) {
+                return;
+            }
+            List<String> batch = missing.subList(start, Math.min(missing.size(), start + MAX_BODIES_PER_REQUEST));
+            Map<String, String> bodies = QueryUtils.fetchArticleBodies(buildBodiesUrl(batch), token);
+            store.putBodies(bodies);
+        }
+    }
+
+    /**
+     * Returns true if the device is connected to a network that is not metered.
+     */
+    private boolean isOnUnmeteredNetwork() {
+        ConnectivityManager connectManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connectManager);
+    }
+}
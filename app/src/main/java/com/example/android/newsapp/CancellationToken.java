@@ -0,0 +1,116 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Signals that an operation is no longer wanted, e.g. because the loader that started it
+ * was superseded. Blocking work registers a listener that aborts it, such as closing the
+ * connection a response is being read from.
+ */
+public final class CancellationToken {
+
+    /**
+     * Listeners to run when the token is cancelled
+     **/
+    private final List<Runnable> mListeners = new ArrayList<>();
+
+    /**
+     * Whether the token has been cancelled
+     **/
+    private boolean mCanceled;
+
+    /**
+     * Cancels the token and runs its listeners on the calling thread. Has no effect if it
+     * was already cancelled.
+     */
+    public void cancel() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+            // Wake up the threads waiting in sleep().
+            notifyAll();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Returns true if the token has been cancelled.
+     */
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the token has been cancelled.
+     */
+    public void throwIfCanceled() {
+        if (isCanceled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Waits for the time, or until the token is cancelled. Returns false if it was cancelled.
+     */
+    public synchronized boolean sleep(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (!mCanceled && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return !mCanceled;
+    }
+
+    /**
+     * Adds a listener that is run when the token is cancelled, or right away if it already was.
+     */
+    public void addOnCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Returns a new token that is cancelled along with this one, but can also be cancelled on
+     * its own, e.g. when one of several requests times out. Cancelling the child unhooks it
+     * from this token.
+     */
+    public CancellationToken createChild() {
+        final CancellationToken child = new CancellationToken();
+        final Runnable cancelChild = new Runnable() {
+            @Override
+            public void run() {
+                child.cancel();
+            }
+        };
+        addOnCancelListener(cancelChild);
+        child.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                removeOnCancelListener(cancelChild);
+            }
+        });
+        return child;
+    }
+
+    /**
+     * Removes a listener, e.g. once the work it would abort has finished.
+     */
+    public synchronized void removeOnCancelListener(Runnable listener) {
+        mListeners.remove(listener);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.newsapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to a server that keeps failing, so the app falls back to cached
+ * data straight away instead of waiting on timeouts and retries. After a number of failures
+ * in a row the circuit opens and requests are refused for a while; then a single request is
+ * let through, and its outcome closes the circuit again or reopens it. Apart from that, the
+ * circuit can be blocked for a fixed time, e.g. until the quota of the API is renewed, which
+ * no successful request ends early.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * Number of failures in a row that opens the circuit
+     **/
+    private final int mFailureThreshold;
+
+    /**
+     * Time the circuit stays open before a request is tried again, in nanoseconds
+     **/
+    private final long mOpenNanos;
+
+    /**
+     * Number of failures in a row so far
+     **/
+    private int mFailureCount;
+
+    /**
+     * Whether requests are being refused
+     **/
+    private boolean mOpen;
+
+    /**
+     * Time until which requests are refused, from {@link System#nanoTime()}
+     **/
+    private long mOpenUntilNanos;
+
+    /**
+     * Whether the single request let through after the open time is still running
+     **/
+    private boolean mProbing;
+
+    /**
+     * Time until which requests are refused whatever their outcomes, from {@link System#nanoTime()}
+     **/
+    private long mBlockedUntilNanos;
+
+    /**
+     * Constructs a closed {@link CircuitBreaker}.
+     * @param failureThreshold number of failures in a row that opens the circuit
+     * @param openMillis       time the circuit stays open before a request is tried again
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        mBlockedUntilNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns true if a request may be sent. Once the open time is over, only one request is
+     * allowed until its outcome is known.
+     */
+    public synchronized boolean allowRequest() {
+        if (isBlocked()) {
+            return false;
+        }
+        if (!mOpen) {
+            return true;
+        }
+        if (mProbing || mOpenUntilNanos - System.nanoTime() > 0) {
+            return false;
+        }
+        mProbing = true;
+        return true;
+    }
+
+    /**
+     * Records a successful request, which closes the circuit.
+     */
+    public synchronized void onSuccess() {
+        mFailureCount = 0;
+        mOpen = false;
+        mProbing = false;
+    }
+
+    /**
+     * Records a failed request, which opens the circuit after too many failures in a row,
+     * or reopens it if it was the request let through to try the server again.
+     */
+    public synchronized void onFailure() {
+        mFailureCount++;
+        if (mProbing || mFailureCount >= mFailureThreshold) {
+            open(mOpenNanos);
+        }
+    }
+
+    /**
+     * Records a request that was given up before its outcome was known, so that another
+     * request may try the server.
+     */
+    public synchronized void onCanceled() {
+        mProbing = false;
+    }
+
+    /**
+     * Refuses every request for the time, e.g. because the daily quota of the API is used up
+     * or the server asked to retry much later. Unlike a circuit opened by failures, the block
+     * is not lifted by a request that succeeds meanwhile. A longer block already in place is kept.
+     */
+    public synchronized void blockFor(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - mBlockedUntilNanos > 0) {
+            mBlockedUntilNanos = until;
+        }
+    }
+
+    /**
+     * Returns true if requests are being refused.
+     */
+    public synchronized boolean isOpen() {
+        return mOpen || isBlocked();
+    }
+
+    private boolean isBlocked() {
+        return mBlockedUntilNanos - System.nanoTime() > 0;
+    }
+
+    private void open(long nanos) {
+        mOpen = true;
+        mProbing = false;
+        mOpenUntilNanos = System.nanoTime() + nanos;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches only the articles published since the last sync, instead of full pages of the
+ * feed. Each section is asked for its newest articles from shortly before the watermark, a
+ * small page at a time, and paging stops as soon as an article that is already stored shows
+ * up. A refresh with no new articles repeats the same small query, which the
+ * {@link HttpCache} revalidates without a body.
+ * The watermark is the newest article of the last refresh in which every section arrived,
+ * rather than the newest stored article, which moves forward with a single section or a live
+ * update and would leave the articles of a lagging section behind it.
+ */
+public final class DeltaSync {
+
+    /**
+     * Number of articles asked for per page of a section
+     **/
+    private static final int DELTA_PAGE_SIZE = 10;
+
+    /**
+     * Maximum number of pages fetched per section. A section with more new articles than
+     * this needs a full refresh instead.
+     **/
+    private static final int MAX_DELTA_PAGES = 3;
+
+    /**
+     * How far before the watermark the query starts, so that articles which
+     * show up in the API a little after their publication time are not missed, and so a
+     * stored article shows up to stop the paging
+     **/
+    private static final long OVERLAP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Format of the from-date and to-date of the queries
+     **/
+    private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    /**
+     * Name of the preferences file holding the watermark, and its key
+     **/
+    private static final String PREFS_NAME = "delta_sync";
+    private static final String KEY_WATERMARK = "watermark";
+
+    /**
+     * A private constructor for {@link DeltaSync} because methods are static.
+     */
+    private DeltaSync() {
+    }
+
+    /**
+     * Returns the articles of every section that are not stored yet, newest first, or an empty
+     * list if there are none. Returns null if the feed has to be refreshed with full pages
+     * instead: the store is empty, a section has more new articles than the delta pages hold,
+     * a request failed, or the token was cancelled. Once the articles are stored, the caller
+     * passes them to {@link #onSynced}.
+     * @param context of the app, holding the watermark
+     * @param store   to compare the fetched articles with
+     * @param token   cancels the requests, or null
+     */
+    public static List<Article> fetchNewArticles(Context context, ArticleStore store, CancellationToken token) {
+        long watermark = getPrefs(context).getLong(KEY_WATERMARK, 0);
+        if (watermark == 0 || store.getNewestPublicationTime() == 0) {
+            return null;
+        }
+        String fromDate = formatDate(watermark - OVERLAP_MILLIS);
+
+        List<Article> newArticles = new ArrayList<>();
+        List<String> sections = GuardianFeed.getSections();
+        for (int page = 1; !sections.isEmpty(); page++) {
+            // Too many new articles to catch up on a small page at a time.
+            if (page > MAX_DELTA_PAGES) {
+                return null;
+            }
+
+            // Fetch the page of every section that has not reached a stored article yet.
+            final Map<String, String> sectionsByUrl = new HashMap<>();
+            for (String section : sections) {
+                sectionsByUrl.put(GuardianFeed.buildDeltaUrl(section, fromDate, page, DELTA_PAGE_SIZE), section);
+            }
+            final Map<String, List<Article>> results = new HashMap<>();
+            SectionFetchEngine.fetch(new ArrayList<>(sectionsByUrl.keySet()), new SectionFetchEngine.Listener() {
+                @Override
+                public void onQueryLoaded(String queryUrl, List<Article> articles) {
+                    results.put(queryUrl, articles);
+                }
+
+                @Override
+                public void onQueryFailed(String queryUrl) {
+                    // The missing result makes the delta fall back to full pages.
+                }
+            }, token);
+
+            // A section that failed could hide new articles, so it cannot be skipped.
+            if ((token != null && token.isCanceled()) || results.size() < sectionsByUrl.size()) {
+                return null;
+            }
+
+            List<String> nextSections = new ArrayList<>();
+            for (Map.Entry<String, List<Article>> result : results.entrySet()) {
+                if (!addNewArticles(store, result.getValue(), newArticles)) {
+                    nextSections.add(sectionsByUrl.get(result.getKey()));
+                }
+            }
+            sections = nextSections;
+        }
+        return SectionFetchEngine.mergeNewestFirst(newArticles);
+    }
+
+    /**
+     * Moves the watermark to the newest of the articles, once they are stored. Only called
+     * after a refresh in which every section arrived, so every section is caught up to it.
+     * @param context  of the app, holding the watermark
+     * @param articles of the refresh, which may be empty
+     */
+    public static synchronized void onSynced(Context context, List<Article> articles) {
+        SharedPreferences prefs = getPrefs(context);
+        long watermark = prefs.getLong(KEY_WATERMARK, 0);
+        long newest = watermark;
+        for (Article article : articles) {
+            newest = Math.max(newest, article.getPublicationTime());
+        }
+        if (newest != watermark) {
+            prefs.edit().putLong(KEY_WATERMARK, newest).apply();
+        }
+    }
+
+    /**
+     * Adds the articles of a page that are not stored to the list. Returns true if the section
+     * is caught up: a stored article showed up, or the page was the last one.
+     */
+    private static boolean addNewArticles(ArticleStore store, List<Article> page, List<Article> newArticles) {
+        List<String> ids = new ArrayList<>(page.size());
+        for (Article article : page) {
+            if (article.getId() != null) {
+                ids.add(article.getId());
+            }
+        }
+        Set<String> storedIds = store.getStoredIds(ids);
+
+        boolean reachedStored = false;
+        for (Article article : page) {
+            if (article.getId() != null && storedIds.contains(article.getId())) {
+                reachedStored = true;
+            } else {
+                newArticles.add(article);
+            }
+        }
+        return reachedStored || page.size() < DELTA_PAGE_SIZE;
+    }
+
+    /**
+     * Returns the time as a from-date or to-date of the Guardian API, in UTC.
+     */
+    static String formatDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
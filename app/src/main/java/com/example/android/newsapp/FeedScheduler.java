@@ -0,0 +1,409 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the {@link SavedFeed}s for every tab through one queue, instead of a loader per
+ * tab. The visible tab is fetched first, at most {@link #MAX_CONCURRENT_FETCHES} feeds are
+ * fetched at a time on the thread pool of the {@link SectionFetchEngine}, and a feed is not
+ * fetched again while it is queued, being fetched or fresh. Articles that several feeds share
+ * are kept as a single instance in memory and a single row in the {@link ArticleStore}, so
+ * following more topics costs little more than the articles that are new to the app.
+ */
+public final class FeedScheduler {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = FeedScheduler.class.getSimpleName();
+
+    /**
+     * Maximum number of feeds fetched at the same time. The fetches share the pool of the
+     * main feed, so this leaves it threads of its own.
+     **/
+    private static final int MAX_CONCURRENT_FETCHES = 2;
+
+    /**
+     * Time during which a fetched feed is not fetched again unless the user asks for it
+     **/
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Maximum number of article instances shared between the feeds
+     **/
+    private static final int MAX_SHARED_ARTICLES = 500;
+
+    /**
+     * Receives the articles of the feeds.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread with the articles of the feed, first those stored and
+         * then those fetched, or with null if the fetch failed. Nothing is passed for a feed
+         * forgotten while it was fetched.
+         */
+        void onFeedLoaded(SavedFeed feed, List<Article> articles);
+    }
+
+    /**
+     * Single instance shared by the whole app
+     **/
+    private static FeedScheduler sInstance;
+
+    /**
+     * Context of the app, used to open the store
+     **/
+    private final Context mContext;
+
+    /**
+     * Posts the articles of the feeds to the main thread
+     **/
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Feeds waiting to be fetched, in the order they were asked for, by id
+     **/
+    private final LinkedHashMap<String, SavedFeed> mPending = new LinkedHashMap<>();
+
+    /**
+     * Cancellation of the feeds being fetched, by id. The token of a forgotten feed is
+     * cancelled, and its fetch stays here until it ends.
+     **/
+    private final Map<String, CancellationToken> mRunning = new HashMap<>();
+
+    /**
+     * Writes and deletes the articles of the feeds one at a time, in the order they were asked
+     * for, so the articles of a forgotten feed are never written after it was deleted
+     **/
+    private final ExecutorService mStoreExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Time each feed was last fetched, from {@link SystemClock#elapsedRealtime()}, by id
+     **/
+    private final Map<String, Long> mFetchedAt = new HashMap<>();
+
+    /**
+     * Id of the feed of the visible tab, fetched before the others, or null
+     **/
+    private String mVisibleFeedId;
+
+    /**
+     * Latest articles of each feed, by id. Only used on the main thread.
+     **/
+    private final Map<String, List<Article>> mFeeds = new HashMap<>();
+
+    /**
+     * Listeners of the feeds. Only used on the main thread.
+     **/
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    /**
+     * Single instance of each article the feeds show, by Guardian id
+     **/
+    private final LruCache<String, Article> mSharedArticles = new LruCache<>(MAX_SHARED_ARTICLES);
+
+    /**
+     * Creates a scheduler of its own, e.g. for tests. The app uses {@link #getInstance}.
+     */
+    FeedScheduler(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Returns the single {@link FeedScheduler} of the app.
+     */
+    public static synchronized FeedScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FeedScheduler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Adds a listener of the feeds. Called on the main thread.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener of the feeds. Called on the main thread.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns the latest articles of the feed, or null if none were loaded yet. Called on the main thread.
+     */
+    public List<Article> getArticles(SavedFeed feed) {
+        return mFeeds.get(feed.getId());
+    }
+
+    /**
+     * Makes the feed the one fetched first, and fetches it unless it is fresh.
+     * @param feed of the visible tab, or null if no saved feed is visible
+     */
+    public void setVisibleFeed(SavedFeed feed) {
+        synchronized (this) {
+            mVisibleFeedId = feed == null ? null : feed.getId();
+        }
+        if (feed != null) {
+            request(feed, false);
+        }
+    }
+
+    /**
+     * Fetches the feeds that are not fresh, after the visible one.
+     */
+    public void requestAll(List<SavedFeed> feeds) {
+        for (SavedFeed feed : feeds) {
+            request(feed, false);
+        }
+    }
+
+    /**
+     * Queues the feed to be fetched, unless it is queued or being fetched already. A feed
+     * followed again while its forgotten fetch still runs is fetched once that fetch ends.
+     * @param feed  to fetch
+     * @param force if it is fetched even when it is fresh, e.g. when the user pulls to refresh
+     */
+    public synchronized void request(SavedFeed feed, boolean force) {
+        String id = feed.getId();
+        if (mPending.containsKey(id) || isRunning(id)) {
+            return;
+        }
+        Long fetchedAt = mFetchedAt.get(id);
+        if (!force && fetchedAt != null
+                && SystemClock.elapsedRealtime() - fetchedAt < MIN_REFRESH_INTERVAL_MILLIS) {
+            return;
+        }
+        mPending.put(id, feed);
+        dispatch();
+    }
+
+    /**
+     * Returns true if the feed is queued or being fetched.
+     */
+    public synchronized boolean isLoading(SavedFeed feed) {
+        return mPending.containsKey(feed.getId()) || isRunning(feed.getId());
+    }
+
+    /**
+     * Returns true if the feed is being fetched and was not forgotten since.
+     */
+    private boolean isRunning(String id) {
+        CancellationToken token = mRunning.get(id);
+        return token != null && !token.isCanceled();
+    }
+
+    /**
+     * Drops the feed once the user no longer follows it, and cancels its fetch. Called on the
+     * main thread.
+     */
+    public void forget(SavedFeed feed) {
+        final String id = feed.getId();
+        CancellationToken running;
+        synchronized (this) {
+            mPending.remove(id);
+            mFetchedAt.remove(id);
+            running = mRunning.get(id);
+        }
+        if (running != null) {
+            running.cancel();
+        }
+        mFeeds.remove(id);
+        // Queued behind any write of the feed that already checked its token.
+        mStoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ArticleStore.getInstance(mContext).deleteFeed(id);
+            }
+        });
+    }
+
+    /**
+     * Starts fetching the next feeds while fewer than the maximum are being fetched, the
+     * visible one first and then in the order they were asked for.
+     */
+    private synchronized void dispatch() {
+        while (mRunning.size() < MAX_CONCURRENT_FETCHES) {
+            final SavedFeed feed = takeNext();
+            if (feed == null) {
+                return;
+            }
+            final CancellationToken token = new CancellationToken();
+            mRunning.put(feed.getId(), token);
+
+            SectionFetchEngine.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<Article> articles = null;
+                    try {
+                        articles = fetch(feed, token);
+                    } finally {
+                        onFetchFinished(feed, token, articles != null);
+                    }
+                    // Delivered once the feed is no longer loading, so the listeners see it done.
+                    deliver(feed, articles, token);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes and returns the next feed to fetch, the visible one first and then the oldest,
+     * or null if none can start. A feed whose forgotten fetch still runs waits for it to end.
+     */
+    private SavedFeed takeNext() {
+        if (mVisibleFeedId != null && !mRunning.containsKey(mVisibleFeedId)) {
+            SavedFeed visible = mPending.remove(mVisibleFeedId);
+            if (visible != null) {
+                return visible;
+            }
+        }
+        Iterator<SavedFeed> pending = mPending.values().iterator();
+        while (pending.hasNext()) {
+            SavedFeed feed = pending.next();
+            if (!mRunning.containsKey(feed.getId())) {
+                pending.remove();
+                return feed;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void onFetchFinished(SavedFeed feed, CancellationToken token, boolean fetched) {
+        mRunning.remove(feed.getId());
+        if (fetched && !token.isCanceled()) {
+            mFetchedAt.put(feed.getId(), SystemClock.elapsedRealtime());
+        }
+        dispatch();
+    }
+
+    /**
+     * Shows the stored articles of the feed the first time it is fetched, then fetches it and
+     * stores it. Returns the articles fetched, or null if the fetch failed or the feed was
+     * forgotten. Runs on a background thread.
+     */
+    private List<Article> fetch(SavedFeed feed, CancellationToken token) {
+        ArticleStore store = ArticleStore.getInstance(mContext);
+        boolean firstFetch;
+        synchronized (this) {
+            firstFetch = !mFetchedAt.containsKey(feed.getId());
+        }
+        if (firstFetch) {
+            List<Article> stored = store.queryFeedArticles(feed.getId());
+            if (!stored.isEmpty()) {
+                deliver(feed, share(stored), token);
+            }
+        }
+
+        List<Article> articles = QueryUtils.fetchArticleData(feed.buildUrl(), token);
+        if (articles == null || token.isCanceled()) {
+            return null;
+        }
+        articles = share(articles);
+        return store(feed, articles, token) ? articles : null;
+    }
+
+    /**
+     * Writes the articles of the feed on the store thread, and returns true once they are
+     * written, or false if the feed was forgotten first. Runs on a background thread.
+     */
+    private boolean store(final SavedFeed feed, final List<Article> articles, final CancellationToken token) {
+        FutureTask<Boolean> write = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                // Checked on the store thread: either forget() came first and its deletion is
+                // done, or the deletion it queues runs after this write.
+                if (token.isCanceled()) {
+                    return false;
+                }
+                ArticleStore.getInstance(mContext).putFeedArticles(feed.getId(), articles);
+                return true;
+            }
+        });
+        mStoreExecutor.execute(write);
+        try {
+            return write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Problem storing the feed " + feed.getId(), e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the articles with each one replaced by the instance other feeds already hold,
+     * unless it changed since.
+     */
+    private List<Article> share(List<Article> articles) {
+        List<Article> shared = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            if (article.getId() == null) {
+                shared.add(article);
+                continue;
+            }
+            Article held = mSharedArticles.get(article.getId());
+            if (held != null && isSameContent(held, article)) {
+                shared.add(held);
+            } else {
+                mSharedArticles.put(article.getId(), article);
+                shared.add(article);
+            }
+        }
+        return shared;
+    }
+
+    private static boolean isSameContent(Article a, Article b) {
+        return TextUtils.equals(a.getArticleTitle(), b.getArticleTitle())
+                && TextUtils.equals(a.getSectionTitle(), b.getSectionTitle())
+                && a.hasSameAuthors(b)
+                && TextUtils.equals(a.getThumbnailUrl(), b.getThumbnailUrl())
+                && a.getPublicationTime() == b.getPublicationTime();
+    }
+
+    /**
+     * Hands the articles of the feed to the listeners on the main thread, unless the feed is
+     * forgotten by then.
+     */
+    private void deliver(final SavedFeed feed, final List<Article> articles, final CancellationToken token) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // forget() runs on the main thread too, so this sees its cancellation.
+                if (token.isCanceled()) {
+                    return;
+                }
+                if (articles != null) {
+                    mFeeds.put(feed.getId(), articles);
+                }
+                for (Listener listener : new ArrayList<>(mListeners)) {
+                    listener.onFeedLoaded(feed, articles);
+                }
+            }
+        });
+    }
+}
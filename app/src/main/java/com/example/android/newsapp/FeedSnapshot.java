@@ -0,0 +1,456 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Compact binary copy of the first page of the feed, so a new process shows the feed it
+ * last had without parsing JSON or querying the database. The file is memory mapped and
+ * rows are only decoded when the list asks for them, so opening it takes about the same
+ * time for a thousand articles as for ten.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * header:  int magic, int version, int article count, int string count, int string table offset
+ * index:   int offset of each article
+ * strings: int offset of each shared string, then each string
+ * article: string id, string title, int section, long publication time, string url,
+ *          string thumbnail url, short author count, int author of each
+ * </pre>
+ * Strings are an int length followed by UTF-8 bytes, with a length of -1 for null. Sections
+ * and authors repeat across articles, so they are kept once in the string table and
+ * articles refer to them by index, -1 meaning none.
+ */
+public final class FeedSnapshot {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = FeedSnapshot.class.getSimpleName();
+
+    /**
+     * Name of the snapshot file in the files directory
+     **/
+    private static final String FILE_NAME = "feed.snapshot";
+
+    /**
+     * First bytes of every snapshot, "NWSS"
+     **/
+    private static final int MAGIC = 0x4E575353;
+
+    /**
+     * Version of the layout. Snapshots of another version are ignored.
+     **/
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header, in bytes
+     **/
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Held while a snapshot is written, so concurrent writers do not share the temporary file
+     **/
+    private static final Object WRITE_LOCK = new Object();
+
+    /**
+     * Contents of the mapped file
+     **/
+    private final ByteBuffer mBuffer;
+
+    /**
+     * Number of articles and shared strings
+     **/
+    private final int mArticleCount;
+    private final int mStringCount;
+
+    /**
+     * Offset of the string table
+     **/
+    private final int mStringTableOffset;
+
+    /**
+     * Articles and shared strings decoded so far, so each is decoded once and shared
+     **/
+    private final Article[] mArticles;
+    private final String[] mStrings;
+
+    /**
+     * Buffer the bytes of a string are copied into before decoding, grown as needed
+     **/
+    private byte[] mScratch = new byte[256];
+
+    private FeedSnapshot(ByteBuffer buffer, int articleCount, int stringCount, int stringTableOffset) {
+        mBuffer = buffer;
+        mArticleCount = articleCount;
+        mStringCount = stringCount;
+        mStringTableOffset = stringTableOffset;
+        mArticles = new Article[articleCount];
+        mStrings = new String[stringCount];
+    }
+
+    /**
+     * Returns the snapshot file of the app.
+     */
+    public static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Maps the snapshot file. Returns null if there is none, if it is not a snapshot of
+     * this version, or if it is truncated or corrupted.
+     */
+    public static FeedSnapshot open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid once the file is closed, and once it is replaced.
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return null;
+            }
+            int articleCount = buffer.getInt(8);
+            int stringCount = buffer.getInt(12);
+            int stringTableOffset = buffer.getInt(16);
+            if (articleCount < 0 || stringCount < 0 || HEADER_SIZE + 4L * articleCount > stringTableOffset
+                    || stringTableOffset + 4L * stringCount > size) {
+                return null;
+            }
+            FeedSnapshot snapshot = new FeedSnapshot(buffer, articleCount, stringCount, stringTableOffset);
+            if (!snapshot.isWellFormed()) {
+                Log.w(LOG_TAG, "Ignoring a corrupted feed snapshot.");
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the feed snapshot.", e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Replaces the snapshot file with the articles. The snapshot is written to a temporary
+     * file that is renamed over the old one, so a reader never sees a partial snapshot.
+     * Writers are serialized, since the loader, its late sections and the background sync
+     * share the temporary file. Called on a background thread.
+     */
+    public static boolean write(File file, List<Article> articles) {
+        synchronized (WRITE_LOCK) {
+            return writeLocked(file, articles);
+        }
+    }
+
+    private static boolean writeLocked(File file, List<Article> articles) {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+            byte[] bytes = encode(articles);
+            output = new FileOutputStream(temp);
+            output.write(bytes);
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the feed snapshot.", e);
+            closeQuietly(output);
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if every record and shared string lies within the file, so the rows can be
+     * decoded later without bounds checks. Only the lengths are read, which takes far less
+     * than decoding the rows.
+     */
+    private boolean isWellFormed() {
+        int limit = mBuffer.limit();
+        for (int i = 0; i < mStringCount; i++) {
+            if (skipString(mBuffer.getInt(mStringTableOffset + 4 * i), limit) < 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < mArticleCount; i++) {
+            int offset = mBuffer.getInt(HEADER_SIZE + 4 * i);
+
+            // Id and title, then the section and the publication time.
+            offset = skipString(skipString(offset, limit), limit);
+            if (offset < 0 || offset > limit - 12) {
+                return false;
+            }
+            offset += 12;
+
+            // Url and thumbnail url, then the authors.
+            offset = skipString(skipString(offset, limit), limit);
+            if (offset < 0 || offset > limit - 2) {
+                return false;
+            }
+            int authorCount = mBuffer.getShort(offset);
+            offset += 2;
+            if (authorCount < 0 || offset > limit - 4L * authorCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset after the length-prefixed string at the offset, or -1 if the offset
+     * is -1 or the string does not lie within the limit.
+     */
+    private int skipString(int offset, int limit) {
+        if (offset < 0 || offset > limit - 4) {
+            return -1;
+        }
+        int length = mBuffer.getInt(offset);
+        offset += 4;
+        if (length == -1) {
+            return offset;
+        }
+        if (length < 0 || length > limit - offset) {
+            return -1;
+        }
+        return offset + length;
+    }
+
+    /**
+     * Returns the number of articles of the snapshot.
+     */
+    public int size() {
+        return mArticleCount;
+    }
+
+    /**
+     * Returns the article at the position, decoding it the first time it is asked for.
+     */
+    public synchronized Article get(int position) {
+        Article article = mArticles[position];
+        if (article == null) {
+            article = decodeArticle(mBuffer.getInt(HEADER_SIZE + 4 * position));
+            mArticles[position] = article;
+        }
+        return article;
+    }
+
+    /**
+     * Returns the articles as a list that decodes each of them only when it is read, so it
+     * can be handed to the adapter without decoding the rows that are never shown.
+     */
+    public List<Article> asList() {
+        return new SnapshotList();
+    }
+
+    /**
+     * Decodes the article whose record starts at the offset.
+     */
+    private Article decodeArticle(int offset) {
+        int[] position = {offset};
+        String id = readString(position);
+        String title = readString(position);
+        String section = sharedString(readInt(position));
+        long publicationTime = mBuffer.getLong(position[0]);
+        position[0] += 8;
+        String url = readString(position);
+        String thumbnailUrl = readString(position);
+
+        int authorCount = mBuffer.getShort(position[0]);
+        position[0] += 2;
+        String[] authors = null;
+        if (authorCount > 0) {
+            authors = new String[authorCount];
+            for (int i = 0; i < authorCount; i++) {
+                authors[i] = sharedString(readInt(position));
+            }
+        }
+        return new Article(id, title, section, authors, publicationTime, url, thumbnailUrl);
+    }
+
+    /**
+     * Returns the shared string at the index of the string table, or null for -1.
+     */
+    private String sharedString(int index) {
+        if (index < 0 || index >= mStringCount) {
+            return null;
+        }
+        String string = mStrings[index];
+        if (string == null) {
+            int[] position = {mBuffer.getInt(mStringTableOffset + 4 * index)};
+            string = readString(position);
+            mStrings[index] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Reads the int at the position and moves the position past it.
+     */
+    private int readInt(int[] position) {
+        int value = mBuffer.getInt(position[0]);
+        position[0] += 4;
+        return value;
+    }
+
+    /**
+     * Reads the length-prefixed string at the position and moves the position past it.
+     */
+    private String readString(int[] position) {
+        int length = readInt(position);
+        if (length < 0) {
+            return null;
+        }
+        if (mScratch.length < length) {
+            mScratch = new byte[Math.max(length, 2 * mScratch.length)];
+        }
+        // Only absolute reads are used, so the position of the shared buffer never moves.
+        for (int i = 0; i < length; i++) {
+            mScratch[i] = mBuffer.get(position[0] + i);
+        }
+        position[0] += length;
+        return new String(mScratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Encodes the articles in the snapshot layout.
+     */
+    static byte[] encode(List<Article> articles) throws IOException {
+        // The shared strings are numbered in the order they first appear.
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        // Encode the articles first, recording where each one starts.
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(articles.size() * 256);
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] recordOffsets = new int[articles.size()];
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            recordOffsets[i] = records.size();
+            writeString(records, article.getId());
+            writeString(records, article.getArticleTitle());
+            records.writeInt(indexOf(article.getSectionTitle(), indexes, strings));
+            records.writeLong(article.getPublicationTime());
+            writeString(records, article.getUrl());
+            writeString(records, article.getThumbnailUrl());
+            records.writeShort(article.getAuthorCount());
+            for (int a = 0; a < article.getAuthorCount(); a++) {
+                records.writeInt(indexOf(article.getAuthorName(a), indexes, strings));
+            }
+        }
+
+        // Then the shared strings.
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream stringData = new DataOutputStream(stringBytes);
+        int[] stringOffsets = new int[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            stringOffsets[i] = stringData.size();
+            writeString(stringData, strings.get(i));
+        }
+
+        // Lay out the header, the index, the string table and the articles.
+        int stringTableOffset = HEADER_SIZE + 4 * articles.size();
+        int stringsOffset = stringTableOffset + 4 * strings.size();
+        int recordsOffset = stringsOffset + stringData.size();
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream(recordsOffset + records.size());
+        DataOutputStream output = new DataOutputStream(snapshot);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(articles.size());
+        output.writeInt(strings.size());
+        output.writeInt(stringTableOffset);
+        for (int offset : recordOffsets) {
+            output.writeInt(recordsOffset + offset);
+        }
+        for (int offset : stringOffsets) {
+            output.writeInt(stringsOffset + offset);
+        }
+        stringBytes.writeTo(output);
+        recordBytes.writeTo(output);
+        output.flush();
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * Returns the index of the shared string, adding it to the table the first time, or -1 for null.
+     */
+    private static int indexOf(String string, Map<String, Integer> indexes, List<String> strings) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem closing the feed snapshot.", e);
+        }
+    }
+
+    /**
+     * Read-only list view of the snapshot that decodes articles on access.
+     */
+    private class SnapshotList extends AbstractList<Article> implements RandomAccess {
+        @Override
+        public Article get(int location) {
+            return FeedSnapshot.this.get(location);
+        }
+
+        @Override
+        public int size() {
+            return mArticleCount;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tabs of the main feed, first, and of the {@link SavedFeed}s, in a horizontal strip above
+ * the list of articles.
+ */
+public class FeedTabAdapter extends RecyclerView.Adapter<FeedTabAdapter.TabViewHolder> {
+
+    /**
+     * Receives the taps on the tabs.
+     */
+    public interface OnTabClickListener {
+        /**
+         * Called when a tab is tapped, with its feed, or null for the main feed.
+         */
+        void onTabClick(SavedFeed feed);
+
+        /**
+         * Called when the tab of a saved feed is long pressed.
+         */
+        void onTabLongClick(SavedFeed feed);
+    }
+
+    /**
+     * Title of the tab of the main feed
+     **/
+    private final String mMainFeedTitle;
+
+    private final OnTabClickListener mListener;
+
+    /**
+     * Saved feeds, in the order of their tabs
+     **/
+    private final List<SavedFeed> mFeeds = new ArrayList<>();
+
+    /**
+     * Id of the feed of the selected tab, or null for the main feed
+     **/
+    private String mSelectedId;
+
+    /**
+     * Constructs a new {@link FeedTabAdapter}.
+     * @param mainFeedTitle title of the tab of the main feed
+     * @param listener      receives the taps on the tabs
+     */
+    public FeedTabAdapter(String mainFeedTitle, OnTabClickListener listener) {
+        mMainFeedTitle = mainFeedTitle;
+        mListener = listener;
+    }
+
+    /**
+     * Replaces the saved feeds.
+     */
+    public void setFeeds(List<SavedFeed> feeds) {
+        mFeeds.clear();
+        mFeeds.addAll(feeds);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Returns the saved feeds, in the order of their tabs.
+     */
+    public List<SavedFeed> getFeeds() {
+        return mFeeds;
+    }
+
+    /**
+     * Selects the tab of the feed, or of the main feed if it is null.
+     */
+    public void setSelectedFeed(SavedFeed feed) {
+        mSelectedId = feed == null ? null : feed.getId();
+        notifyDataSetChanged();
+    }
+
+    static class TabViewHolder extends RecyclerView.ViewHolder {
+        final TextView titleView;
+
+        TabViewHolder(TextView view) {
+            super(view);
+            titleView = view;
+        }
+    }
+
+    @Override
+    public TabViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        TextView view = (TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.feed_tab, parent, false);
+        final TabViewHolder holder = new TabViewHolder(view);
+        view.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    mListener.onTabClick(getFeed(position));
+                }
+            }
+        });
+        view.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position == RecyclerView.NO_POSITION || getFeed(position) == null) {
+                    return false;
+                }
+                mListener.onTabLongClick(getFeed(position));
+                return true;
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(TabViewHolder holder, int position) {
+        SavedFeed feed = getFeed(position);
+        holder.titleView.setText(feed == null ? mMainFeedTitle : feed.getTitle());
+        holder.titleView.setSelected(feed == null ? mSelectedId == null : feed.getId().equals(mSelectedId));
+    }
+
+    @Override
+    public int getItemCount() {
+        return mFeeds.size() + 1;
+    }
+
+    /**
+     * Returns the feed of the tab at the position, or null for the main feed.
+     */
+    private SavedFeed getFeed(int position) {
+        return position == 0 ? null : mFeeds.get(position - 1);
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.android.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Printer;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how smoothly the article list runs: the duration of every frame, the frames
+ * that missed their vsync, the rows of {@link ArticleAdapter} that were slow to bind and
+ * the messages that stalled the main thread. It is switched on and off at runtime, and its
+ * summary can be exported to compare builds.
+ * <p>
+ * Frame durations come from {@link FrameMetrics} on Android 7.0 and later, and from the
+ * interval between {@link Choreographer} frames before, which only sees the frames the
+ * main thread was late for.
+ */
+public final class FrameMonitor {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    /**
+     * A bind longer than this takes a large share of a frame
+     **/
+    private static final long SLOW_BIND_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /**
+     * A main thread message longer than this stalls the UI visibly
+     **/
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * A frame longer than this is frozen rather than janky
+     **/
+    private static final long FROZEN_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(700);
+
+    /**
+     * Time after the list's data is swapped during which frames are also counted separately
+     **/
+    private static final long SWAP_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Duration of every frame, and of the frames right after the list's data was swapped
+     **/
+    public static final Histogram FRAME_TIME = new Histogram("frame_time", "us");
+    public static final Histogram FRAME_TIME_AFTER_SWAP = new Histogram("frame_time_after_swap", "us");
+
+    /**
+     * Duration of every row bind
+     **/
+    public static final Histogram BIND = new Histogram("bind", "us");
+
+    /**
+     * Duration of the main thread messages that stalled it
+     **/
+    public static final Histogram STALL = new Histogram("stall", "ms");
+
+    /**
+     * All histograms
+     **/
+    private static final Histogram[] ALL = {FRAME_TIME, FRAME_TIME_AFTER_SWAP, BIND, STALL};
+
+    /**
+     * Counters of the frames and binds
+     **/
+    private static final AtomicInteger sFrameCount = new AtomicInteger();
+    private static final AtomicInteger sJankyFrameCount = new AtomicInteger();
+    private static final AtomicInteger sFrozenFrameCount = new AtomicInteger();
+    private static final AtomicInteger sJankyFrameAfterSwapCount = new AtomicInteger();
+    private static final AtomicInteger sBindCount = new AtomicInteger();
+    private static final AtomicInteger sSlowBindCount = new AtomicInteger();
+
+    /**
+     * Whether the monitor is running. Read on every bind, so it is a plain volatile flag.
+     **/
+    private static volatile boolean sEnabled;
+
+    /**
+     * Duration of a vsync period of the display, in nanoseconds
+     **/
+    private static volatile long sFrameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    /**
+     * Time the list's data was last swapped, from {@link System#nanoTime()}
+     **/
+    private static volatile long sSwapNanos;
+
+    /**
+     * Source of the frame durations while the monitor is running
+     **/
+    private static FrameSource sFrameSource;
+
+    /**
+     * A private constructor for {@link FrameMonitor} because methods are static.
+     */
+    private FrameMonitor() {
+    }
+
+    /**
+     * Starts measuring the frames of the activity's window and the main thread. Called on
+     * the main thread.
+     */
+    public static void start(Activity activity) {
+        if (sEnabled) {
+            return;
+        }
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        if (refreshRate > 0) {
+            sFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            sFrameSource = new FrameMetricsSource(activity.getWindow());
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            sFrameSource = new ChoreographerSource();
+        }
+        if (sFrameSource != null) {
+            sFrameSource.start();
+        }
+        Looper.getMainLooper().setMessageLogging(new StallDetector());
+        sEnabled = true;
+    }
+
+    /**
+     * Stops measuring. The recorded numbers are kept until {@link #reset()}.
+     */
+    public static void stop() {
+        if (!sEnabled) {
+            return;
+        }
+        sEnabled = false;
+        if (sFrameSource != null) {
+            sFrameSource.stop();
+            sFrameSource = null;
+        }
+        Looper.getMainLooper().setMessageLogging(null);
+    }
+
+    /**
+     * Returns true while the monitor is running.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns the start time of a bind, or 0 if the monitor is not running.
+     */
+    public static long beginBind() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a bind that began at the time returned by {@link #beginBind()}.
+     */
+    public static void endBind(long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        BIND.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        sBindCount.incrementAndGet();
+        if (nanos > SLOW_BIND_NANOS) {
+            sSlowBindCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks that the list's data was just swapped, so the frames that follow are also
+     * counted on their own.
+     */
+    public static void onDataSwapped() {
+        if (sEnabled) {
+            sSwapNanos = System.nanoTime();
+        }
+    }
+
+    public static int getFrameCount() {
+        return sFrameCount.get();
+    }
+
+    public static int getJankyFrameCount() {
+        return sJankyFrameCount.get();
+    }
+
+    public static int getFrozenFrameCount() {
+        return sFrozenFrameCount.get();
+    }
+
+    public static int getSlowBindCount() {
+        return sSlowBindCount.get();
+    }
+
+    /**
+     * Returns the share of frames that missed their vsync, between 0 and 1.
+     */
+    public static double getJankRatio() {
+        int frames = sFrameCount.get();
+        return frames == 0 ? 0 : (double) sJankyFrameCount.get() / frames;
+    }
+
+    /**
+     * Records the duration of a frame.
+     */
+    private static void recordFrame(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        FRAME_TIME.record(micros);
+        sFrameCount.incrementAndGet();
+
+        // A frame is janky when it took longer than a vsync period, with some slack for
+        // the jitter of the measurement.
+        boolean janky = nanos > sFrameIntervalNanos * 3 / 2;
+        if (janky) {
+            sJankyFrameCount.incrementAndGet();
+        }
+        if (nanos > FROZEN_FRAME_NANOS) {
+            sFrozenFrameCount.incrementAndGet();
+        }
+        if (System.nanoTime() - sSwapNanos < SWAP_WINDOW_NANOS) {
+            FRAME_TIME_AFTER_SWAP.record(micros);
+            if (janky) {
+                sJankyFrameAfterSwapCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns a human readable summary of the frames, binds and stalls.
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder("Frame metrics: frames=").append(sFrameCount.get())
+                .append(" janky=").append(sJankyFrameCount.get())
+                .append(" (").append(Math.round(getJankRatio() * 1000) / 10.0).append("%)")
+                .append(" frozen=").append(sFrozenFrameCount.get())
+                .append(" janky after swap=").append(sJankyFrameAfterSwapCount.get())
+                .append(" binds=").append(sBindCount.get())
+                .append(" slow binds=").append(sSlowBindCount.get());
+        for (Histogram histogram : ALL) {
+            dump.append('\n').append(histogram);
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Returns the counters and histograms as JSON, so they can be compared between builds.
+     */
+    public static String exportJson() {
+        JSONObject export = new JSONObject();
+        try {
+            export.put("frames", sFrameCount.get());
+            export.put("janky_frames", sJankyFrameCount.get());
+            export.put("frozen_frames", sFrozenFrameCount.get());
+            export.put("janky_frames_after_swap", sJankyFrameAfterSwapCount.get());
+            export.put("binds", sBindCount.get());
+            export.put("slow_binds", sSlowBindCount.get());
+            for (Histogram histogram : ALL) {
+                long[] p = histogram.getPercentiles(50, 95, 99);
+                JSONObject values = new JSONObject();
+                values.put("unit", histogram.getUnit());
+                values.put("count", histogram.getCount());
+                values.put("p50", p[0]);
+                values.put("p95", p[1]);
+                values.put("p99", p[2]);
+                export.put(histogram.getName(), values);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem exporting the frame metrics.", e);
+        }
+        return export.toString();
+    }
+
+    /**
+     * Forgets every frame, bind and stall.
+     */
+    public static void reset() {
+        for (Histogram histogram : ALL) {
+            histogram.reset();
+        }
+        sFrameCount.set(0);
+        sJankyFrameCount.set(0);
+        sFrozenFrameCount.set(0);
+        sJankyFrameAfterSwapCount.set(0);
+        sBindCount.set(0);
+        sSlowBindCount.set(0);
+    }
+
+    /**
+     * Reports the duration of each frame to {@link #recordFrame(long)}.
+     */
+    private interface FrameSource {
+        void start();
+
+        void stop();
+    }
+
+    /**
+     * Reads the duration of every rendered frame from the window.
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private static final class FrameMetricsSource implements FrameSource,
+            Window.OnFrameMetricsAvailableListener {
+
+        private final Window mWindow;
+        private HandlerThread mThread;
+
+        FrameMetricsSource(Window window) {
+            mWindow = window;
+        }
+
+        @Override
+        public void start() {
+            // The metrics are delivered off the main thread, so reading them adds no jank.
+            mThread = new HandlerThread(LOG_TAG);
+            mThread.start();
+            mWindow.addOnFrameMetricsAvailableListener(this, new Handler(mThread.getLooper()));
+        }
+
+        @Override
+        public void stop() {
+            mWindow.removeOnFrameMetricsAvailableListener(this);
+            mThread.quit();
+        }
+
+        @Override
+        public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+            recordFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+        }
+    }
+
+    /**
+     * Takes the interval between two frames of the main thread as the duration of the first.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerSource implements FrameSource, Choreographer.FrameCallback {
+
+        private long mLastFrameNanos;
+        private boolean mRunning;
+
+        @Override
+        public void start() {
+            mRunning = true;
+            mLastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void stop() {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRunning) {
+                return;
+            }
+            if (mLastFrameNanos != 0) {
+                recordFrame(frameTimeNanos - mLastFrameNanos);
+            }
+            mLastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Times every message of the main thread from the lines the {@link Looper} logs around it.
+     */
+    private static final class StallDetector implements Printer {
+
+        private long mDispatchNanos;
+
+        @Override
+        public void println(String line) {
+            if (line.startsWith(">>>>> Dispatching")) {
+                mDispatchNanos = System.nanoTime();
+            } else if (line.startsWith("<<<<< Finished") && mDispatchNanos != 0) {
+                long nanos = System.nanoTime() - mDispatchNanos;
+                mDispatchNanos = 0;
+                if (nanos > STALL_NANOS) {
+                    STALL.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+                    if (BuildConfig.DEBUG) {
+                        Log.w(LOG_TAG, "Main thread stalled for " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                                + " ms by " + line);
+                    }
+                }
+            }
+        }
+    }
+}
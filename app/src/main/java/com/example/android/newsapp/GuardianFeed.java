@@ -0,0 +1,127 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Guardian queries that make up the article feed.
+ */
+public final class GuardianFeed {
+
+    /**
+     * Guardian sections that are fetched at the same time and merged into the feed
+     **/
+    private static final String[] SECTIONS = {"politics", "world", "business", "technology"};
+
+    /**
+     * Optional fields of the results that the feed shows
+     **/
+    static final String FEED_FIELDS = "thumbnail";
+
+    /**
+     * A private constructor for {@link GuardianFeed} because methods are static.
+     */
+    private GuardianFeed() {
+    }
+
+    /**
+     * Returns the optional fields the feed asks for on the current network: none once the
+     * {@link NetworkPolicy} leaves out thumbnails, so their URLs are not downloaded either.
+     */
+    static String[] getFeedFields() {
+        return NetworkPolicy.current().showsThumbnails() ? new String[]{FEED_FIELDS} : new String[0];
+    }
+
+    /**
+     * Returns the Guardian URLs of a page of the feed, one for each section.
+     */
+    public static List<String> buildPageUrls(int page) {
+        return buildPageUrls(page, ArticlePager.PAGE_SIZE);
+    }
+
+    /**
+     * Returns the Guardian URLs of a page of the feed, one for each section.
+     * @param page            of the results, starting at 1
+     * @param sectionPageSize number of articles per page of each section
+     */
+    public static List<String> buildPageUrls(int page, int sectionPageSize) {
+        String[] fields = getFeedFields();
+        List<String> urls = new ArrayList<>(SECTIONS.length);
+        for (String section : SECTIONS) {
+            urls.add(new GuardianQuery()
+                    .section(section)
+                    .page(page)
+                    .pageSize(sectionPageSize)
+                    .showFields(fields)
+                    .build());
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the Guardian URLs of the newest articles of each section published at or before
+     * the time, e.g. that of the last article shown, so a page of the feed can continue from it.
+     * @param time            latest publication time, in milliseconds
+     * @param sectionPageSize number of articles asked for from each section
+     */
+    public static List<String> buildOlderPageUrls(long time, int sectionPageSize) {
+        String toDate = DeltaSync.formatDate(time);
+        String[] fields = getFeedFields();
+        List<String> urls = new ArrayList<>(SECTIONS.length);
+        for (String section : SECTIONS) {
+            urls.add(new GuardianQuery()
+                    .section(section)
+                    .toDate(toDate)
+                    .pageSize(sectionPageSize)
+                    .showFields(fields)
+                    .build());
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the number of articles on a page of the feed, which holds a page of every
+     * section with the given page size.
+     */
+    public static int getPageSize(int sectionPageSize) {
+        return sectionPageSize * SECTIONS.length;
+    }
+
+    /**
+     * Returns the Guardian sections the feed is made of.
+     */
+    public static List<String> getSections() {
+        return Collections.unmodifiableList(Arrays.asList(SECTIONS));
+    }
+
+    /**
+     * Returns the Guardian URL of a page of the section's articles published at or after the date.
+     * @param section  to fetch
+     * @param fromDate earliest publication date, in ISO 8601
+     * @param page     of the results, starting at 1
+     * @param pageSize number of results per page
+     */
+    public static String buildDeltaUrl(String section, String fromDate, int page, int pageSize) {
+        return new GuardianQuery()
+                .section(section)
+                .fromDate(fromDate)
+                .page(page)
+                .pageSize(pageSize)
+                .showFields(getFeedFields())
+                .build();
+    }
+
+    /**
+     * Returns the Guardian URL of the articles with the ids, e.g. those announced by the
+     * {@link LiveUpdateChannel}.
+     */
+    public static String buildArticlesUrl(List<String> ids) {
+        return new GuardianQuery()
+                .ids(ids.toArray(new String[ids.size()]))
+                .pageSize(ids.size())
+                .showFields(getFeedFields())
+                .build();
+    }
+}
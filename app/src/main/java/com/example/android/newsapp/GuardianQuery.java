@@ -0,0 +1,188 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+/**
+ * Builds the URL of a Guardian search query that asks only for what the app shows. Results
+ * carry their id, title, section, date and URL by default, so no optional fields are asked
+ * for unless {@link #showFields} is used, and the only tags asked for are the contributors.
+ */
+public final class GuardianQuery {
+
+    /**
+     * Path of the search endpoint of the Guardian content API
+     **/
+    private static final String SEARCH_PATH = "search";
+
+    /**
+     * Base URL of the Guardian content API, which tests point at a local server
+     **/
+    private static volatile String sBaseUrl = BuildConfig.GUARDIAN_BASE_URL;
+
+    /**
+     * Type of the tags that name the authors of an article
+     **/
+    private static final String CONTRIBUTOR_TAGS = "contributor";
+
+    /**
+     * Section to search, or null for all sections
+     **/
+    private String mSection;
+
+    /**
+     * Words the results must match, or null for any
+     **/
+    private String mQuery;
+
+    /**
+     * Tag the results must have, e.g. a contributor, or null for any
+     **/
+    private String mTag;
+
+    /**
+     * Page of the results, starting at 1
+     **/
+    private int mPage = 1;
+
+    /**
+     * Number of results per page
+     **/
+    private int mPageSize = ArticlePager.PAGE_SIZE;
+
+    /**
+     * Optional fields of the results to ask for, or null for none
+     **/
+    private String[] mFields;
+
+    /**
+     * Ids of the articles to return, or null for any article
+     **/
+    private String[] mIds;
+
+    /**
+     * Earliest publication date of the results, in ISO 8601, or null for no limit
+     **/
+    private String mFromDate;
+
+    /**
+     * Latest publication date of the results, in ISO 8601, or null for no limit
+     **/
+    private String mToDate;
+
+    /**
+     * Sends the queries built from now on to another server, e.g. a local mock of the API,
+     * or back to the Guardian if the URL is null.
+     */
+    static void setBaseUrl(String baseUrl) {
+        sBaseUrl = baseUrl == null ? BuildConfig.GUARDIAN_BASE_URL : baseUrl;
+    }
+
+    /**
+     * Sets the section to search.
+     */
+    public GuardianQuery section(String section) {
+        mSection = section;
+        return this;
+    }
+
+    /**
+     * Restricts the results to the articles that match the words, e.g. "brexit".
+     */
+    public GuardianQuery query(String query) {
+        mQuery = query;
+        return this;
+    }
+
+    /**
+     * Restricts the results to the articles with the tag, e.g. "profile/georgemonbiot".
+     */
+    public GuardianQuery tag(String tag) {
+        mTag = tag;
+        return this;
+    }
+
+    /**
+     * Sets the page of the results, starting at 1.
+     */
+    public GuardianQuery page(int page) {
+        mPage = page;
+        return this;
+    }
+
+    /**
+     * Sets the number of results per page.
+     */
+    public GuardianQuery pageSize(int pageSize) {
+        mPageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Asks for optional fields of the results, such as "body".
+     */
+    public GuardianQuery showFields(String... fields) {
+        mFields = fields;
+        return this;
+    }
+
+    /**
+     * Restricts the results to the articles with the ids, so several articles can be
+     * fetched in a single request.
+     */
+    public GuardianQuery ids(String... ids) {
+        mIds = ids;
+        return this;
+    }
+
+    /**
+     * Restricts the results to the articles published at or after the date, in ISO 8601.
+     */
+    public GuardianQuery fromDate(String fromDate) {
+        mFromDate = fromDate;
+        return this;
+    }
+
+    /**
+     * Restricts the results to the articles published at or before the date, in ISO 8601.
+     */
+    public GuardianQuery toDate(String toDate) {
+        mToDate = toDate;
+        return this;
+    }
+
+    /**
+     * Returns the URL of the query.
+     */
+    public String build() {
+        Uri.Builder builder = Uri.parse(sBaseUrl).buildUpon().appendPath(SEARCH_PATH);
+        if (mSection != null) {
+            builder.appendQueryParameter("section", mSection);
+        }
+        if (mQuery != null) {
+            builder.appendQueryParameter("q", mQuery);
+        }
+        if (mTag != null) {
+            builder.appendQueryParameter("tag", mTag);
+        }
+        if (mIds != null && mIds.length > 0) {
+            builder.appendQueryParameter("ids", TextUtils.join(",", mIds));
+        }
+        if (mFromDate != null) {
+            builder.appendQueryParameter("from-date", mFromDate);
+        }
+        if (mToDate != null) {
+            builder.appendQueryParameter("to-date", mToDate);
+        }
+        builder.appendQueryParameter("order-by", "newest")
+                .appendQueryParameter("page", String.valueOf(mPage))
+                .appendQueryParameter("page-size", String.valueOf(mPageSize))
+                .appendQueryParameter("show-tags", CONTRIBUTOR_TAGS);
+        if (mFields != null && mFields.length > 0) {
+            builder.appendQueryParameter("show-fields", TextUtils.join(",", mFields));
+        }
+        return builder.appendQueryParameter("api-key", BuildConfig.GUARDIAN_API_KEY)
+                .build()
+                .toString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe histogram of the most recent samples of a measurement, e.g. a latency in
+ * milliseconds or a size in bytes. It keeps a fixed number of samples, so it never grows,
+ * and computes percentiles over them when asked.
+ */
+public final class Histogram {
+
+    /**
+     * Number of most recent samples kept
+     **/
+    private static final int MAX_SAMPLES = 1024;
+
+    /**
+     * Name of the measurement
+     **/
+    private final String mName;
+
+    /**
+     * Unit of the samples, e.g. "ms"
+     **/
+    private final String mUnit;
+
+    /**
+     * Ring buffer of the most recent samples
+     **/
+    private final long[] mSamples = new long[MAX_SAMPLES];
+
+    /**
+     * Total number of samples ever recorded
+     **/
+    private long mCount;
+
+    /**
+     * Sum of all samples ever recorded
+     **/
+    private long mSum;
+
+    public Histogram(String name, String unit) {
+        mName = name;
+        mUnit = unit;
+    }
+
+    /**
+     * Returns the name of the measurement.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the unit of the samples.
+     */
+    public String getUnit() {
+        return mUnit;
+    }
+
+    /**
+     * Records a sample.
+     */
+    public synchronized void record(long value) {
+        mSamples[(int) (mCount % MAX_SAMPLES)] = value;
+        mCount++;
+        mSum += value;
+    }
+
+    /**
+     * Returns the number of samples ever recorded.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the mean of all samples ever recorded, or 0 if there are none.
+     */
+    public synchronized long getMean() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * Returns the given percentiles, between 0 and 100, of the most recent samples.
+     * All of them are 0 if there are no samples.
+     */
+    public long[] getPercentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(mSamples, (int) Math.min(mCount, MAX_SAMPLES));
+        }
+        Arrays.sort(sorted);
+
+        long[] values = new long[percentiles.length];
+        if (sorted.length == 0) {
+            return values;
+        }
+        for (int i = 0; i < percentiles.length; i++) {
+            // Nearest-rank percentile.
+            int rank = (int) Math.ceil(percentiles[i] / 100.0 * sorted.length);
+            values[i] = sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+        return values;
+    }
+
+    /**
+     * Forgets all samples.
+     */
+    public synchronized void reset() {
+        mCount = 0;
+        mSum = 0;
+    }
+
+    @Override
+    public String toString() {
+        long[] p = getPercentiles(50, 95, 99);
+        return mName + ": count=" + getCount() + " mean=" + getMean() + mUnit
+                + " p50=" + p[0] + mUnit + " p95=" + p[1] + mUnit + " p99=" + p[2] + mUnit;
+    }
+}
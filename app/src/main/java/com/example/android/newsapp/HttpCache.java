@@ -0,0 +1,500 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded disk cache of Guardian responses used by {@link QueryUtils}. It remembers the
+ * ETag, Last-Modified and Cache-Control max-age of each response, so fresh responses are
+ * served without a request and stale ones are revalidated with a conditional request.
+ * The articles parsed from recent responses are kept in memory, so a fresh hit or a
+ * 304 Not Modified also skips the parse.
+ */
+public final class HttpCache {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = HttpCache.class.getSimpleName();
+
+    /**
+     * Number of parsed responses kept in memory
+     **/
+    private static final int MAX_MEMORY_ENTRIES = 8;
+
+    /**
+     * File name suffixes of the metadata and body of an entry
+     **/
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The cache used by {@link QueryUtils}, or null if none is installed
+     **/
+    private static volatile HttpCache sInstalled;
+
+    /**
+     * Directory holding the cached responses
+     **/
+    private final File mDirectory;
+
+    /**
+     * Maximum number of bytes used on disk
+     **/
+    private final long mMaxSize;
+
+    /**
+     * Entries that were used recently, in least recently used order
+     **/
+    private final Map<String, Entry> mMemoryEntries =
+            new LinkedHashMap<String, Entry>(MAX_MEMORY_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_MEMORY_ENTRIES;
+                }
+            };
+
+    /**
+     * Counters exposed to measure how much the cache saves
+     **/
+    private final AtomicInteger mHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+    private final AtomicInteger mRevalidationCount = new AtomicInteger();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    private HttpCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Creates a cache in the directory and installs it for {@link QueryUtils}.
+     * @param directory to store the responses in
+     * @param maxSize   maximum number of bytes used on disk
+     */
+    public static HttpCache install(File directory, long maxSize) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the cache directory " + directory);
+        }
+        HttpCache cache = new HttpCache(directory, maxSize);
+        sInstalled = cache;
+        return cache;
+    }
+
+    /**
+     * Returns the installed cache, or null if there is none.
+     */
+    public static HttpCache getInstalled() {
+        return sInstalled;
+    }
+
+    /**
+     * Returns the number of responses served from the cache without a request.
+     */
+    public int getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Returns the number of responses that had to be downloaded.
+     */
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Returns the number of stale responses the server confirmed as unchanged.
+     */
+    public int getRevalidationCount() {
+        return mRevalidationCount.get();
+    }
+
+    /**
+     * Returns the number of body bytes that did not have to be downloaded.
+     */
+    public long getBytesSaved() {
+        return mBytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCache{hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", revalidations=" + getRevalidationCount()
+                + ", bytesSaved=" + getBytesSaved() + "}";
+    }
+
+    /**
+     * Returns the cached entry for the URL, or null if the response is not cached.
+     */
+    synchronized Entry get(String url) {
+        Entry entry = mMemoryEntries.get(url);
+        if (entry != null) {
+            return entry;
+        }
+
+        String key = keyFor(url);
+        File metaFile = new File(mDirectory, key + META_SUFFIX);
+        File bodyFile = new File(mDirectory, key + BODY_SUFFIX);
+        if (!metaFile.exists() || !bodyFile.exists()) {
+            return null;
+        }
+
+        try {
+            entry = readMeta(key, metaFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cache entry for " + url, e);
+            return null;
+        }
+        // Another URL with the same key overwrote the entry.
+        if (!url.equals(entry.mUrl)) {
+            return null;
+        }
+        mMemoryEntries.put(url, entry);
+        return entry;
+    }
+
+    /**
+     * Adds If-None-Match and If-Modified-Since headers for the cached entry to the request.
+     */
+    static void addConditionalHeaders(HttpURLConnection urlConnection, Entry entry) {
+        if (entry.mETag != null) {
+            urlConnection.setRequestProperty("If-None-Match", entry.mETag);
+        }
+        if (entry.mLastModified != null) {
+            urlConnection.setRequestProperty("If-Modified-Since", entry.mLastModified);
+        }
+    }
+
+    /**
+     * Records a response served from a fresh entry.
+     */
+    void recordHit(Entry entry) {
+        mHitCount.incrementAndGet();
+        mBytesSaved.addAndGet(bodyFile(entry).length());
+    }
+
+    /**
+     * Records a 304 Not Modified and extends the freshness of the entry.
+     */
+    synchronized void recordRevalidation(Entry entry, HttpURLConnection urlConnection) {
+        mRevalidationCount.incrementAndGet();
+        mBytesSaved.addAndGet(bodyFile(entry).length());
+
+        entry.mExpiresAt = expiresAt(urlConnection);
+        try {
+            writeMeta(entry);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem updating the cache entry for " + entry.mUrl, e);
+        }
+    }
+
+    /**
+     * Records a response that had to be downloaded.
+     */
+    void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    /**
+     * Opens the cached body of the entry.
+     */
+    InputStream openBody(Entry entry) throws IOException {
+        File bodyFile = bodyFile(entry);
+        // Touch the body so the least recently used entries are trimmed first.
+        bodyFile.setLastModified(System.currentTimeMillis());
+        return new FileInputStream(bodyFile);
+    }
+
+    /**
+     * Returns an editor that writes the response to the cache while it is being read,
+     * or null if the response cannot be revalidated or reused.
+     */
+    Editor edit(String url, HttpURLConnection urlConnection) {
+        String cacheControl = urlConnection.getHeaderField("Cache-Control");
+        if (cacheControl != null && cacheControl.contains("no-store")) {
+            return null;
+        }
+
+        Entry entry = new Entry(keyFor(url), url);
+        entry.mETag = urlConnection.getHeaderField("ETag");
+        entry.mLastModified = urlConnection.getHeaderField("Last-Modified");
+        entry.mExpiresAt = expiresAt(urlConnection);
+
+        // Without validators or a max-age the response could never be reused.
+        if (entry.mETag == null && entry.mLastModified == null
+                && entry.mExpiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return new Editor(entry);
+    }
+
+    /**
+     * Returns the time until which the response is fresh, from its Cache-Control max-age.
+     */
+    private static long expiresAt(HttpURLConnection urlConnection) {
+        long now = System.currentTimeMillis();
+        String cacheControl = urlConnection.getHeaderField("Cache-Control");
+        if (cacheControl == null || cacheControl.contains("no-cache")) {
+            return now;
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return now + Long.parseLong(directive.substring("max-age=".length())) * 1000L;
+                } catch (NumberFormatException e) {
+                    return now;
+                }
+            }
+        }
+        return now;
+    }
+
+    /**
+     * Stores a completely written response and trims the cache to its maximum size.
+     */
+    private synchronized void commit(Entry entry, File tempBody) throws IOException {
+        File bodyFile = bodyFile(entry);
+        if (!tempBody.renameTo(bodyFile)) {
+            throw new IOException("Problem renaming " + tempBody + " to " + bodyFile);
+        }
+        writeMeta(entry);
+        mMemoryEntries.put(entry.mUrl, entry);
+        trimToSize();
+    }
+
+    /**
+     * Deletes the least recently used responses until the cache fits its maximum size.
+     */
+    private void trimToSize() {
+        File[] bodies = mDirectory.listFiles();
+        if (bodies == null) {
+            return;
+        }
+
+        long size = 0;
+        List<File> bodyFiles = new ArrayList<>();
+        for (File file : bodies) {
+            size += file.length();
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                bodyFiles.add(file);
+            }
+        }
+
+        while (size > mMaxSize && !bodyFiles.isEmpty()) {
+            // Find the least recently used body.
+            File oldest = bodyFiles.get(0);
+            for (File file : bodyFiles) {
+                if (file.lastModified() < oldest.lastModified()) {
+                    oldest = file;
+                }
+            }
+            bodyFiles.remove(oldest);
+
+            String name = oldest.getName();
+            File metaFile = new File(mDirectory,
+                    name.substring(0, name.length() - BODY_SUFFIX.length()) + META_SUFFIX);
+            size -= oldest.length() + metaFile.length();
+            oldest.delete();
+            metaFile.delete();
+        }
+
+        // Entries whose files were deleted must not be served from memory.
+        List<String> evicted = new ArrayList<>();
+        for (Entry entry : mMemoryEntries.values()) {
+            if (!bodyFile(entry).exists()) {
+                evicted.add(entry.mUrl);
+            }
+        }
+        for (String url : evicted) {
+            mMemoryEntries.remove(url);
+        }
+    }
+
+    private File bodyFile(Entry entry) {
+        return new File(mDirectory, entry.mKey + BODY_SUFFIX);
+    }
+
+    private Entry readMeta(String key, File metaFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(metaFile));
+        try {
+            Entry entry = new Entry(key, in.readUTF());
+            entry.mETag = in.readBoolean() ? in.readUTF() : null;
+            entry.mLastModified = in.readBoolean() ? in.readUTF() : null;
+            entry.mExpiresAt = in.readLong();
+            return entry;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(new File(mDirectory, entry.mKey + META_SUFFIX)));
+        try {
+            out.writeUTF(entry.mUrl);
+            out.writeBoolean(entry.mETag != null);
+            if (entry.mETag != null) {
+                out.writeUTF(entry.mETag);
+            }
+            out.writeBoolean(entry.mLastModified != null);
+            if (entry.mLastModified != null) {
+                out.writeUTF(entry.mLastModified);
+            }
+            out.writeLong(entry.mExpiresAt);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the file name key of the URL.
+     */
+    static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+        private final String mKey;
+        private final String mUrl;
+        private String mETag;
+        private String mLastModified;
+        private volatile long mExpiresAt;
+
+        /**
+         * Articles parsed from the body, kept only while the entry is in memory
+         **/
+        private volatile List<Article> mArticles;
+
+        private Entry(String key, String url) {
+            mKey = key;
+            mUrl = url;
+        }
+
+        /**
+         * Returns true if the response can be served without asking the server.
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() < mExpiresAt;
+        }
+
+        /**
+         * Returns the articles already parsed from the body, or null.
+         */
+        List<Article> getArticles() {
+            return mArticles;
+        }
+
+        void setArticles(List<Article> articles) {
+            mArticles = articles;
+        }
+    }
+
+    /**
+     * Writes a response body to the cache while it is read by the parser.
+     */
+    final class Editor {
+        private final Entry mEntry;
+        private final File mTempBody;
+        private OutputStream mOut;
+
+        private Editor(Entry entry) {
+            mEntry = entry;
+            mTempBody = new File(mDirectory, entry.mKey + TEMP_SUFFIX);
+        }
+
+        /**
+         * Returns a stream that copies everything read from the response into the cache.
+         */
+        InputStream tee(InputStream inputStream) throws IOException {
+            mOut = new FileOutputStream(mTempBody);
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        mOut.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    int read = super.read(buffer, offset, count);
+                    if (read > 0) {
+                        mOut.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Reads what is left of the response and stores it along with its parsed articles.
+         */
+        void commit(InputStream teeStream, List<Article> articles) {
+            try {
+                // The parser may stop before the end of the body, e.g. at trailing whitespace.
+                byte[] buffer = new byte[4096];
+                while (teeStream.read(buffer) != -1) {
+                    // Copied by the tee.
+                }
+                mOut.close();
+                mEntry.setArticles(articles);
+                HttpCache.this.commit(mEntry, mTempBody);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem caching the response for " + mEntry.mUrl, e);
+                abort();
+            }
+        }
+
+        /**
+         * Discards the partly written response.
+         */
+        void abort() {
+            try {
+                if (mOut != null) {
+                    mOut.close();
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the cache file " + mTempBody, e);
+            }
+            mTempBody.delete();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens the HTTP connections of the app so their sockets are kept alive and reused by the
+ * platform's connection pool, instead of paying for DNS, TCP and TLS on every request.
+ * A connection goes back to the pool only if its response is read to the end and closed
+ * without calling {@link HttpURLConnection#disconnect()}, which closes the socket.
+ * Responses are requested gzip compressed. HttpURLConnection does not report whether a
+ * request reused a connection, so reuse is estimated from the time each request takes to
+ * connect.
+ */
+public final class HttpConnections {
+
+    /**
+     * Maximum number of idle connections kept alive per host, enough for every concurrent
+     * request of {@link SectionFetchEngine} plus the background sync
+     **/
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Connects faster than this are counted as reusing a pooled connection, since a TCP
+     * handshake over a mobile network alone takes longer. Only an estimate: a handshake with
+     * a host on the loopback or the LAN can be as fast.
+     **/
+    private static final long POOLED_CONNECT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Maximum number of unread bytes drained from a response so its connection can be reused.
+     * Longer leftovers are cheaper to drop along with the connection.
+     **/
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * Number of connections with a request in progress
+     **/
+    private static int sActiveCount;
+
+    /**
+     * Number of requests made, and how many of them were measured to connect
+     **/
+    private static int sRequestCount;
+    private static int sConnectCount;
+
+    /**
+     * Number of connects estimated to take a pooled connection, and the total time of those
+     * connects and of the others, in nanoseconds
+     **/
+    private static int sPooledCount;
+    private static long sPooledConnectNanos;
+    private static long sHandshakeConnectNanos;
+
+    /**
+     * A private constructor for {@link HttpConnections} because methods are static.
+     */
+    private HttpConnections() {
+    }
+
+    /**
+     * Sizes the platform's pool for the concurrent requests of the app. The platform reads
+     * these properties once, when its pool is created, so this must be called before the
+     * first connection of the process is opened.
+     */
+    public static void configurePool() {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * Opens a GET request to the URL that accepts a gzip compressed response, with the
+     * timeouts of the current {@link NetworkPolicy}. It must be given back with {@link #release} once the response has been read.
+     */
+    static HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setRequestMethod("GET");
+        NetworkPolicy.Profile profile = NetworkPolicy.current();
+        urlConnection.setReadTimeout(profile.getReadTimeoutMillis());
+        urlConnection.setConnectTimeout(profile.getConnectTimeoutMillis());
+
+        // Asked for explicitly, so the compressed size of the response can be measured;
+        // the platform then leaves decompressing it to getBody().
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        urlConnection.setRequestProperty("Connection", "keep-alive");
+
+        onOpened();
+        return urlConnection;
+    }
+
+    /**
+     * Connects the request opened by {@link #open} and measures how long it took.
+     */
+    static void connect(HttpURLConnection urlConnection) throws IOException {
+        long start = System.nanoTime();
+        urlConnection.connect();
+        onConnected(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the decompressed body of the response read from the network stream.
+     */
+    static InputStream getBody(HttpURLConnection urlConnection, InputStream networkStream) throws IOException {
+        if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+            return new GZIPInputStream(networkStream);
+        }
+        return networkStream;
+    }
+
+    /**
+     * Ends the request. If the response was read successfully its leftover bytes are drained,
+     * so the connection can be reused by the next request to the host; otherwise the
+     * connection is closed.
+     * @param urlConnection of the request
+     * @param body          stream of the response, or null if it was not opened
+     * @param success       whether the response was read without errors
+     */
+    static void release(HttpURLConnection urlConnection, InputStream body, boolean success) {
+        boolean reusable = success && drain(body);
+        try {
+            if (body != null) {
+                body.close();
+            }
+        } catch (IOException e) {
+            reusable = false;
+        }
+        if (!reusable) {
+            urlConnection.disconnect();
+        }
+        onReleased();
+    }
+
+    /**
+     * Reads what is left of the stream and returns true if its end was reached.
+     */
+    private static boolean drain(InputStream body) {
+        if (body == null) {
+            return true;
+        }
+        byte[] buffer = new byte[4096];
+        int drained = 0;
+        try {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static synchronized void onOpened() {
+        sActiveCount++;
+        sRequestCount++;
+    }
+
+    private static synchronized void onReleased() {
+        sActiveCount--;
+    }
+
+    private static synchronized void onConnected(long nanos) {
+        sConnectCount++;
+        if (nanos < POOLED_CONNECT_NANOS) {
+            sPooledCount++;
+            sPooledConnectNanos += nanos;
+        } else {
+            sHandshakeConnectNanos += nanos;
+        }
+    }
+
+    /**
+     * Returns the number of connections with a request in progress.
+     */
+    public static synchronized int getActiveCount() {
+        return sActiveCount;
+    }
+
+    /**
+     * Returns the number of requests made.
+     */
+    public static synchronized int getRequestCount() {
+        return sRequestCount;
+    }
+
+    /**
+     * Returns the estimated number of measured connects that took a pooled connection.
+     */
+    public static synchronized int getEstimatedPooledCount() {
+        return sPooledCount;
+    }
+
+    /**
+     * Returns the estimated share of measured connects that took a pooled connection and
+     * skipped the handshakes, from 0 to 1.
+     */
+    public static synchronized double getEstimatedPooledRatio() {
+        return sConnectCount == 0 ? 0 : (double) sPooledCount / sConnectCount;
+    }
+
+    /**
+     * Returns a human readable summary of the pool, with the mean time of the connects
+     * estimated to take a pooled connection and of the others, which is what pooling saves.
+     */
+    public static synchronized String dump() {
+        int handshakes = sConnectCount - sPooledCount;
+        return String.format(Locale.US, "connections: active=%d requests=%d connects=%d pooled~%d (%.0f%%, estimated)"
+                        + " mean connect pooled=%.2fms handshake=%.2fms",
+                sActiveCount, sRequestCount, sConnectCount, sPooledCount, getEstimatedPooledRatio() * 100,
+                sPooledCount == 0 ? 0 : sPooledConnectNanos / 1e6 / sPooledCount,
+                handshakes == 0 ? 0 : sHandshakeConnectNanos / 1e6 / handshakes);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when the server answers a request with an error status, e.g. 429 Too Many Requests
+ * or 503 Service Unavailable. Carries the time the server asked to wait before a retry.
+ */
+public class HttpStatusException extends IOException {
+
+    /**
+     * Status code of the response
+     **/
+    private final int mCode;
+
+    /**
+     * Time the server asked to wait before retrying, in milliseconds, or 0 if it did not say
+     **/
+    private final long mRetryAfterMillis;
+
+    public HttpStatusException(int code, long retryAfterMillis) {
+        super("Error response code: " + code);
+        mCode = code;
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the exception for the error response of the connection.
+     */
+    static HttpStatusException fromResponse(HttpURLConnection urlConnection, int code) {
+        return new HttpStatusException(code, parseRetryAfter(urlConnection));
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    /**
+     * Returns true if the same request may succeed later: the server was rate limiting,
+     * overloaded or briefly unavailable.
+     */
+    public boolean isRetryable() {
+        switch (mCode) {
+            case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+            case 429:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+            case HttpURLConnection.HTTP_BAD_GATEWAY:
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+            case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the wait of the Retry-After header, given either in seconds or as a date,
+     * in milliseconds, or 0 if there is none.
+     */
+    private static long parseRetryAfter(HttpURLConnection urlConnection) {
+        String retryAfter = urlConnection.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            long date = urlConnection.getHeaderFieldDate("Retry-After", 0);
+            return date == 0 ? 0 : Math.max(0, date - System.currentTimeMillis());
+        }
+    }
+}
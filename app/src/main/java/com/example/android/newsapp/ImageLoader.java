@@ -0,0 +1,417 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the thumbnails of the articles into ImageViews. Images are downloaded and decoded off
+ * the main thread, downsampled to the size they are shown at, and kept in a memory cache sized
+ * by a fraction of the heap, in front of a disk cache of the downloaded files. A load is
+ * cancelled when its view is recycled for another row before the image arrives, and a view
+ * whose image fails to load shows a placeholder until it is bound again.
+ * All methods must be called on the main thread.
+ */
+public final class ImageLoader {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = ImageLoader.class.getSimpleName();
+
+    /**
+     * Fraction of the maximum heap used by the memory cache
+     **/
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    /**
+     * Maximum number of bytes used by the disk cache
+     **/
+    private static final long DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Number of images loaded at the same time
+     **/
+    private static final int MAX_CONCURRENT_LOADS = 3;
+
+    /**
+     * File name suffix of the downloaded images
+     **/
+    private static final String IMAGE_SUFFIX = ".img";
+
+    /**
+     * Single instance shared by the whole app
+     **/
+    private static ImageLoader sInstance;
+
+    /**
+     * Decoded images by URL and size, bounded by their number of bytes
+     **/
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /**
+     * Directory holding the downloaded images
+     **/
+    private final File mDirectory;
+
+    /**
+     * Loads in progress, by URL and size
+     **/
+    private final Map<String, Request> mRequests = new HashMap<>();
+
+    /**
+     * Key of the image each view is waiting for
+     **/
+    private final Map<ImageView, String> mViewKeys = new WeakHashMap<>();
+
+    /**
+     * Handler that hands the decoded images to the views on the main thread
+     **/
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Threads that download and decode the images below the priority of the UI
+     **/
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Creates a loader of its own, e.g. for tests. The app uses {@link #getInstance}.
+     */
+    ImageLoader(Context context) {
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION);
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        mDirectory = new File(context.getCacheDir(), "images");
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the image cache directory " + mDirectory);
+        }
+
+        final AtomicInteger count = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_LOADS, MAX_CONCURRENT_LOADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                // Keep decoding from competing with the UI thread for the CPU.
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "ImageLoader #" + count.incrementAndGet());
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the single {@link ImageLoader} of the app.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ImageLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows the image of the URL in the view, downsampled to the size. The view is cleared
+     * until the image has loaded, and any image it was waiting for is no longer loaded for it.
+     */
+    public void load(String url, ImageView view, int width, int height) {
+        String key = keyFor(url, width, height);
+        if (key.equals(mViewKeys.get(view))) {
+            return;
+        }
+        cancel(view);
+
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+        mViewKeys.put(view, key);
+
+        Request request = mRequests.get(key);
+        if (request == null) {
+            request = submit(key, url, width, height);
+        }
+        request.mViewCount++;
+    }
+
+    /**
+     * Loads the image of the URL into the memory cache, so it can be shown without waiting
+     * once its row is scrolled to.
+     */
+    public void prefetch(String url, int width, int height) {
+        String key = keyFor(url, width, height);
+        if (mMemoryCache.get(key) != null) {
+            return;
+        }
+        Request request = mRequests.get(key);
+        if (request == null) {
+            request = submit(key, url, width, height);
+        }
+        request.mPrefetch = true;
+    }
+
+    /**
+     * Stops loading the image the view is waiting for, e.g. because its row was recycled.
+     * The load itself is cancelled unless another view, or a prefetch, still wants the image.
+     */
+    public void cancel(ImageView view) {
+        String key = mViewKeys.remove(view);
+        if (key == null) {
+            return;
+        }
+        Request request = mRequests.get(key);
+        if (request != null && --request.mViewCount == 0 && !request.mPrefetch) {
+            request.mFuture.cancel(true);
+            mRequests.remove(key);
+        }
+    }
+
+    /**
+     * Starts loading the image on a background thread.
+     */
+    private Request submit(final String key, final String url, final int width, final int height) {
+        final Request request = new Request();
+        request.mFuture = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = loadBitmap(url, width, height);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem loading the image " + url, e);
+                }
+                final Bitmap loaded = bitmap;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(key, request, loaded);
+                    }
+                });
+            }
+        });
+        mRequests.put(key, request);
+        return request;
+    }
+
+    /**
+     * Caches the loaded image and shows it in the views that are still waiting for it, or
+     * shows the placeholder in them if the image failed to load.
+     */
+    private void onLoaded(String key, Request request, Bitmap bitmap) {
+        boolean current = mRequests.get(key) == request;
+        if (current) {
+            mRequests.remove(key);
+        }
+        if (bitmap == null) {
+            // A cancelled load was already replaced, or no view waits for it any more.
+            if (current) {
+                // The views no longer wait for the key, so binding them again retries the load.
+                for (ImageView view : takeViews(key)) {
+                    view.setImageResource(R.drawable.thumbnail_placeholder);
+                }
+            }
+            return;
+        }
+        mMemoryCache.put(key, bitmap);
+
+        for (ImageView view : takeViews(key)) {
+            view.setImageBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Removes and returns the views waiting for the image of the key.
+     */
+    private List<ImageView> takeViews(String key) {
+        List<ImageView> views = new ArrayList<>();
+        for (Map.Entry<ImageView, String> entry : mViewKeys.entrySet()) {
+            if (key.equals(entry.getValue())) {
+                views.add(entry.getKey());
+            }
+        }
+        for (ImageView view : views) {
+            mViewKeys.remove(view);
+        }
+        return views;
+    }
+
+    /**
+     * Returns the image of the URL from the disk cache, downloading it first if needed,
+     * or null if the load was cancelled. A cached file that does not decode is deleted, so
+     * the next load downloads it again. Runs on a background thread.
+     */
+    private Bitmap loadBitmap(String url, int width, int height) throws IOException {
+        File file = new File(mDirectory, HttpCache.keyFor(url) + IMAGE_SUFFIX);
+        if (file.exists()) {
+            // Mark the file as recently used, so it is evicted last.
+            file.setLastModified(System.currentTimeMillis());
+        } else {
+            download(url, file);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        Bitmap bitmap = decode(file, width, height);
+        if (bitmap == null) {
+            file.delete();
+            throw new IOException("Problem decoding the image " + url);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Downloads the image into the file and trims the disk cache.
+     */
+    private void download(String url, File file) throws IOException {
+        File tempFile = File.createTempFile("download", null, mDirectory);
+        HttpURLConnection urlConnection = HttpConnections.open(new URL(url));
+        InputStream inputStream = null;
+        boolean success = false;
+        try {
+            HttpConnections.connect(urlConnection);
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error response code: " + responseCode);
+            }
+            inputStream = HttpConnections.getBody(urlConnection, urlConnection.getInputStream());
+            OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                outputStream.close();
+            }
+            success = true;
+        } finally {
+            HttpConnections.release(urlConnection, inputStream, success);
+            if (!success) {
+                tempFile.delete();
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Problem caching the image " + url);
+        }
+        trimDiskCache();
+    }
+
+    /**
+     * Decodes the image file at the smallest power of two scale that still covers the size.
+     * Images are decoded without alpha, which halves their memory.
+     */
+    private static Bitmap decode(File file, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+
+        int sampleSize = 1;
+        if (width > 0 && height > 0) {
+            while (options.outWidth / (sampleSize * 2) >= width
+                    && options.outHeight / (sampleSize * 2) >= height) {
+                sampleSize *= 2;
+            }
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    /**
+     * Deletes the least recently used images until the disk cache fits its maximum size.
+     */
+    private synchronized void trimDiskCache() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        List<File> images = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(IMAGE_SUFFIX)) {
+                size += file.length();
+                images.add(file);
+            }
+        }
+
+        while (size > DISK_CACHE_SIZE && !images.isEmpty()) {
+            // Find the least recently used image.
+            File oldest = images.get(0);
+            for (File file : images) {
+                if (file.lastModified() < oldest.lastModified()) {
+                    oldest = file;
+                }
+            }
+            images.remove(oldest);
+            size -= oldest.length();
+            oldest.delete();
+        }
+    }
+
+    /**
+     * Returns the memory cache key of the image of the URL at the size.
+     */
+    private static String keyFor(String url, int width, int height) {
+        return width + "x" + height + ":" + url;
+    }
+
+    /**
+     * An image being loaded.
+     */
+    private static final class Request {
+        private Future<?> mFuture;
+
+        /**
+         * Number of views waiting for the image
+         **/
+        private int mViewCount;
+
+        /**
+         * Whether the image is wanted in the memory cache even if no view waits for it
+         **/
+        private boolean mPrefetch;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.android.newsapp;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived server-sent events connection that announces the ids of newly published
+ * articles, so the feed learns about them without polling. Each event carries a JSON array
+ * of Guardian ids:
+ * <pre>
+ * id: 42
+ * event: articles
+ * data: ["world/2018/jul/01/example", "politics/2018/jul/01/example"]
+ * </pre>
+ * The connection is reopened after it drops, resuming after the last event received, and
+ * waits longer after each failure in a row.
+ */
+public final class LiveUpdateChannel {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = LiveUpdateChannel.class.getSimpleName();
+
+    /**
+     * Time to open the connection, and time without any line, heartbeats included, after
+     * which the connection is taken as dead
+     **/
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(90);
+
+    /**
+     * Wait before reconnecting, unless the server sets another one, and the longest wait
+     * after failures in a row
+     **/
+    private static final long DEFAULT_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    private static final long MAX_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Type of the events announcing new articles. Events without a type are taken as such.
+     **/
+    private static final String EVENT_ARTICLES = "articles";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * URL of the event stream, or empty if live updates are off
+     **/
+    private static volatile String sUrl = BuildConfig.LIVE_UPDATES_URL;
+
+    /**
+     * Receives the ids of the new articles.
+     */
+    public interface Listener {
+        /**
+         * Called on the channel's thread with the ids of an event.
+         */
+        void onArticleIds(List<String> ids);
+    }
+
+    private final String mUrl;
+    private final Listener mListener;
+
+    /**
+     * Stops the channel, and aborts the connection and the wait before reconnecting
+     **/
+    private final CancellationToken mCancellation = new CancellationToken();
+
+    /**
+     * Id of the last event received, sent when reconnecting so no event is missed
+     **/
+    private String mLastEventId;
+
+    /**
+     * Wait before reconnecting, as set by the server
+     **/
+    private long mRetryMillis = DEFAULT_RETRY_MILLIS;
+
+    /**
+     * Thread that holds the connection
+     **/
+    private Thread mThread;
+
+    /**
+     * Constructs a {@link LiveUpdateChannel}.
+     * @param url      of the event stream
+     * @param listener receives the ids of the new articles
+     */
+    public LiveUpdateChannel(String url, Listener listener) {
+        mUrl = url;
+        mListener = listener;
+    }
+
+    /**
+     * Returns the URL of the event stream, or null if live updates are off.
+     */
+    public static String getUrl() {
+        return TextUtils.isEmpty(sUrl) ? null : sUrl;
+    }
+
+    /**
+     * Points the channels opened from now on at another stream, e.g. a local stand-in
+     * server, or back to the configured one if the URL is null.
+     */
+    static void setUrl(String url) {
+        sUrl = url == null ? BuildConfig.LIVE_UPDATES_URL : url;
+    }
+
+    /**
+     * Opens the connection on a thread of its own.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runConnection();
+            }
+        }, LOG_TAG);
+        mThread.start();
+    }
+
+    /**
+     * Closes the connection. No ids are delivered once this returns, except those of an event
+     * already being delivered.
+     */
+    public void stop() {
+        mCancellation.cancel();
+    }
+
+    /**
+     * Keeps the connection open until the channel is stopped.
+     */
+    private void runConnection() {
+        int failures = 0;
+        while (!mCancellation.isCanceled()) {
+            boolean received;
+            try {
+                received = readStream();
+            } catch (IOException e) {
+                if (mCancellation.isCanceled()) {
+                    return;
+                }
+                Log.w(LOG_TAG, "Live update stream dropped: " + e.getMessage());
+                received = false;
+            }
+
+            // A stream that delivered events is reopened after the regular wait, one that
+            // failed straight away after a longer wait each time.
+            failures = received ? 0 : failures + 1;
+            long wait = Math.min(MAX_RETRY_MILLIS, mRetryMillis << Math.min(failures, 10));
+            try {
+                if (!mCancellation.sleep(received ? mRetryMillis : wait)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the stream until it ends. Returns true if at least one event was received.
+     */
+    private boolean readStream() throws IOException {
+        HttpURLConnection urlConnection = null;
+        Runnable abort = null;
+        BufferedReader reader = null;
+        boolean received = false;
+        try {
+            urlConnection = (HttpURLConnection) new URL(mUrl).openConnection();
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            urlConnection.setRequestProperty("Accept", "text/event-stream");
+            urlConnection.setRequestProperty("Cache-Control", "no-cache");
+            if (mLastEventId != null) {
+                urlConnection.setRequestProperty("Last-Event-ID", mLastEventId);
+            }
+
+            // Stopping the channel disconnects, which ends the blocking read.
+            final HttpURLConnection connection = urlConnection;
+            abort = new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            };
+            mCancellation.addOnCancelListener(abort);
+
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error response code: " + responseCode);
+            }
+            reader = new BufferedReader(new InputStreamReader(urlConnection.getInputStream(), UTF_8));
+
+            // Fields are collected until a blank line ends the event.
+            String eventType = null;
+            String eventId = null;
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null && !mCancellation.isCanceled()) {
+                if (line.isEmpty()) {
+                    if (eventId != null) {
+                        mLastEventId = eventId;
+                    }
+                    if (data.length() > 0 && (eventType == null || EVENT_ARTICLES.equals(eventType))) {
+                        received = true;
+                        dispatch(data.toString());
+                    }
+                    eventType = null;
+                    eventId = null;
+                    data.setLength(0);
+                    continue;
+                }
+                if (line.startsWith(":")) {
+                    // A comment, sent as a heartbeat.
+                    continue;
+                }
+
+                int colon = line.indexOf(':');
+                String field = colon < 0 ? line : line.substring(0, colon);
+                String value = colon < 0 ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                if ("data".equals(field)) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                } else if ("event".equals(field)) {
+                    eventType = value;
+                } else if ("id".equals(field)) {
+                    eventId = value;
+                } else if ("retry".equals(field)) {
+                    try {
+                        mRetryMillis = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        // Ignored, as the specification says.
+                    }
+                }
+            }
+            return received;
+        } finally {
+            if (abort != null) {
+                mCancellation.removeOnCancelListener(abort);
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // The connection is dropped anyway.
+                }
+            }
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Hands the ids of an event to the listener.
+     */
+    private void dispatch(String data) {
+        List<String> ids = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(data);
+            for (int i = 0; i < array.length(); i++) {
+                String id = array.optString(i, null);
+                if (!TextUtils.isEmpty(id)) {
+                    ids.add(id);
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem parsing a live update event.", e);
+            return;
+        }
+        if (!ids.isEmpty()) {
+            mListener.onArticleIds(ids);
+        }
+    }
+}
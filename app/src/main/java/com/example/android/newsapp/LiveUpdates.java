@@ -0,0 +1,156 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the feed current while it is shown, without fetching whole pages. The
+ * {@link LiveUpdateChannel} announces the ids of new articles, the ones that are not stored
+ * yet are fetched a few at a time and stored, and the listener gets them on the main thread.
+ */
+public final class LiveUpdates {
+
+    /**
+     * Maximum number of articles fetched with a single request
+     **/
+    private static final int MAX_ARTICLES_PER_REQUEST = 10;
+
+    /**
+     * Receives the new articles.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread with the articles announced since the last call.
+         */
+        void onNewArticles(List<Article> articles);
+    }
+
+    /**
+     * Context of the app, used to open the store
+     **/
+    private final Context mContext;
+
+    private final Listener mListener;
+
+    /**
+     * Posts the new articles to the main thread
+     **/
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Fetches the announced articles one batch at a time, off the channel's thread. Shared by
+     * every instance, so an activity recreated e.g. by a rotation does not leave a thread behind.
+     **/
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Channel of the current start, or null while stopped
+     **/
+    private LiveUpdateChannel mChannel;
+
+    /**
+     * Aborts the fetches of the current start
+     **/
+    private CancellationToken mCancellation;
+
+    /**
+     * Constructs a {@link LiveUpdates}.
+     * @param context  used to open the store
+     * @param listener receives the new articles on the main thread
+     */
+    public LiveUpdates(Context context, Listener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+    }
+
+    /**
+     * Returns true if a live update stream is configured.
+     */
+    public static boolean isAvailable() {
+        return LiveUpdateChannel.getUrl() != null;
+    }
+
+    /**
+     * Opens the channel. Called on the main thread, e.g. when the feed becomes visible.
+     */
+    public void start() {
+        String url = LiveUpdateChannel.getUrl();
+        if (mChannel != null || url == null) {
+            return;
+        }
+        final CancellationToken token = new CancellationToken();
+        mCancellation = token;
+        mChannel = new LiveUpdateChannel(url, new LiveUpdateChannel.Listener() {
+            @Override
+            public void onArticleIds(final List<String> ids) {
+                sExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        fetchNewArticles(ids, token);
+                    }
+                });
+            }
+        });
+        mChannel.start();
+    }
+
+    /**
+     * Closes the channel and drops the articles still being fetched. Called on the main thread.
+     */
+    public void stop() {
+        if (mChannel == null) {
+            return;
+        }
+        mChannel.stop();
+        mCancellation.cancel();
+        mChannel = null;
+        mCancellation = null;
+    }
+
+    /**
+     * Fetches and stores the announced articles that are not stored yet, and hands them to
+     * the listener. Runs on a background thread.
+     */
+    private void fetchNewArticles(List<String> ids, final CancellationToken token) {
+        ArticleStore store = ArticleStore.getInstance(mContext);
+        Set<String> stored = store.getStoredIds(ids);
+        List<String> missing = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (!stored.contains(id) && !missing.contains(id)) {
+                missing.add(id);
+            }
+        }
+
+        final List<Article> articles = new ArrayList<>(missing.size());
+        for (int start = 0; start < missing.size() && !token.isCanceled(); start += MAX_ARTICLES_PER_REQUEST) {
+            List<String> batch = missing.subList(start, Math.min(missing.size(), start + MAX_ARTICLES_PER_REQUEST));
+            List<Article> fetched = QueryUtils.fetchArticleData(GuardianFeed.buildArticlesUrl(batch), token);
+            if (fetched != null) {
+                articles.addAll(fetched);
+            }
+        }
+        if (articles.isEmpty() || token.isCanceled()) {
+            return;
+        }
+        store.upsert(articles);
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // The feed may have stopped while the articles were fetched.
+                if (!token.isCanceled()) {
+                    mListener.onNewArticles(articles);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.newsapp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and the time spent waiting for them, so the time a
+ * streaming parser spends waiting for the network can be told apart from the time it spends parsing.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    /**
+     * Number of bytes read so far
+     **/
+    private long mByteCount;
+
+    /**
+     * Nanoseconds spent in the read calls of the wrapped stream
+     **/
+    private long mReadNanos;
+
+    MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        mReadNanos += System.nanoTime() - start;
+        if (b != -1) {
+            mByteCount++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        long start = System.nanoTime();
+        int read = super.read(buffer, offset, count);
+        mReadNanos += System.nanoTime() - start;
+        if (read > 0) {
+            mByteCount += read;
+        }
+        return read;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     */
+    long getByteCount() {
+        return mByteCount;
+    }
+
+    /**
+     * Returns the nanoseconds spent waiting for the wrapped stream.
+     */
+    long getReadNanos() {
+        return mReadNanos;
+    }
+}
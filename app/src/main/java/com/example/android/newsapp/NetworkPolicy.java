@@ -0,0 +1,352 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Decides how much the app fetches from the network it is on. The network is classed from
+ * the round trip times and throughput of recent responses of {@link QueryUtils}, or from the
+ * type of the connection until enough responses have been measured. Each class has a
+ * {@link Profile} that sets the page size, whether thumbnails are fetched and shown, how far
+ * ahead rows are prefetched, and the timeouts that bound the time to the first screen. The
+ * user's data saver trims the profile of any network to the minimum.
+ */
+public final class NetworkPolicy {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = NetworkPolicy.class.getSimpleName();
+
+    /**
+     * Classes of network, slowest first
+     **/
+    public static final int CLASS_POOR = 0;
+    public static final int CLASS_MODERATE = 1;
+    public static final int CLASS_GOOD = 2;
+
+    /**
+     * Number of measured responses after which they, rather than the type of the
+     * connection, class the network
+     **/
+    private static final int MIN_SAMPLES = 3;
+
+    /**
+     * Weight of the latest response in the moving averages
+     **/
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    /**
+     * Responses smaller than this are mostly latency, so they do not measure throughput
+     **/
+    private static final long MIN_THROUGHPUT_BYTES = 8 * 1024;
+
+    /**
+     * Round trip times and throughputs that bound the classes
+     **/
+    private static final long POOR_RTT_MILLIS = 1500;
+    private static final long GOOD_RTT_MILLIS = 400;
+    private static final double POOR_BYTES_PER_SECOND = 40 * 1024;
+    private static final double GOOD_BYTES_PER_SECOND = 300 * 1024;
+
+    /**
+     * Name of the preferences file holding the data saver setting, and its key
+     **/
+    private static final String PREFS_NAME = "network";
+    private static final String KEY_DATA_SAVER = "data_saver";
+
+    /**
+     * Profiles of the classes, slowest first. The good profile keeps the timeouts the app
+     * always had; slower networks get smaller pages without thumbnails, so the first screen
+     * arrives within a shorter bound.
+     **/
+    private static final Profile[] PROFILES = {
+            new Profile(CLASS_POOR, false, 5, false, 0, false, 6000, 6000, 8000),
+            new Profile(CLASS_MODERATE, false, 10, true, 3, false, 10000, 8000, 12000),
+            new Profile(CLASS_GOOD, false, ArticlePager.PAGE_SIZE, true, 6, true, 15000, 10000, 20000)
+    };
+
+    /**
+     * Class of the connection type, used until enough responses have been measured
+     **/
+    private static int sConnectionClass = CLASS_MODERATE;
+
+    /**
+     * Type and subtype of the connection the samples were measured on, to start over when it changes
+     **/
+    private static int sConnectionType = -1;
+    private static int sConnectionSubtype = -1;
+
+    /**
+     * Moving averages of the time to first byte and of the throughput, and their sample counts
+     **/
+    private static double sRttMillis;
+    private static int sRttSamples;
+    private static double sBytesPerSecond;
+    private static int sThroughputSamples;
+
+    /**
+     * Whether the user turned the data saver on
+     **/
+    private static boolean sDataSaver;
+
+    /**
+     * Profile of the current network
+     **/
+    private static volatile Profile sCurrent = PROFILES[CLASS_MODERATE];
+
+    /**
+     * A private constructor for {@link NetworkPolicy} because methods are static.
+     */
+    private NetworkPolicy() {
+    }
+
+    /**
+     * Returns the profile of the current network.
+     */
+    public static Profile current() {
+        return sCurrent;
+    }
+
+    /**
+     * Reads the type of the active connection and the data saver setting, and returns the
+     * updated profile. Makes a binder call, so it is called on a background thread.
+     */
+    public static Profile update(Context context) {
+        ConnectivityManager connectManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+        boolean dataSaver = getPrefs(context).getBoolean(KEY_DATA_SAVER, false);
+
+        synchronized (NetworkPolicy.class) {
+            sDataSaver = dataSaver;
+            if (networkInfo != null && networkInfo.isConnected()) {
+                int type = networkInfo.getType();
+                int subtype = networkInfo.getSubtype();
+                if (type != sConnectionType || subtype != sConnectionSubtype) {
+                    // The responses measured another network.
+                    sConnectionType = type;
+                    sConnectionSubtype = subtype;
+                    sConnectionClass = classify(type, subtype);
+                    sRttSamples = 0;
+                    sThroughputSamples = 0;
+                }
+            }
+            return recompute();
+        }
+    }
+
+    /**
+     * Records the timings of a response.
+     * @param firstByteMillis time from sending the request to the response headers arriving
+     * @param bytes           size of the body as downloaded, or 0 if there was none
+     * @param readNanos       time spent waiting for the body to arrive
+     */
+    public static synchronized void recordResponse(long firstByteMillis, long bytes, long readNanos) {
+        sRttMillis = sRttSamples == 0 ? firstByteMillis
+                : SAMPLE_WEIGHT * firstByteMillis + (1 - SAMPLE_WEIGHT) * sRttMillis;
+        sRttSamples++;
+        if (bytes >= MIN_THROUGHPUT_BYTES && readNanos > 0) {
+            double bytesPerSecond = bytes * 1e9 / readNanos;
+            sBytesPerSecond = sThroughputSamples == 0 ? bytesPerSecond
+                    : SAMPLE_WEIGHT * bytesPerSecond + (1 - SAMPLE_WEIGHT) * sBytesPerSecond;
+            sThroughputSamples++;
+        }
+        recompute();
+    }
+
+    /**
+     * Returns true if the user turned the data saver on.
+     */
+    public static synchronized boolean isDataSaverEnabled() {
+        return sDataSaver;
+    }
+
+    /**
+     * Turns the data saver on or off, and returns the updated profile.
+     */
+    public static Profile setDataSaverEnabled(Context context, boolean enabled) {
+        getPrefs(context).edit().putBoolean(KEY_DATA_SAVER, enabled).apply();
+        synchronized (NetworkPolicy.class) {
+            sDataSaver = enabled;
+            return recompute();
+        }
+    }
+
+    /**
+     * Returns the class of the network and its measurements, for the logs.
+     */
+    public static synchronized String dump() {
+        return String.format(Locale.US, "network class=%d connection class=%d rtt=%.0fms (%d) throughput=%.0fKB/s (%d)%s",
+                sCurrent.getNetworkClass(), sConnectionClass, sRttMillis, sRttSamples,
+                sBytesPerSecond / 1024, sThroughputSamples, sDataSaver ? " data saver" : "");
+    }
+
+    /**
+     * Picks the profile of the measured class, or of the connection type while too few
+     * responses were measured. Called with the class locked.
+     */
+    private static Profile recompute() {
+        int networkClass = sConnectionClass;
+        if (sRttSamples >= MIN_SAMPLES) {
+            networkClass = classifyMeasured();
+        }
+        Profile profile = PROFILES[networkClass];
+        if (sDataSaver) {
+            profile = profile.withDataSaver();
+        }
+        if (profile.getNetworkClass() != sCurrent.getNetworkClass()) {
+            Log.i(LOG_TAG, "Network class changed to " + profile.getNetworkClass());
+        }
+        sCurrent = profile;
+        return profile;
+    }
+
+    /**
+     * Returns the class of the measured round trip time and throughput. The throughput is
+     * left out until large enough responses were measured.
+     */
+    private static int classifyMeasured() {
+        boolean throughputKnown = sThroughputSamples >= MIN_SAMPLES;
+        if (sRttMillis > POOR_RTT_MILLIS || (throughputKnown && sBytesPerSecond < POOR_BYTES_PER_SECOND)) {
+            return CLASS_POOR;
+        }
+        if (sRttMillis < GOOD_RTT_MILLIS && (!throughputKnown || sBytesPerSecond > GOOD_BYTES_PER_SECOND)) {
+            return CLASS_GOOD;
+        }
+        return CLASS_MODERATE;
+    }
+
+    /**
+     * Returns the class of a connection type, by the generation of the mobile network.
+     */
+    private static int classify(int type, int subtype) {
+        if (type == ConnectivityManager.TYPE_WIFI || type == ConnectivityManager.TYPE_ETHERNET) {
+            return CLASS_GOOD;
+        }
+        if (type != ConnectivityManager.TYPE_MOBILE) {
+            return CLASS_MODERATE;
+        }
+        switch (subtype) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return CLASS_POOR;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return CLASS_GOOD;
+            default:
+                return CLASS_MODERATE;
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * What the app fetches on a class of network.
+     */
+    public static final class Profile {
+        private final int mNetworkClass;
+        private final boolean mDataSaver;
+        private final int mPageSize;
+        private final boolean mThumbnails;
+        private final int mThumbnailPrefetchCount;
+        private final boolean mBodyPrefetch;
+        private final int mConnectTimeoutMillis;
+        private final int mReadTimeoutMillis;
+        private final long mFirstScreenMillis;
+
+        private Profile(int networkClass, boolean dataSaver, int pageSize, boolean thumbnails,
+                        int thumbnailPrefetchCount, boolean bodyPrefetch, int connectTimeoutMillis,
+                        int readTimeoutMillis, long firstScreenMillis) {
+            mNetworkClass = networkClass;
+            mDataSaver = dataSaver;
+            mPageSize = pageSize;
+            mThumbnails = thumbnails;
+            mThumbnailPrefetchCount = thumbnailPrefetchCount;
+            mBodyPrefetch = bodyPrefetch;
+            mConnectTimeoutMillis = connectTimeoutMillis;
+            mReadTimeoutMillis = readTimeoutMillis;
+            mFirstScreenMillis = firstScreenMillis;
+        }
+
+        /**
+         * Returns this profile without thumbnails or prefetching, and with pages no larger
+         * than those of a moderate network. The timeouts stay those of the network.
+         */
+        private Profile withDataSaver() {
+            return new Profile(mNetworkClass, true, Math.min(mPageSize, PROFILES[CLASS_MODERATE].mPageSize),
+                    false, 0, false, mConnectTimeoutMillis, mReadTimeoutMillis, mFirstScreenMillis);
+        }
+
+        /**
+         * Returns the class of the network, from {@link #CLASS_POOR} to {@link #CLASS_GOOD}.
+         */
+        public int getNetworkClass() {
+            return mNetworkClass;
+        }
+
+        /**
+         * Returns true if the profile was trimmed by the data saver.
+         */
+        public boolean isDataSaver() {
+            return mDataSaver;
+        }
+
+        /**
+         * Returns the number of articles asked for per page of each query.
+         */
+        public int getPageSize() {
+            return mPageSize;
+        }
+
+        /**
+         * Returns true if thumbnails are asked for and shown.
+         */
+        public boolean showsThumbnails() {
+            return mThumbnails;
+        }
+
+        /**
+         * Returns the number of rows below the screen whose thumbnails are loaded ahead of time.
+         */
+        public int getThumbnailPrefetchCount() {
+            return mThumbnailPrefetchCount;
+        }
+
+        /**
+         * Returns true if the bodies of the rows near the screen are prefetched for the reader.
+         */
+        public boolean prefetchesBodies() {
+            return mBodyPrefetch;
+        }
+
+        /**
+         * Returns the timeouts of opening a connection and of reading the response, in milliseconds.
+         */
+        public int getConnectTimeoutMillis() {
+            return mConnectTimeoutMillis;
+        }
+
+        public int getReadTimeoutMillis() {
+            return mReadTimeoutMillis;
+        }
+
+        /**
+         * Returns the longest time the first page of the feed waits for its queries, in
+         * milliseconds. The sections that arrived by then are shown.
+         */
+        public long getFirstScreenMillis() {
+            return mFirstScreenMillis;
+        }
+    }
+}
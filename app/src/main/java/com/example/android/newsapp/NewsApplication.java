@@ -0,0 +1,69 @@
+package com.example.android.newsapp;
+
+import android.app.Application;
+import android.content.Context;
+import android.support.v4.os.TraceCompat;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts the process with as little work on the main thread as possible. Only what the
+ * first frame needs is done here; warming the caches and scheduling the background sync run
+ * on a worker thread while the activity is being created. The stored feed is read by the
+ * activity, since the process also starts without one, e.g. for the background sync.
+ */
+public class NewsApplication extends Application {
+
+    /**
+     * Maximum size of the HTTP response cache, in bytes
+     **/
+    private static final long HTTP_CACHE_SIZE = 5 * 1024 * 1024;
+
+    public NewsApplication() {
+        // The earliest point the app controls, used when the system does not say when
+        // the process was forked.
+        StartupTracer.markProcessStart();
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        TraceCompat.beginSection("NewsApplication.onCreate");
+        try {
+            // Size the connection pool before anything opens a connection and creates it.
+            HttpConnections.configurePool();
+
+            // Install the response cache, so unchanged responses are neither downloaded nor
+            // parsed again. Requests of the first load already need it.
+            HttpCache.install(new File(getCacheDir(), "http"), HTTP_CACHE_SIZE);
+
+            final Context context = this;
+            ExecutorService startupExecutor = Executors.newSingleThreadExecutor();
+            startupExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Keeps the stored articles fresh in the background, so the next start
+                    // shows new articles.
+                    SyncScheduler.schedule(context);
+
+                    // Create the image cache directory before the first thumbnail is requested.
+                    ImageLoader.getInstance(context);
+
+                    // Load the preferences of the saved feeds, so their tabs are not read
+                    // from disk on the main thread.
+                    SavedFeed.loadAll(context);
+
+                    // Class the network and load the data saver setting before the menu shows it.
+                    NetworkPolicy.update(context);
+                }
+            });
+
+            // The thread ends once the startup work is done.
+            startupExecutor.shutdown();
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory histograms of each stage of the load pipeline, from the HTTP request in
+ * {@link QueryUtils} to the first row shown by {@link ArticleActivity}. They show whether
+ * a slow load is caused by the network, the parser or the UI.
+ */
+public final class PipelineMetrics {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = PipelineMetrics.class.getSimpleName();
+
+    /**
+     * Time to open the connection, including the host name lookup and the TLS handshake.
+     * HttpURLConnection does not report its lookup apart from the connect, so there is no
+     * separate DNS stage.
+     **/
+    public static final Histogram CONNECT = new Histogram("connect", "ms");
+
+    /**
+     * Time from the connection being open to the response headers arriving
+     **/
+    public static final Histogram TIME_TO_FIRST_BYTE = new Histogram("ttfb", "ms");
+
+    /**
+     * Time spent waiting for the response body to arrive
+     **/
+    public static final Histogram DOWNLOAD = new Histogram("download", "ms");
+
+    /**
+     * Size of the response body as downloaded, i.e. compressed if it was gzipped
+     **/
+    public static final Histogram BYTES_READ = new Histogram("bytes_read", "B");
+
+    /**
+     * Time spent parsing the response body, excluding the time waiting for it to arrive
+     **/
+    public static final Histogram PARSE = new Histogram("parse", "ms");
+
+    /**
+     * Number of articles parsed from a response
+     **/
+    public static final Histogram ARTICLE_COUNT = new Histogram("article_count", "");
+
+    /**
+     * Time from the feed starting to load to its first rows being handed to the list
+     **/
+    public static final Histogram TIME_TO_FIRST_ROW = new Histogram("time_to_first_row", "ms");
+
+    /**
+     * Time to search the local article index
+     **/
+    public static final Histogram SEARCH = new Histogram("search", "ms");
+
+    /**
+     * Time from the reader opening to the article body being shown
+     **/
+    public static final Histogram TIME_TO_BODY = new Histogram("time_to_body", "ms");
+
+    /**
+     * Time a request waited for a permit of the client-side rate limiter
+     **/
+    public static final Histogram RATE_LIMIT_WAIT = new Histogram("rate_limit_wait", "ms");
+
+    /**
+     * Backoff before a failed request was retried
+     **/
+    public static final Histogram RETRY_WAIT = new Histogram("retry_wait", "ms");
+
+    /**
+     * Time from the process start to the first frame, and to the first frame showing articles
+     **/
+    public static final Histogram COLD_START_FIRST_FRAME = new Histogram("cold_start_first_frame", "ms");
+    public static final Histogram COLD_START_FIRST_CONTENT = new Histogram("cold_start_first_content", "ms");
+
+    /**
+     * Time from the activity being created in a running process to the first frame, and to
+     * the first frame showing articles
+     **/
+    public static final Histogram WARM_START_FIRST_FRAME = new Histogram("warm_start_first_frame", "ms");
+    public static final Histogram WARM_START_FIRST_CONTENT = new Histogram("warm_start_first_content", "ms");
+
+    /**
+     * Time to map the snapshot of the feed and hand it to the list
+     **/
+    public static final Histogram SNAPSHOT_RESTORE = new Histogram("snapshot_restore", "us");
+
+    /**
+     * All histograms, in pipeline order
+     **/
+    private static final Histogram[] ALL = {
+            RATE_LIMIT_WAIT, RETRY_WAIT, CONNECT, TIME_TO_FIRST_BYTE, DOWNLOAD, BYTES_READ, PARSE, ARTICLE_COUNT, TIME_TO_FIRST_ROW,
+            SEARCH, TIME_TO_BODY, COLD_START_FIRST_FRAME, COLD_START_FIRST_CONTENT, WARM_START_FIRST_FRAME,
+            WARM_START_FIRST_CONTENT, SNAPSHOT_RESTORE
+    };
+
+    /**
+     * A private constructor for {@link PipelineMetrics} because methods are static.
+     */
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Returns the current time for measuring durations, in nanoseconds.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the milliseconds elapsed since the start time returned by {@link #now()}.
+     */
+    public static void recordSince(Histogram histogram, long startNanos) {
+        histogram.record(toMillis(now() - startNanos));
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     */
+    public static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    /**
+     * Returns a human readable summary of every histogram.
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder("Load pipeline metrics:");
+        for (Histogram histogram : ALL) {
+            dump.append('\n').append(histogram);
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Writes the summary to the log.
+     */
+    public static void logDump() {
+        Log.i(LOG_TAG, dump());
+    }
+
+    /**
+     * Returns every histogram as JSON, so it can be exported and compared between builds.
+     */
+    public static String exportJson() {
+        JSONObject export = new JSONObject();
+        try {
+            for (Histogram histogram : ALL) {
+                long[] p = histogram.getPercentiles(50, 95, 99);
+                JSONObject values = new JSONObject();
+                values.put("unit", histogram.getUnit());
+                values.put("count", histogram.getCount());
+                values.put("mean", histogram.getMean());
+                values.put("p50", p[0]);
+                values.put("p95", p[1]);
+                values.put("p99", p[2]);
+                export.put(histogram.getName(), values);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem exporting the metrics.", e);
+        }
+        return export.toString();
+    }
+
+    /**
+     * Forgets every sample.
+     */
+    public static void reset() {
+        for (Histogram histogram : ALL) {
+            histogram.reset();
+        }
+    }
+}
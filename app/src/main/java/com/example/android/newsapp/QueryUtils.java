@@ -1,6 +1,9 @@
 package com.example.android.newsapp;
 
+import android.os.AsyncTask;
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
 import org.json.JSONArray;
@@ -16,7 +19,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Helper methods related to requesting and receiving articles data from Guardian.
@@ -26,6 +33,35 @@ public final class QueryUtils {
     /** Log messages tag **/
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Whether responses are parsed token by token straight off the connection stream
+     * instead of being buffered into a String and parsed into a {@link JSONObject} tree.
+     **/
+    private static volatile boolean sStreamingParserEnabled = true;
+
+    /**
+     * Requests in flight, so identical requests made at the same time, e.g. by the feed and
+     * by the background sync, share one network call and one parse
+     **/
+    private static final SingleFlight<String, List<Article>> sRequests = new SingleFlight<>();
+
+    /**
+     * Steady rate and burst size of the requests to the Guardian API, below its quota
+     **/
+    private static final double REQUESTS_PER_SECOND = 8;
+    private static final int REQUEST_BURST = 8;
+
+    /**
+     * Number of failed requests in a row after which the API is left alone for a while
+     **/
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30000;
+
+    /**
+     * Retries, rate limits and short-circuits every request to the Guardian API
+     **/
+    private static volatile RequestExecutor sRequestExecutor = newRequestExecutor();
+
     /**
      * A private constructor for {@link QueryUtils} because variables and methods are static
      * and can only be accessed from the QueryUtils class name.
@@ -34,23 +70,128 @@ public final class QueryUtils {
     }
 
     /**
-     * Query the Guardian dataset and return the {@link Article} objects.
+     * Switches between the streaming parser and the original {@link JSONObject} parser,
+     * so the two can be compared side by side.
+     */
+    public static void setStreamingParserEnabled(boolean enabled) {
+        sStreamingParserEnabled = enabled;
+    }
+
+    /**
+     * Returns true if responses are parsed with the streaming parser.
+     */
+    public static boolean isStreamingParserEnabled() {
+        return sStreamingParserEnabled;
+    }
+
+    /**
+     * Returns the executor of the requests to the Guardian API, e.g. to read its metrics.
+     */
+    public static RequestExecutor getRequestExecutor() {
+        return sRequestExecutor;
+    }
+
+    /**
+     * Runs the requests made from now on with another executor, e.g. one with a higher rate
+     * limit for a test against a local server, or with a new default one if it is null.
+     */
+    static void setRequestExecutor(RequestExecutor executor) {
+        sRequestExecutor = executor == null ? newRequestExecutor() : executor;
+    }
+
+    private static RequestExecutor newRequestExecutor() {
+        return new RequestExecutor(
+                new TokenBucket(REQUESTS_PER_SECOND, REQUEST_BURST),
+                new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+    }
+
+    /**
+     * Query the Guardian dataset and return the {@link Article} objects. If the same URL is
+     * already being fetched, waits for that request instead of making another one.
      */
     public static List<Article> fetchArticleData(String requestUrl) {
+        return fetchArticleData(requestUrl, null);
+    }
+
+    /**
+     * Like {@link #fetchArticleData(String)}, but returns null as soon as the token is cancelled.
+     * The request itself is aborted once no caller waits for it any more.
+     * @param token cancels the request, or null
+     */
+    public static List<Article> fetchArticleData(final String requestUrl, CancellationToken token) {
+        List<Article> articles;
+        try {
+            articles = sRequests.run(requestUrl, token, new SingleFlight.Call<List<Article>>() {
+                @Override
+                public List<Article> call(CancellationToken requestToken) {
+                    return fetchArticleDataOnce(requestUrl, requestToken);
+                }
+            });
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Problem fetching the article data.", e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        // Every caller gets its own copy of a shared result.
+        return articles == null ? null : new ArrayList<>(articles);
+    }
+
+    /**
+     * Makes the request for the URL and returns the {@link Article} objects. If the request
+     * fails, the cached response is returned even if it is stale, and null if there is none.
+     */
+    private static List<Article> fetchArticleDataOnce(final String requestUrl, CancellationToken token) {
         // Creates URL object
-        URL url = createUrl(requestUrl);
+        final URL url = createUrl(requestUrl);
 
-        // Calls the makeHTTPRequest() method and receives a JSON response
-        String jsonResponse = null;
+        // If the URL is null, return early.
+        if (url == null) {
+            return null;
+        }
+
+        // Serve a fresh cached response without making a request at all.
+        final HttpCache cache = HttpCache.getInstalled();
+        final HttpCache.Entry cached = cache == null ? null : cache.get(requestUrl);
+        if (cached != null && cached.isFresh()) {
+            try {
+                List<Article> articles = readCachedArticles(cache, cached);
+                cache.recordHit(cached);
+                return articles;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading the cached response.", e);
+            }
+        }
+
+        // Calls the makeHTTPRequest() method, which parses the JSON response into a List of {@ Article}s.
+        // Failed attempts are retried if they may succeed later.
         try {
-            jsonResponse = makeHttpRequest(url);
+            return sRequestExecutor.execute(new RequestExecutor.Request<List<Article>>() {
+                @Override
+                public List<Article> execute(CancellationToken requestToken) throws IOException {
+                    return makeHttpRequest(url, requestUrl, cache, cached, requestToken);
+                }
+            }, token);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Problem making the HTTP request.", e);
         }
-        // Calls the JSON parsing method and creates List of {@ Article}s.
-        List<Article> articles = extractFeatureFromJson(jsonResponse);
 
-        return articles;
+        // Show the stale articles rather than a blank screen, e.g. while rate limited.
+        if (cached != null) {
+            try {
+                List<Article> articles = readCachedArticles(cache, cached);
+                if (articles != null) {
+                    sRequestExecutor.recordFallback();
+                }
+                return articles;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading the cached response.", e);
+            }
+        }
+        return null;
     }
 
     /**
@@ -68,51 +209,226 @@ public final class QueryUtils {
     }
 
     /**
-     * Makes an HTTP request to the URL and returns the response.
+     * Makes an HTTP request to the URL and returns the articles parsed from the response.
+     * A stale cached response is revalidated, and a 304 Not Modified reuses it.
+     * Cancelling the token closes the connection, so a response is abandoned even mid-read.
+     * Throws an {@link HttpStatusException} for an error response, and an IOException if the
+     * response could not be read or parsed.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the URL is null, return the response early.
-        if (url == null) {
-            return jsonResponse;
+    private static List<Article> makeHttpRequest(URL url, String requestUrl, HttpCache cache,
+                                                 HttpCache.Entry cached, CancellationToken token) throws IOException {
+        if (token.isCanceled()) {
+            return null;
         }
 
         HttpURLConnection urlConnection = null;
+        Runnable abort = null;
         InputStream inputStream = null;
+        HttpCache.Editor editor = null;
+        List<Article> articles = null;
+        boolean success = false;
 
         // Opens a connection to get data.
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.setReadTimeout(10000);
-            urlConnection.setConnectTimeout(15000);
-            urlConnection.connect();
-
-            // If the request is successful, InputStream is called and the response is parsed.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            urlConnection = HttpConnections.open(url);
+            abort = abortOnCancel(urlConnection, token);
+            connect(urlConnection, cached);
+
+            // The response headers arrive after the request has been sent and processed.
+            long requestStart = PipelineMetrics.now();
+            int responseCode = urlConnection.getResponseCode();
+            long firstByteMillis = PipelineMetrics.toMillis(PipelineMetrics.now() - requestStart);
+            PipelineMetrics.TIME_TO_FIRST_BYTE.record(firstByteMillis);
+            sRequestExecutor.onResponse(urlConnection);
+
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                // The cached response is still valid, so neither download nor parse it again.
+                cache.recordRevalidation(cached, urlConnection);
+                articles = readCachedArticles(cache, cached);
+                success = true;
+                NetworkPolicy.recordResponse(firstByteMillis, 0, 0);
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // If the request is successful, InputStream is called and the response is
+                // decompressed and parsed, while it is also written to the cache.
+                MeteredInputStream networkStream = new MeteredInputStream(urlConnection.getInputStream());
+                inputStream = HttpConnections.getBody(urlConnection, networkStream);
+                if (cache != null) {
+                    cache.recordMiss();
+                    editor = cache.edit(requestUrl, urlConnection);
+                }
+                if (editor != null) {
+                    inputStream = editor.tee(inputStream);
+                }
+                articles = parseResponse(inputStream, networkStream);
+                if (articles == null) {
+                    throw new IOException("Malformed article JSON response");
+                }
+                if (editor != null) {
+                    editor.commit(inputStream, articles);
+                    editor = null;
+                }
+                success = true;
+                PipelineMetrics.DOWNLOAD.record(PipelineMetrics.toMillis(networkStream.getReadNanos()));
+                PipelineMetrics.BYTES_READ.record(networkStream.getByteCount());
+                NetworkPolicy.recordResponse(firstByteMillis, networkStream.getByteCount(),
+                        networkStream.getReadNanos());
             } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                throw HttpStatusException.fromResponse(urlConnection, responseCode);
+            }
+        } finally {
+            if (abort != null) {
+                token.removeOnCancelListener(abort);
+            }
+            if (editor != null) {
+                editor.abort();
+            }
+            // Hands the connection back to the pool instead of closing it, unless the request failed.
+            if (urlConnection != null) {
+                HttpConnections.release(urlConnection, inputStream, success);
             }
+        }
+        return articles;
+    }
+
+    /**
+     * Fetches the bodies of the articles of a Guardian query that asks for the "bodyText" field.
+     * Returns the bodies by article id, or null if the request failed or the token was cancelled.
+     * Bodies are stored by the caller, so the response is not written to the HTTP cache.
+     */
+    public static Map<String, String> fetchArticleBodies(String requestUrl, CancellationToken token) {
+        final URL url = createUrl(requestUrl);
+        if (url == null || token.isCanceled()) {
+            return null;
+        }
+        try {
+            return sRequestExecutor.execute(new RequestExecutor.Request<Map<String, String>>() {
+                @Override
+                public Map<String, String> execute(CancellationToken requestToken) throws IOException {
+                    return requestArticleBodies(url, requestToken);
+                }
+            }, token);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the article JSON results.", e);
+            Log.e(LOG_TAG, "Problem retrieving the article bodies.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Makes one request for the bodies. Throws an {@link HttpStatusException} for an error response.
+     */
+    private static Map<String, String> requestArticleBodies(URL url, CancellationToken token) throws IOException {
+        HttpURLConnection urlConnection = null;
+        Runnable abort = null;
+        InputStream inputStream = null;
+        boolean success = false;
+        try {
+            urlConnection = HttpConnections.open(url);
+            abort = abortOnCancel(urlConnection, token);
+            connect(urlConnection, null);
+
+            int responseCode = urlConnection.getResponseCode();
+            sRequestExecutor.onResponse(urlConnection);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw HttpStatusException.fromResponse(urlConnection, responseCode);
+            }
+            inputStream = HttpConnections.getBody(urlConnection, urlConnection.getInputStream());
+            Map<String, String> bodies = extractBodiesFromStream(inputStream);
+            success = true;
+            return bodies;
         } finally {
+            if (abort != null) {
+                token.removeOnCancelListener(abort);
+            }
             if (urlConnection != null) {
-                urlConnection.disconnect();
+                HttpConnections.release(urlConnection, inputStream, success);
             }
-            if (inputStream != null) {
+        }
+    }
+
+    /**
+     * Connects the request, conditional on the cached response if there is one.
+     */
+    private static void connect(HttpURLConnection urlConnection, HttpCache.Entry cached) throws IOException {
+        if (cached != null) {
+            HttpCache.addConditionalHeaders(urlConnection, cached);
+        }
+        long connectStart = PipelineMetrics.now();
+        HttpConnections.connect(urlConnection);
+        PipelineMetrics.recordSince(PipelineMetrics.CONNECT, connectStart);
+    }
+
+    /**
+     * Closes the connection when the token is cancelled, which makes a blocked connect or read
+     * throw. Tokens are often cancelled on the main thread, so the socket is closed on a
+     * background thread. Returns the listener, so it can be removed once the request is over.
+     */
+    private static Runnable abortOnCancel(final HttpURLConnection urlConnection, CancellationToken token) {
+        Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        urlConnection.disconnect();
+                    }
+                });
+            }
+        };
+        token.addOnCancelListener(abort);
+        return abort;
+    }
+
+    /**
+     * Returns the articles of a cached response, parsing its body only if it was not parsed before.
+     */
+    private static List<Article> readCachedArticles(HttpCache cache, HttpCache.Entry cached) throws IOException {
+        List<Article> articles = cached.getArticles();
+        if (articles == null) {
+            InputStream inputStream = cache.openBody(cached);
+            try {
+                articles = parseResponse(inputStream, null);
+            } finally {
                 inputStream.close();
             }
+            if (articles == null) {
+                return null;
+            }
+            cached.setArticles(articles);
+        }
+        // Callers get their own copy, so the cached list is never modified.
+        return new ArrayList<>(articles);
+    }
+
+    /**
+     * Parses the JSON response with the streaming parser, or with the {@link JSONObject}
+     * parser if streaming is disabled, and records the parse time and article count.
+     * @param inputStream   of the JSON response
+     * @param networkStream the network stream the response is read from, whose waiting time
+     *                      is not counted as parse time, or null if it is read from disk
+     */
+    private static List<Article> parseResponse(InputStream inputStream, MeteredInputStream networkStream)
+            throws IOException {
+        long parseStart = PipelineMetrics.now();
+        List<Article> articles;
+        if (sStreamingParserEnabled) {
+            articles = extractFeatureFromStream(inputStream);
+        } else {
+            articles = extractFeatureFromJson(readFromStream(inputStream));
         }
-        return jsonResponse;
+
+        long parseNanos = PipelineMetrics.now() - parseStart;
+        if (networkStream != null) {
+            parseNanos -= networkStream.getReadNanos();
+        }
+        PipelineMetrics.PARSE.record(PipelineMetrics.toMillis(parseNanos));
+        PipelineMetrics.ARTICLE_COUNT.record(articles == null ? 0 : articles.size());
+        return articles;
     }
 
     /**
      * Convert the {@link InputStream} to a String containing the JSON response.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
@@ -129,7 +445,7 @@ public final class QueryUtils {
     /**
      * Returns a list of {@link Article} objects built from parsing the JSON response.
      */
-    private static List<Article> extractFeatureFromJson(String articleJSON) {
+    static List<Article> extractFeatureFromJson(String articleJSON) {
         // Returns early if the JSON string is empty.
         if (TextUtils.isEmpty(articleJSON)) {
             return null;
@@ -157,41 +473,326 @@ public final class QueryUtils {
                 // Get an article at position i from the list of articles
                 JSONObject currentArticle = results.getJSONObject(i);
 
-                // Extract the values for the keys "webTitle", "sectionName", "webPublicationDate", and "webUrl".
+                // Extract the values for the keys "id", "webTitle", "sectionName", "webPublicationDate", and "webUrl".
+                String id = currentArticle.getString("id");
                 String title = currentArticle.getString("webTitle");
                 String section = currentArticle.getString("sectionName");
                 String date = currentArticle.getString("webPublicationDate");
                 String url = currentArticle.getString("webUrl");
 
+                // Extract the "thumbnail" of the JSONObject associated with key "fields", if any.
+                JSONObject fields = currentArticle.optJSONObject("fields");
+                String thumbnail = fields == null || fields.isNull("thumbnail")
+                        ? null : fields.optString("thumbnail");
+
                 // Extract the JSONArray associated with key "tags", which represents
                 // information about the author(s) of the article.
-                JSONArray tags = currentArticle.getJSONArray("tags");
-                String author = "";
+                JSONArray tags = currentArticle.optJSONArray("tags");
+                String[] authors = null;
 
-                if(tags.length() == 0) {
-                    author = null;
-                } else {
+                if (tags != null && tags.length() > 0) {
+                    authors = new String[tags.length()];
                     for (int x = 0; x < tags.length(); x++) {
-                        // Gets an author from the list of tags.
-                        JSONObject currentAuthor = tags.getJSONObject(x);
-
-                        // Extract the value for the key "webTitle", which represents
-                        // the first and last name of the author(s).
-                        author = currentAuthor.getString("webTitle");
+                        // Extract the value for the key "webTitle" of each tag, which represents
+                        // the first and last name of one of the authors.
+                        authors[x] = tags.getJSONObject(x).getString("webTitle");
                     }
                 }
 
-                // Create a new {@link Article} object with the title, section, date, author, and url
+                // Create a new {@link Article} object with the id, title, section, authors, time and url
                 // from the JSON response.
-                Article article = new Article(title, author, section, date, url);
+                Article article = new Article(id, title, section, authors,
+                        parsePublicationTime(date), url, thumbnail);
 
                 // Add the new {@link Article} object to the list of articles.
                 articles.add(article);
             }
         } catch(JSONException e) {
+            // A partial list would look like a complete one, so none is returned.
             Log.e("QueryUtils", "Problem parsing the article JSON results.", e);
+            return null;
         }
         // Returns the list of articles.
         return articles;
     }
+
+    /**
+     * Returns a list of {@link Article} objects read token by token from the JSON response
+     * stream. Each {@link Article} is created as soon as its object has been read, so only
+     * one result is held in memory as JSON at a time. The stream is not closed.
+     */
+    static List<Article> extractFeatureFromStream(InputStream inputStream) throws IOException {
+        // Creates an empty ArrayList that will contain article data.
+        List<Article> articles = new ArrayList<>();
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+
+        // If there is a problem with the JSON formatting, null is returned, because the
+        // articles read so far would look like a complete page.
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                // Only the object associated with key "response" is of interest.
+                if ("response".equals(reader.nextName())) {
+                    readResponse(reader, articles);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Problem parsing the article JSON results.", e);
+            return null;
+        }
+        // Returns the list of articles. The reader is not closed, because the caller owns
+        // the stream and may still read the rest of it.
+        return articles;
+    }
+
+    /**
+     * Returns the "bodyText" fields of the results of a JSON response, by article id.
+     * Results without an id or a body are left out.
+     */
+    static Map<String, String> extractBodiesFromStream(InputStream inputStream) throws IOException {
+        Map<String, String> bodies = new HashMap<>();
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"response".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!"results".equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readBody(reader, bodies);
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Problem parsing the article bodies.", e);
+        }
+        return bodies;
+    }
+
+    /**
+     * Reads the id and the "bodyText" field of a single entry of the "results" array into the map.
+     */
+    private static void readBody(JsonReader reader, Map<String, String> bodies) throws IOException {
+        String id = null;
+        String body = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() == JsonToken.STRING) {
+                id = reader.nextString();
+            } else if ("fields".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("bodyText".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id != null && !TextUtils.isEmpty(body)) {
+            bodies.put(id, body);
+        }
+    }
+
+    /**
+     * Reads the "response" object and adds each entry of its "results" array to the list.
+     */
+    private static void readResponse(JsonReader reader, List<Article> articles) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    articles.add(readArticle(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a single entry of the "results" array into an {@link Article} object.
+     */
+    private static Article readArticle(JsonReader reader) throws IOException {
+        String id = null;
+        String title = null;
+        String section = null;
+        String date = null;
+        String url = null;
+        String[] authors = null;
+        String thumbnail = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("id".equals(name)) {
+                id = reader.nextString();
+            } else if ("webTitle".equals(name)) {
+                title = reader.nextString();
+            } else if ("sectionName".equals(name)) {
+                section = reader.nextString();
+            } else if ("webPublicationDate".equals(name)) {
+                date = reader.nextString();
+            } else if ("webUrl".equals(name)) {
+                url = reader.nextString();
+            } else if ("tags".equals(name)) {
+                authors = readAuthors(reader);
+            } else if ("fields".equals(name)) {
+                thumbnail = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Create a new {@link Article} object in the same way as the JSONObject parser does.
+        return new Article(id, title, section, authors, parsePublicationTime(date), url, thumbnail);
+    }
+
+    /**
+     * Reads the "fields" object and returns its "thumbnail", or null if there is none.
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnail = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("thumbnail".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                thumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+
+    /**
+     * Reads the "tags" array and returns the "webTitle" of each entry, which represents
+     * the name of an author, or null if the article has no tags.
+     */
+    private static String[] readAuthors(JsonReader reader) throws IOException {
+        List<String> authors = null;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("webTitle".equals(reader.nextName())) {
+                    if (authors == null) {
+                        authors = new ArrayList<>(2);
+                    }
+                    authors.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return authors == null ? null : authors.toArray(new String[authors.size()]);
+    }
+
+    /**
+     * Returns the time of an ISO 8601 date such as "2018-07-19T14:35:53Z" in milliseconds
+     * since the epoch, or 0 if it cannot be parsed. The Guardian always sends this fixed format,
+     * so it is parsed by hand, once per article, instead of with a SimpleDateFormat.
+     */
+    static long parsePublicationTime(String date) {
+        if (date == null || date.length() < 19 || date.charAt(4) != '-' || date.charAt(7) != '-'
+                || date.charAt(10) != 'T' || date.charAt(13) != ':' || date.charAt(16) != ':') {
+            return 0;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        int hour = parseDigits(date, 11, 13);
+        int minute = parseDigits(date, 14, 16);
+        int second = parseDigits(date, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || minute < 0 || second < 0) {
+            return 0;
+        }
+
+        // Skip fractional seconds, then apply the time zone offset, if any.
+        int index = 19;
+        int millis = 0;
+        if (index < date.length() && date.charAt(index) == '.') {
+            int start = ++index;
+            while (index < date.length() && Character.isDigit(date.charAt(index))) {
+                index++;
+            }
+            if (index - start >= 3) {
+                millis = parseDigits(date, start, start + 3);
+            }
+        }
+        int offsetMinutes = 0;
+        if (index + 6 <= date.length() && (date.charAt(index) == '+' || date.charAt(index) == '-')) {
+            int offsetHours = parseDigits(date, index + 1, index + 3);
+            int offsetMins = parseDigits(date, index + 4, index + 6);
+            if (offsetHours >= 0 && offsetMins >= 0) {
+                offsetMinutes = (offsetHours * 60 + offsetMins) * (date.charAt(index) == '-' ? -1 : 1);
+            }
+        }
+
+        long days = daysFromCivil(year, month, day);
+        long seconds = days * 86400L + hour * 3600L + (minute - offsetMinutes) * 60L + second;
+        return seconds * 1000L + millis;
+    }
+
+    /**
+     * Returns the number parsed from the digits between start and end, or -1.
+     */
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the date of the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
 }
@@ -0,0 +1,192 @@
+package com.example.android.newsapp;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.Loader;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.ActionBar;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the plain text body of an article inside the app. The title and byline are shown
+ * straight away from the intent, and the body from the {@link ArticleStore}, where it is
+ * usually prefetched, or from the network otherwise.
+ */
+public class ReaderActivity extends AppCompatActivity implements LoaderCallbacks<String> {
+
+    /**
+     * Keys of the article's details in the intent
+     **/
+    private static final String EXTRA_ID = "com.example.android.newsapp.extra.ID";
+    private static final String EXTRA_TITLE = "com.example.android.newsapp.extra.TITLE";
+    private static final String EXTRA_SECTION = "com.example.android.newsapp.extra.SECTION";
+    private static final String EXTRA_AUTHORS = "com.example.android.newsapp.extra.AUTHORS";
+    private static final String EXTRA_PUBLICATION_TIME = "com.example.android.newsapp.extra.PUBLICATION_TIME";
+    private static final String EXTRA_URL = "com.example.android.newsapp.extra.URL";
+
+    /**
+     * Static value for the body loader ID
+     **/
+    private static final int BODY_LOADER_ID = 1;
+
+    /**
+     * Separator of the parts of the byline
+     **/
+    private static final String BYLINE_SEPARATOR = " \u00b7 ";
+
+    /**
+     * Website URL of the article
+     **/
+    private String mUrl;
+
+    /**
+     * Whether there was a network connection when the body started loading
+     **/
+    private boolean mIsConnected;
+
+    /**
+     * Time the reader started loading the body, from {@link PipelineMetrics#now()}
+     **/
+    private long mLoadStartNanos;
+
+    /**
+     * Returns the intent that opens the article in the reader.
+     */
+    public static Intent newIntent(Context context, Article article) {
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_ID, article.getId());
+        intent.putExtra(EXTRA_TITLE, article.getArticleTitle());
+        intent.putExtra(EXTRA_SECTION, article.getSectionTitle());
+        intent.putExtra(EXTRA_AUTHORS, article.getAuthorNames());
+        intent.putExtra(EXTRA_PUBLICATION_TIME, article.getPublicationTime());
+        intent.putExtra(EXTRA_URL, article.getUrl());
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.reader_activity);
+
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        // Show the details that came with the intent while the body loads.
+        Intent intent = getIntent();
+        mUrl = intent.getStringExtra(EXTRA_URL);
+        TextView titleTextView = (TextView) findViewById(R.id.reader_title);
+        titleTextView.setText(intent.getStringExtra(EXTRA_TITLE));
+        TextView bylineTextView = (TextView) findViewById(R.id.reader_byline);
+        bylineTextView.setText(buildByline(intent));
+
+        // Load the body, from the store if it was prefetched.
+        mIsConnected = isConnected();
+        mLoadStartNanos = PipelineMetrics.now();
+        getLoaderManager().initLoader(BODY_LOADER_ID, null, this);
+    }
+
+    /**
+     * Returns the section, authors and publication date of the article, separated by dots.
+     */
+    private String buildByline(Intent intent) {
+        List<String> parts = new ArrayList<>(3);
+        String section = intent.getStringExtra(EXTRA_SECTION);
+        if (!TextUtils.isEmpty(section)) {
+            parts.add(section);
+        }
+        String authors = intent.getStringExtra(EXTRA_AUTHORS);
+        if (!TextUtils.isEmpty(authors)) {
+            parts.add(authors);
+        }
+        long publicationTime = intent.getLongExtra(EXTRA_PUBLICATION_TIME, 0);
+        if (publicationTime != 0) {
+            parts.add(DateUtils.formatDateTime(this, publicationTime,
+                    DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_TIME));
+        }
+        return TextUtils.join(BYLINE_SEPARATOR, parts);
+    }
+
+    /**
+     * Returns true if there is a network connection.
+     */
+    private boolean isConnected() {
+        ConnectivityManager connectManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * Adds the action that opens the article in a web browser.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader_menu, menu);
+        menu.findItem(R.id.action_open_in_browser).setVisible(mUrl != null);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                // Go back to the list, which is still where it was left.
+                finish();
+                return true;
+            case R.id.action_open_in_browser:
+                startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    @Override
+    public Loader<String> onCreateLoader(int id, Bundle bundle) {
+        return new BodyLoader(this, getIntent().getStringExtra(EXTRA_ID), mIsConnected);
+    }
+
+    /**
+     * Shows the body, or a message if it could not be loaded.
+     */
+    @Override
+    public void onLoadFinished(Loader<String> loader, String body) {
+        ProgressBar progressBar = (ProgressBar) findViewById(R.id.reader_loading_indicator);
+        progressBar.setVisibility(View.GONE);
+
+        TextView emptyTextView = (TextView) findViewById(R.id.reader_empty_view);
+        if (body == null) {
+            emptyTextView.setText(mIsConnected ? R.string.body_unavailable : R.string.body_unavailable_offline);
+            emptyTextView.setVisibility(View.VISIBLE);
+            return;
+        }
+        emptyTextView.setVisibility(View.GONE);
+        TextView bodyTextView = (TextView) findViewById(R.id.reader_body);
+        bodyTextView.setText(body);
+
+        // Records how long the reader took to show the body.
+        if (mLoadStartNanos != 0) {
+            PipelineMetrics.recordSince(PipelineMetrics.TIME_TO_BODY, mLoadStartNanos);
+            mLoadStartNanos = 0;
+        }
+    }
+
+    @Override
+    public void onLoaderReset(Loader<String> loader) {
+    }
+}
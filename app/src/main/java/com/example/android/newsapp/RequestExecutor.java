@@ -0,0 +1,281 @@
+package com.example.android.newsapp;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs idempotent GET requests to the Guardian API resiliently. Every attempt takes a permit
+ * from a shared {@link TokenBucket}, so parallel fetches stay under the quota. Failed attempts
+ * that may succeed later are retried after a jittered exponential backoff, or after the time
+ * the server asked for with Retry-After. A {@link CircuitBreaker} refuses requests while the
+ * server keeps failing or the daily quota is used up, so callers fall back to cached data.
+ */
+public final class RequestExecutor {
+
+    /**
+     * Maximum number of attempts of a request
+     **/
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Backoff before the first retry, doubled for every further retry, and its upper bound
+     **/
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(8);
+
+    /**
+     * Longest Retry-After that is waited for. A request asked to wait longer fails right away,
+     * and the circuit is blocked for that time, so other requests fall back to cached data
+     * instead of waiting.
+     **/
+    private static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Time the circuit is blocked once the daily quota is used up
+     **/
+    private static final long QUOTA_EXHAUSTED_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Rate limit headers of the Guardian API
+     **/
+    private static final String HEADER_REMAINING_MINUTE = "X-RateLimit-Remaining-minute";
+    private static final String HEADER_REMAINING_DAY = "X-RateLimit-Remaining-day";
+
+    /**
+     * Status code of a response to too many requests
+     **/
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * A request that can be attempted several times.
+     */
+    public interface Request<V> {
+        /**
+         * Makes one attempt of the request. Throws an {@link HttpStatusException} if the server
+         * answered with an error status.
+         */
+        V execute(CancellationToken token) throws IOException;
+    }
+
+    /**
+     * Thrown instead of making a request while the circuit is open.
+     */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException() {
+            super("Circuit open, request not sent");
+        }
+    }
+
+    private final TokenBucket mBucket;
+    private final CircuitBreaker mBreaker;
+    private final Random mRandom = new Random();
+
+    /**
+     * Outcome counters, exposed as metrics
+     **/
+    private final AtomicInteger mAttemptCount = new AtomicInteger();
+    private final AtomicInteger mRetryCount = new AtomicInteger();
+    private final AtomicInteger mSuccessCount = new AtomicInteger();
+    private final AtomicInteger mFailureCount = new AtomicInteger();
+    private final AtomicInteger mRateLimitedCount = new AtomicInteger();
+    private final AtomicInteger mRejectedCount = new AtomicInteger();
+    private final AtomicInteger mFallbackCount = new AtomicInteger();
+
+    public RequestExecutor(TokenBucket bucket, CircuitBreaker breaker) {
+        mBucket = bucket;
+        mBreaker = breaker;
+    }
+
+    /**
+     * Runs the request, retrying it while it fails in a way that may succeed later. Returns
+     * its result, or null if the token was cancelled. Throws the failure of the last attempt,
+     * or a {@link CircuitOpenException} if the request was not sent.
+     */
+    public <V> V execute(Request<V> request, CancellationToken token) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            if (!mBreaker.allowRequest()) {
+                mRejectedCount.incrementAndGet();
+                throw new CircuitOpenException();
+            }
+            if (!acquirePermit(token)) {
+                mBreaker.onCanceled();
+                return null;
+            }
+
+            mAttemptCount.incrementAndGet();
+            IOException failure = null;
+            boolean reported = false;
+            try {
+                V result = request.execute(token);
+                mBreaker.onSuccess();
+                mSuccessCount.incrementAndGet();
+                reported = true;
+                return result;
+            } catch (IOException e) {
+                failure = e;
+                reported = true;
+            } finally {
+                // An unchecked exception, e.g. a bug in the parser, still ends the attempt as a
+                // failure, so a half-open circuit does not wait for its probe forever.
+                if (!reported) {
+                    mBreaker.onFailure();
+                    mFailureCount.incrementAndGet();
+                }
+            }
+
+            // A request aborted by its token is not a failure of the server.
+            if (token != null && token.isCanceled()) {
+                mBreaker.onCanceled();
+                return null;
+            }
+
+            long retryAfter = 0;
+            boolean retryable = true;
+            if (failure instanceof HttpStatusException) {
+                HttpStatusException status = (HttpStatusException) failure;
+                retryAfter = status.getRetryAfterMillis();
+                retryable = status.isRetryable();
+                if (status.getCode() == HTTP_TOO_MANY_REQUESTS) {
+                    mRateLimitedCount.incrementAndGet();
+                }
+            }
+            if (retryAfter > MAX_RETRY_AFTER_MILLIS) {
+                mBreaker.blockFor(retryAfter);
+            } else if (retryable) {
+                mBreaker.onFailure();
+            } else {
+                // The server answered, so it is up; the request itself is wrong.
+                mBreaker.onSuccess();
+            }
+            if (retryAfter > 0 && retryAfter <= MAX_RETRY_AFTER_MILLIS) {
+                // Hold back every request, not only this one, until the server is ready.
+                mBucket.pauseFor(retryAfter);
+            }
+
+            if (!retryable || attempt >= MAX_ATTEMPTS || retryAfter > MAX_RETRY_AFTER_MILLIS) {
+                mFailureCount.incrementAndGet();
+                throw failure;
+            }
+
+            // Wait before the next attempt, unless the token is cancelled meanwhile.
+            long delay = retryAfter > 0 ? retryAfter : backoff(attempt);
+            mRetryCount.incrementAndGet();
+            PipelineMetrics.RETRY_WAIT.record(delay);
+            if (!sleep(token, delay)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Adjusts to the quota headers of a response. Once the quota of the minute or of the day
+     * is used up, the circuit is blocked until it is expected to be renewed, so requests are
+     * not sent only to be refused. The response that used up the quota usually succeeds, and
+     * the block outlasts that success.
+     */
+    public void onResponse(HttpURLConnection urlConnection) {
+        if ("0".equals(urlConnection.getHeaderField(HEADER_REMAINING_DAY))) {
+            mBreaker.blockFor(QUOTA_EXHAUSTED_MILLIS);
+        } else if ("0".equals(urlConnection.getHeaderField(HEADER_REMAINING_MINUTE))) {
+            long minute = TimeUnit.MINUTES.toMillis(1);
+            mBreaker.blockFor(minute - System.currentTimeMillis() % minute);
+        }
+    }
+
+    /**
+     * Records that a caller served cached data because the request failed.
+     */
+    public void recordFallback() {
+        mFallbackCount.incrementAndGet();
+    }
+
+    public int getAttemptCount() {
+        return mAttemptCount.get();
+    }
+
+    public int getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    public int getSuccessCount() {
+        return mSuccessCount.get();
+    }
+
+    public int getFailureCount() {
+        return mFailureCount.get();
+    }
+
+    public int getRateLimitedCount() {
+        return mRateLimitedCount.get();
+    }
+
+    public int getRejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    public int getFallbackCount() {
+        return mFallbackCount.get();
+    }
+
+    /**
+     * Returns a human readable summary of the outcomes.
+     */
+    public String dump() {
+        return "Requests{attempts=" + getAttemptCount()
+                + ", retries=" + getRetryCount()
+                + ", succeeded=" + getSuccessCount()
+                + ", failed=" + getFailureCount()
+                + ", rate limited=" + getRateLimitedCount()
+                + ", refused by open circuit=" + getRejectedCount()
+                + ", served from cache=" + getFallbackCount()
+                + ", circuit " + (mBreaker.isOpen() ? "open" : "closed") + "}";
+    }
+
+    /**
+     * Takes a permit of the bucket and records the wait. Returns false if the token was cancelled.
+     */
+    private boolean acquirePermit(CancellationToken token) {
+        try {
+            long waited = mBucket.acquire(token);
+            if (waited > 0) {
+                PipelineMetrics.RATE_LIMIT_WAIT.record(waited);
+            }
+            return waited >= 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the backoff before the retry after the attempt: half of the exponential delay,
+     * plus a random part of the other half, so clients that failed together retry apart.
+     */
+    private long backoff(int attempt) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        long jitter;
+        synchronized (mRandom) {
+            jitter = (long) (mRandom.nextDouble() * delay / 2);
+        }
+        return delay / 2 + jitter;
+    }
+
+    /**
+     * Waits for the time, or until the token is cancelled. Returns false if it was cancelled.
+     */
+    private static boolean sleep(CancellationToken token, long millis) {
+        try {
+            if (token == null) {
+                Thread.sleep(millis);
+                return true;
+            }
+            return token.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A topic the user follows, shown as a tab of its own: either the articles matching a search
+ * query, e.g. "climate", or the articles with a Guardian tag, e.g. the contributor
+ * "profile/georgemonbiot". Saved feeds are kept in the preferences, in the order they were added.
+ */
+public final class SavedFeed {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = SavedFeed.class.getSimpleName();
+
+    /**
+     * Name of the preferences file holding the saved feeds, and key of their list
+     **/
+    private static final String PREFS_NAME = "saved_feeds";
+    private static final String KEY_FEEDS = "feeds";
+
+    /**
+     * Keys of a saved feed in its JSON form
+     **/
+    private static final String JSON_QUERY = "query";
+    private static final String JSON_TAG = "tag";
+
+    /**
+     * Words the articles match, or null for a tag feed
+     **/
+    private final String mQuery;
+
+    /**
+     * Tag of the articles, or null for a query feed
+     **/
+    private final String mTag;
+
+    private SavedFeed(String query, String tag) {
+        mQuery = query;
+        mTag = tag;
+    }
+
+    /**
+     * Returns the feed of what the user typed: a tag if it looks like one, e.g.
+     * "profile/georgemonbiot" or "environment/climate-change", or else a search query.
+     * Returns null if nothing was typed.
+     */
+    public static SavedFeed fromInput(String text) {
+        String input = text == null ? "" : text.trim();
+        if (input.isEmpty()) {
+            return null;
+        }
+        if (input.matches("[a-z0-9-]+/[a-z0-9-]+")) {
+            return new SavedFeed(null, input);
+        }
+        return new SavedFeed(input.toLowerCase(Locale.getDefault()), null);
+    }
+
+    /**
+     * Returns the key of the feed, unique among the saved feeds.
+     */
+    public String getId() {
+        return mTag != null ? "tag:" + mTag : "q:" + mQuery;
+    }
+
+    /**
+     * Returns the title of the feed's tab.
+     */
+    public String getTitle() {
+        return mTag != null ? mTag.substring(mTag.indexOf('/') + 1).replace('-', ' ') : mQuery;
+    }
+
+    /**
+     * Returns the Guardian URL of the first page of the feed, sized for the current
+     * {@link NetworkPolicy}.
+     */
+    public String buildUrl() {
+        return new GuardianQuery()
+                .query(mQuery)
+                .tag(mTag)
+                .pageSize(NetworkPolicy.current().getPageSize())
+                .showFields(GuardianFeed.getFeedFields())
+                .build();
+    }
+
+    /**
+     * Returns the saved feeds, in the order they were added.
+     */
+    public static List<SavedFeed> loadAll(Context context) {
+        List<SavedFeed> feeds = new ArrayList<>();
+        String json = getPrefs(context).getString(KEY_FEEDS, null);
+        if (TextUtils.isEmpty(json)) {
+            return feeds;
+        }
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject feed = array.getJSONObject(i);
+                feeds.add(new SavedFeed(feed.optString(JSON_QUERY, null), feed.optString(JSON_TAG, null)));
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem reading the saved feeds.", e);
+        }
+        return feeds;
+    }
+
+    /**
+     * Adds the feed after the other saved feeds, unless it is saved already. Returns false if it was.
+     */
+    public static boolean add(Context context, SavedFeed feed) {
+        List<SavedFeed> feeds = loadAll(context);
+        for (SavedFeed saved : feeds) {
+            if (saved.getId().equals(feed.getId())) {
+                return false;
+            }
+        }
+        feeds.add(feed);
+        saveAll(context, feeds);
+        return true;
+    }
+
+    /**
+     * Removes the feed from the saved feeds.
+     */
+    public static void remove(Context context, SavedFeed feed) {
+        List<SavedFeed> feeds = loadAll(context);
+        for (int i = feeds.size() - 1; i >= 0; i--) {
+            if (feeds.get(i).getId().equals(feed.getId())) {
+                feeds.remove(i);
+            }
+        }
+        saveAll(context, feeds);
+    }
+
+    private static void saveAll(Context context, List<SavedFeed> feeds) {
+        JSONArray array = new JSONArray();
+        try {
+            for (SavedFeed feed : feeds) {
+                JSONObject json = new JSONObject();
+                json.put(JSON_QUERY, feed.mQuery);
+                json.put(JSON_TAG, feed.mTag);
+                array.put(json);
+            }
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem writing the saved feeds.", e);
+            return;
+        }
+        getPrefs(context).edit().putString(KEY_FEEDS, array.toString()).apply();
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches several Guardian queries, e.g. one per section, concurrently on a bounded
+ * thread pool and merges the results into a single feed. The total time is close to the
+ * slowest single request rather than the sum of all of them. Each query has its own
+ * {@link CancellationToken}, cancelled once the query has run for its timeout, so a slow
+ * request is aborted instead of holding a thread of the pool.
+ */
+public final class SectionFetchEngine {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = SectionFetchEngine.class.getSimpleName();
+
+    /**
+     * Maximum number of requests running at the same time
+     **/
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * Time after which a request that has not finished is given up, in milliseconds, counted
+     * from when the request starts rather than from when it was queued
+     **/
+    private static final long REQUEST_TIMEOUT_MILLIS = 20000;
+
+    /**
+     * Orders articles newest first by their parsed publication time.
+     **/
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            long timeA = a.getPublicationTime();
+            long timeB = b.getPublicationTime();
+            return timeA < timeB ? 1 : (timeA == timeB ? 0 : -1);
+        }
+    };
+
+    /**
+     * Thread pool shared by all fetches, including those of the {@link FeedScheduler}, so the
+     * number of open connections stays bounded
+     **/
+    private static final ThreadPoolExecutor sExecutor = createExecutor();
+
+    /**
+     * Timer that cancels the requests that run past their timeout
+     **/
+    private static final ScheduledThreadPoolExecutor sTimeouts = createTimer();
+
+    /**
+     * Receives the articles of each query as soon as they arrive.
+     */
+    public interface Listener {
+        /**
+         * Called on the fetching thread with the articles of one query, or on a thread of the
+         * pool for a query that arrived after a fetch with a timeout returned.
+         */
+        void onQueryLoaded(String queryUrl, List<Article> articles);
+
+        /**
+         * Called like {@link #onQueryLoaded} for a query that failed or timed out, so every
+         * query of a fetch that is not cancelled is reported once.
+         */
+        void onQueryFailed(String queryUrl);
+    }
+
+    /**
+     * A private constructor for {@link SectionFetchEngine} because methods are static.
+     */
+    private SectionFetchEngine() {
+    }
+
+    /**
+     * Fetches all queries concurrently and returns their articles merged newest first, without
+     * duplicate URLs. Queries that fail or time out are left out. Returns null if all failed
+     * or the fetch was cancelled.
+     * @param queryUrls to fetch
+     * @param listener  notified as each query arrives, or null
+     * @param token     cancels the queries that have not finished yet, or null
+     */
+    public static List<Article> fetch(List<String> queryUrls, Listener listener, CancellationToken token) {
+        return fetchUntil(queryUrls, listener, token, 0);
+    }
+
+    /**
+     * Fetches all queries like {@link #fetch(List, Listener, CancellationToken)}, but waits for
+     * them no longer than the timeout, e.g. the first screen's budget of the
+     * {@link NetworkPolicy}. The queries that arrived by then are returned; the others carry
+     * on and are passed to the listener as they arrive, until they time out or the token is
+     * cancelled.
+     * @param timeoutMillis longest time to wait for the queries, in milliseconds
+     */
+    public static List<Article> fetch(List<String> queryUrls, Listener listener, CancellationToken token,
+                                      long timeoutMillis) {
+        return fetchUntil(queryUrls, listener, token, System.currentTimeMillis() + timeoutMillis);
+    }
+
+    /**
+     * Fetches all queries, waiting for them until the deadline, or as long as they run if
+     * it is 0. The queries that have not finished by the deadline are left running.
+     */
+    private static List<Article> fetchUntil(List<String> queryUrls, Listener listener, CancellationToken token,
+                                            long deadline) {
+        // Cancelled along with the caller's token, or once every query is over, which aborts
+        // the requests of all the queries.
+        CancellationToken fetchToken = token != null ? token.createChild() : new CancellationToken();
+        final Fetch fetch = new Fetch(listener, fetchToken);
+        for (final String queryUrl : queryUrls) {
+            final CancellationToken queryToken = fetchToken.createChild();
+            sExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    QueryResult result;
+                    try {
+                        result = fetchQuery(queryUrl, queryToken);
+                    } catch (RuntimeException e) {
+                        Log.e(LOG_TAG, "Problem fetching a query.", e);
+                        result = new QueryResult(queryUrl, null);
+                    }
+                    fetch.onQueryFinished(result);
+                }
+            });
+        }
+
+        List<Article> merged = null;
+        int pending = queryUrls.size();
+        try {
+            // Take the results in the order they complete, not the order they were submitted.
+            while (pending > 0 && !fetchToken.isCanceled()) {
+                List<QueryResult> results = new ArrayList<>(1);
+                if (deadline == 0) {
+                    results.add(fetch.mResults.take());
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    QueryResult result = fetch.mResults.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (result != null) {
+                        results.add(result);
+                    } else {
+                        // Leave the queries that are still running to the listener.
+                        results = fetch.stopWaiting();
+                        Log.e(LOG_TAG, "Timed out waiting for " + (pending - results.size()) + " queries.");
+                    }
+                }
+
+                for (QueryResult result : results) {
+                    pending--;
+                    if (result.mArticles == null) {
+                        if (listener != null && !fetchToken.isCanceled()) {
+                            listener.onQueryFailed(result.mQueryUrl);
+                        }
+                        continue;
+                    }
+                    if (merged == null) {
+                        merged = new ArrayList<>();
+                    }
+                    merged.addAll(result.mArticles);
+                    if (listener != null) {
+                        listener.onQueryLoaded(result.mQueryUrl, result.mArticles);
+                    }
+                }
+                if (fetch.isLate()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetchToken.cancel();
+        } finally {
+            if (pending == 0 || fetchToken.isCanceled()) {
+                fetchToken.cancel();
+            }
+        }
+        if (token != null && token.isCanceled()) {
+            return null;
+        }
+        return merged == null ? null : mergeNewestFirst(merged);
+    }
+
+    /**
+     * Fetches one query, cancelling its token once it has run for the request timeout.
+     */
+    private static QueryResult fetchQuery(String queryUrl, final CancellationToken queryToken) {
+        // The fetch was over before the query got a thread.
+        if (queryToken.isCanceled()) {
+            return new QueryResult(queryUrl, null);
+        }
+        ScheduledFuture<?> timeout = sTimeouts.schedule(new Runnable() {
+            @Override
+            public void run() {
+                queryToken.cancel();
+            }
+        }, REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            List<Article> articles = QueryUtils.fetchArticleData(queryUrl, queryToken);
+            if (articles == null && timeout.isDone()) {
+                Log.e(LOG_TAG, "Timed out fetching " + queryUrl);
+            }
+            return new QueryResult(queryUrl, articles);
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Runs a fetch on the shared thread pool, so it counts against the same limit of
+     * concurrent requests as the queries of the main feed.
+     */
+    static void execute(Runnable fetch) {
+        sExecutor.execute(fetch);
+    }
+
+    /**
+     * Returns the articles sorted newest first, keeping only the first article with each
+     * Guardian id, or with each URL for articles without an id.
+     */
+    static List<Article> mergeNewestFirst(List<Article> articles) {
+        List<Article> sorted = new ArrayList<>(articles);
+        Collections.sort(sorted, NEWEST_FIRST);
+
+        Set<String> keys = new HashSet<>();
+        List<Article> merged = new ArrayList<>(sorted.size());
+        for (Article article : sorted) {
+            String key = article.getId() != null ? article.getId() : article.getUrl();
+            if (key == null || keys.add(key)) {
+                merged.add(article);
+            }
+        }
+        return merged;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "SectionFetch #" + count.incrementAndGet());
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        // Let the threads die while the app is idle.
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "SectionFetch timeouts");
+            }
+        });
+        // Let the thread die once no request is running.
+        timer.setKeepAliveTime(30, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        return timer;
+    }
+
+    /**
+     * The queries of one fetch. Their results are queued for the caller while it waits for
+     * them; once it stops waiting, the queries still running pass their articles straight to
+     * the listener.
+     */
+    private static final class Fetch {
+        private final LinkedBlockingQueue<QueryResult> mResults = new LinkedBlockingQueue<>();
+        private final Listener mListener;
+        private final CancellationToken mToken;
+        private boolean mWaiting = true;
+
+        private Fetch(Listener listener, CancellationToken token) {
+            mListener = listener;
+            mToken = token;
+        }
+
+        /**
+         * Queues the result for the caller, or passes it to the listener if the caller no
+         * longer waits.
+         */
+        void onQueryFinished(QueryResult result) {
+            synchronized (this) {
+                if (mWaiting) {
+                    mResults.add(result);
+                    return;
+                }
+            }
+            if (mListener == null || mToken.isCanceled()) {
+                return;
+            }
+            if (result.mArticles != null) {
+                mListener.onQueryLoaded(result.mQueryUrl, result.mArticles);
+            } else {
+                mListener.onQueryFailed(result.mQueryUrl);
+            }
+        }
+
+        /**
+         * Stops waiting, and returns the results that were queued until then.
+         */
+        synchronized List<QueryResult> stopWaiting() {
+            mWaiting = false;
+            List<QueryResult> results = new ArrayList<>();
+            mResults.drainTo(results);
+            return results;
+        }
+
+        synchronized boolean isLate() {
+            return !mWaiting;
+        }
+    }
+
+    /**
+     * The articles of one query.
+     */
+    private static final class QueryResult {
+        private final String mQueryUrl;
+        private final List<Article> mArticles;
+
+        private QueryResult(String queryUrl, List<Article> articles) {
+            mQueryUrl = queryUrl;
+            mArticles = articles;
+        }
+    }
+}
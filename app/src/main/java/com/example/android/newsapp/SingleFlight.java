@@ -0,0 +1,185 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs at most one call per key at a time. Callers that ask for a key whose call is
+ * already in flight wait for that call and share its result instead of starting another.
+ * A call is cancelled only when every caller waiting for it has been cancelled, but a
+ * cancelled caller stops waiting for it straight away.
+ * @param <K> type of the keys
+ * @param <V> type of the results
+ */
+public final class SingleFlight<K, V> {
+
+    /**
+     * A call that can be aborted through the token it is given.
+     */
+    public interface Call<V> {
+        /**
+         * Computes the result. The token is cancelled when no caller wants the result any more.
+         */
+        V call(CancellationToken token) throws Exception;
+    }
+
+    /**
+     * Calls in flight, by key
+     **/
+    private final Map<K, Flight<V>> mFlights = new HashMap<>();
+
+    /**
+     * Runs the call on the calling thread, or waits for the call already in flight for the key.
+     * @param token cancels the caller's interest in the result, or null if it cannot be cancelled
+     * @throws ExecutionException    if the call threw an exception
+     * @throws CancellationException if the caller's token was cancelled
+     */
+    public V run(final K key, CancellationToken token, Call<V> call)
+            throws ExecutionException, InterruptedException {
+        final Flight<V> flight;
+        boolean owner = false;
+        synchronized (mFlights) {
+            Flight<V> inFlight = mFlights.get(key);
+            if (inFlight == null) {
+                inFlight = new Flight<>(call);
+                mFlights.put(key, inFlight);
+                owner = true;
+            }
+            inFlight.mWaiterCount++;
+            flight = inFlight;
+        }
+
+        // Stops waiting when the caller is cancelled, or when the call has finished.
+        final AtomicBoolean left = new AtomicBoolean();
+        final CountDownLatch wake = new CountDownLatch(1);
+        Runnable leave = new Runnable() {
+            @Override
+            public void run() {
+                if (left.compareAndSet(false, true)) {
+                    leave(key, flight);
+                }
+                wake.countDown();
+            }
+        };
+        if (token != null) {
+            token.addOnCancelListener(leave);
+        }
+
+        try {
+            if (owner) {
+                try {
+                    flight.mTask.run();
+                } finally {
+                    remove(key, flight);
+                }
+            } else {
+                // Wait for the call, or until the caller is cancelled, whichever comes first.
+                flight.addWaiter(wake);
+                wake.await();
+            }
+            if (token != null) {
+                token.throwIfCanceled();
+            }
+            return flight.mTask.get();
+        } finally {
+            if (token != null) {
+                token.removeOnCancelListener(leave);
+            }
+            leave.run();
+        }
+    }
+
+    /**
+     * Returns true if a call for the key is in flight.
+     */
+    public boolean isInFlight(K key) {
+        synchronized (mFlights) {
+            return mFlights.containsKey(key);
+        }
+    }
+
+    /**
+     * Removes a waiter from the flight, and cancels the call if nobody waits for it any more.
+     * A cancelled call is forgotten straight away, so new callers start a fresh one.
+     */
+    private void leave(K key, Flight<V> flight) {
+        boolean cancel;
+        synchronized (mFlights) {
+            cancel = --flight.mWaiterCount == 0 && !flight.mTask.isDone();
+            if (cancel) {
+                remove(key, flight);
+            }
+        }
+        if (cancel) {
+            flight.mToken.cancel();
+        }
+    }
+
+    private void remove(K key, Flight<V> flight) {
+        synchronized (mFlights) {
+            if (mFlights.get(key) == flight) {
+                mFlights.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A call in flight and the callers waiting for it.
+     */
+    private static final class Flight<V> {
+        private final CancellationToken mToken = new CancellationToken();
+        private final FutureTask<V> mTask;
+        private int mWaiterCount;
+
+        /**
+         * Latches of the callers waiting for the call to finish, or null once it has
+         **/
+        private List<CountDownLatch> mWaiters = new ArrayList<>();
+
+        private Flight(final Call<V> call) {
+            mTask = new FutureTask<V>(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return call.call(mToken);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    onDone();
+                }
+            };
+        }
+
+        /**
+         * Opens the latch once the call has finished, or right away if it already has.
+         */
+        void addWaiter(CountDownLatch waiter) {
+            synchronized (this) {
+                if (mWaiters != null) {
+                    mWaiters.add(waiter);
+                    return;
+                }
+            }
+            waiter.countDown();
+        }
+
+        private void onDone() {
+            List<CountDownLatch> waiters;
+            synchronized (this) {
+                waiters = mWaiters;
+                mWaiters = null;
+            }
+            for (CountDownLatch waiter : waiters) {
+                waiter.countDown();
+            }
+        }
+    }
+}
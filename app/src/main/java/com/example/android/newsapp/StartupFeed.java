@@ -0,0 +1,88 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads the first page of the stored feed when the app is launched, in parallel with the
+ * activity being created, so the first frame can already show the last feed instead of
+ * a blank list. It is handed out once; later starts are served by {@link ArticleLoader}.
+ */
+public final class StartupFeed {
+
+    /**
+     * Read of the stored first page, or null once it was handed out or given up
+     **/
+    private static FutureTask<List<Article>> sPending;
+
+    /**
+     * A private constructor for {@link StartupFeed} because methods are static.
+     */
+    private StartupFeed() {
+    }
+
+    /**
+     * Starts reading the stored first page on the executor. Opening the database and
+     * building the date labels are done there too, so neither happens on the main thread.
+     */
+    static synchronized void preload(final Context context, Executor executor) {
+        final Context appContext = context.getApplicationContext();
+        sPending = new FutureTask<>(new Callable<List<Article>>() {
+            @Override
+            public List<Article> call() {
+                // The activity maps the snapshot of the feed itself when there is one.
+                if (FeedSnapshot.getFile(appContext).isFile()) {
+                    return null;
+                }
+                List<Article> articles = ArticleStore.getInstance(appContext).queryArticles(0,
+                        GuardianFeed.getPageSize(NetworkPolicy.current().getPageSize()));
+                ArticleDateFormatter.getInstance(appContext).prewarm(articles);
+                return articles;
+            }
+        });
+        executor.execute(sPending);
+    }
+
+    /**
+     * Returns true while the stored first page is being read.
+     */
+    public static synchronized boolean isPending() {
+        return sPending != null && !sPending.isDone();
+    }
+
+    /**
+     * Returns the stored first page if it has been read, or null if it is still being read,
+     * is empty or was already taken. Never waits.
+     */
+    public static synchronized List<Article> poll() {
+        if (sPending == null || !sPending.isDone()) {
+            return null;
+        }
+        FutureTask<List<Article>> done = sPending;
+        sPending = null;
+        try {
+            List<Article> articles = done.get();
+            return articles == null || articles.isEmpty() ? null : articles;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gives up the stored first page, e.g. because the loader already delivered the feed.
+     */
+    public static synchronized void discard() {
+        if (sPending != null) {
+            sPending.cancel(false);
+            sPending = null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.android.newsapp;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the markers of an app start: the process starting, the first frame being drawn
+ * and the first article row being drawn. A cold start is measured from the process start,
+ * a warm start, i.e. the activity being created again in a running process, from the
+ * activity creation. An activity recreated from its saved state, e.g. after a rotation, is
+ * not an app start and is not recorded. The times are recorded in {@link PipelineMetrics}.
+ */
+public final class StartupTracer {
+
+    /**
+     * Log messages tag
+     **/
+    private static final String LOG_TAG = StartupTracer.class.getSimpleName();
+
+    /**
+     * A first activity created later than this after the process start was not what started
+     * the process, e.g. the background sync did, so it is traced as a warm start
+     **/
+    private static final long MAX_COLD_START_MILLIS = 10000;
+
+    /**
+     * Time the process started, from {@link PipelineMetrics#now()}
+     **/
+    private static long sProcessStartNanos = PipelineMetrics.now();
+
+    /**
+     * Whether the cold start has been traced, so later activities are traced as warm starts
+     **/
+    private static boolean sColdStartTraced;
+
+    /**
+     * Whether this start is the first activity of the process
+     **/
+    private final boolean mCold;
+
+    /**
+     * Whether this start is recorded, i.e. the activity was not recreated from its saved state
+     **/
+    private final boolean mRecorded;
+
+    /**
+     * Time this start is measured from, from {@link PipelineMetrics#now()}
+     **/
+    private final long mStartNanos;
+
+    /**
+     * Whether the first frame and the first content have been recorded
+     **/
+    private boolean mFirstFrameRecorded;
+    private boolean mFirstContentRecorded;
+
+    private StartupTracer(boolean cold, boolean recorded, long startNanos) {
+        mCold = cold;
+        mRecorded = recorded;
+        mStartNanos = startNanos;
+    }
+
+    /**
+     * Marks the start of the process. Called as early as possible by {@link NewsApplication},
+     * and moved back to the time the system forked the process where it is known.
+     */
+    static void markProcessStart() {
+        long now = PipelineMetrics.now();
+        sProcessStartNanos = now;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            long sinceForkMillis = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+            sProcessStartNanos = now - TimeUnit.MILLISECONDS.toNanos(sinceForkMillis);
+        }
+    }
+
+    /**
+     * Starts tracing the start of the activity. Only the first activity of the process is
+     * traced as a cold start. Called on the main thread.
+     * @param recreated whether the activity was recreated from its saved state, in which case
+     *                  nothing is recorded
+     */
+    public static StartupTracer begin(boolean recreated) {
+        long now = PipelineMetrics.now();
+        boolean cold = !recreated && !sColdStartTraced
+                && PipelineMetrics.toMillis(now - sProcessStartNanos) < MAX_COLD_START_MILLIS;
+        sColdStartTraced = true;
+        return new StartupTracer(cold, !recreated, cold ? sProcessStartNanos : now);
+    }
+
+    /**
+     * Returns true if this is the first activity of the process.
+     */
+    public boolean isCold() {
+        return mCold;
+    }
+
+    /**
+     * Returns the milliseconds elapsed since the start.
+     */
+    public long getElapsedMillis() {
+        return PipelineMetrics.toMillis(PipelineMetrics.now() - mStartNanos);
+    }
+
+    /**
+     * Records the first frame of the view hierarchy once it is about to be drawn.
+     */
+    public void watchFirstFrame(final View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                onFirstFrame();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Records the first frame that is drawn.
+     */
+    public void onFirstFrame() {
+        if (!mRecorded || mFirstFrameRecorded) {
+            return;
+        }
+        mFirstFrameRecorded = true;
+        PipelineMetrics.recordSince(mCold ? PipelineMetrics.COLD_START_FIRST_FRAME
+                : PipelineMetrics.WARM_START_FIRST_FRAME, mStartNanos);
+    }
+
+    /**
+     * Records the first frame showing articles, and tells the system the activity is fully
+     * drawn, so the time also appears in the system log.
+     */
+    public void onFirstContent(Activity activity) {
+        if (!mRecorded || mFirstContentRecorded) {
+            return;
+        }
+        mFirstContentRecorded = true;
+        onFirstFrame();
+        long millis = getElapsedMillis();
+        (mCold ? PipelineMetrics.COLD_START_FIRST_CONTENT : PipelineMetrics.WARM_START_FIRST_CONTENT).record(millis);
+        if (BuildConfig.DEBUG) {
+            Log.i(LOG_TAG, (mCold ? "Cold" : "Warm") + " start, first content after " + millis + " ms");
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            activity.reportFullyDrawn();
+        }
+    }
+}
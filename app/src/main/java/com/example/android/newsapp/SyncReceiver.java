@@ -0,0 +1,21 @@
+package com.example.android.newsapp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Starts {@link ArticleSyncService} when the sync alarm goes off, and sets the alarm
+ * again after a reboot, which clears all alarms.
+ */
+public class SyncReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            SyncScheduler.schedule(context);
+        } else if (SyncScheduler.ACTION_SYNC.equals(intent.getAction())) {
+            ArticleSyncService.enqueue(context);
+        }
+    }
+}
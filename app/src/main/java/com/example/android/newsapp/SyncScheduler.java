@@ -0,0 +1,163 @@
+package com.example.android.newsapp;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the background refresh of the {@link ArticleStore} by {@link ArticleSyncService}.
+ * Syncs run on a fixed interval, only while the configured network and charging constraints
+ * are met, and back off exponentially after failures.
+ */
+public final class SyncScheduler {
+
+    /**
+     * Interval between successful syncs
+     **/
+    private static final long SYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * First and longest delay before a failed sync is retried
+     **/
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * Name of the preferences file holding the sync state and constraints
+     **/
+    private static final String PREFS_NAME = "sync";
+
+    /**
+     * Preference keys
+     **/
+    private static final String KEY_REQUIRE_UNMETERED = "require_unmetered";
+    private static final String KEY_REQUIRE_CHARGING = "require_charging";
+    private static final String KEY_FAILURE_COUNT = "failure_count";
+    private static final String KEY_LAST_REFRESH = "last_refresh";
+
+    /**
+     * Action of the alarm that starts a sync
+     **/
+    static final String ACTION_SYNC = "com.example.android.newsapp.action.SYNC";
+
+    /**
+     * A private constructor for {@link SyncScheduler} because methods are static.
+     */
+    private SyncScheduler() {
+    }
+
+    /**
+     * Schedules the next sync after the regular interval, unless one is already scheduled.
+     */
+    public static void schedule(Context context) {
+        if (createPendingIntent(context, PendingIntent.FLAG_NO_CREATE) == null) {
+            scheduleIn(context, SYNC_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * Sets the conditions a sync waits for.
+     * @param requireUnmetered if syncs only run on unmetered networks, e.g. Wi-Fi
+     * @param requireCharging  if syncs only run while the device is charging
+     */
+    public static void setConstraints(Context context, boolean requireUnmetered, boolean requireCharging) {
+        getPrefs(context).edit()
+                .putBoolean(KEY_REQUIRE_UNMETERED, requireUnmetered)
+                .putBoolean(KEY_REQUIRE_CHARGING, requireCharging)
+                .apply();
+    }
+
+    /**
+     * Returns true if the device is connected and meets the configured constraints.
+     */
+    static boolean areConstraintsMet(Context context) {
+        SharedPreferences prefs = getPrefs(context);
+
+        ConnectivityManager connectManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return false;
+        }
+        if (prefs.getBoolean(KEY_REQUIRE_UNMETERED, true)
+                && ConnectivityManagerCompat.isActiveNetworkMetered(connectManager)) {
+            return false;
+        }
+        if (prefs.getBoolean(KEY_REQUIRE_CHARGING, false)) {
+            // The battery status is a sticky broadcast, so no receiver is needed to read it.
+            Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            int plugged = battery == null ? 0 : battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+            return plugged != 0;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the feed was refreshed, in the foreground or the background,
+     * recently enough that a sync would fetch the same data again.
+     */
+    static boolean isRecentlyRefreshed(Context context) {
+        long lastRefresh = getPrefs(context).getLong(KEY_LAST_REFRESH, 0);
+        return System.currentTimeMillis() - lastRefresh < SYNC_INTERVAL_MILLIS / 2;
+    }
+
+    /**
+     * Records a successful refresh of the store and schedules the next sync after the regular interval.
+     */
+    public static void onRefreshSucceeded(Context context) {
+        getPrefs(context).edit()
+                .putLong(KEY_LAST_REFRESH, System.currentTimeMillis())
+                .putInt(KEY_FAILURE_COUNT, 0)
+                .apply();
+        scheduleIn(context, SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Records a failed sync and schedules a retry with exponential backoff.
+     */
+    static void onSyncFailed(Context context) {
+        SharedPreferences prefs = getPrefs(context);
+        int failures = prefs.getInt(KEY_FAILURE_COUNT, 0) + 1;
+        prefs.edit().putInt(KEY_FAILURE_COUNT, failures).apply();
+
+        long backoff = INITIAL_BACKOFF_MILLIS << Math.min(failures - 1, 16);
+        scheduleIn(context, Math.min(backoff, MAX_BACKOFF_MILLIS));
+    }
+
+    /**
+     * Records a sync that was skipped because its constraints were not met.
+     */
+    static void onSyncSkipped(Context context) {
+        scheduleIn(context, SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Sets the alarm of the next sync, replacing any alarm already set.
+     */
+    private static void scheduleIn(Context context, long delayMillis) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        // Inexact and not waking the device, so the alarm is batched with other wake-ups.
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + delayMillis,
+                createPendingIntent(context, PendingIntent.FLAG_UPDATE_CURRENT));
+    }
+
+    private static PendingIntent createPendingIntent(Context context, int flags) {
+        Intent intent = new Intent(context, SyncReceiver.class).setAction(ACTION_SYNC);
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
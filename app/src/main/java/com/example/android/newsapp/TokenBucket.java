@@ -0,0 +1,104 @@
+package com.example.android.newsapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side rate limiter shared by all requests to the Guardian API, so parallel fetches
+ * stay under the API quota instead of being answered with 429s. Permits are added at a
+ * steady rate up to a burst size, and the server can pause the bucket, e.g. with a
+ * Retry-After header.
+ */
+public final class TokenBucket {
+
+    /**
+     * Permits added per second
+     **/
+    private final double mPermitsPerSecond;
+
+    /**
+     * Maximum number of permits saved up for a burst of requests
+     **/
+    private final double mCapacity;
+
+    /**
+     * Permits currently available
+     **/
+    private double mPermits;
+
+    /**
+     * Time the permits were last topped up, from {@link System#nanoTime()}
+     **/
+    private long mLastRefillNanos;
+
+    /**
+     * Time before which no permit is handed out, from {@link System#nanoTime()}
+     **/
+    private long mPausedUntilNanos;
+
+    /**
+     * Constructs a full {@link TokenBucket}.
+     * @param permitsPerSecond steady rate of requests
+     * @param capacity         number of requests that may be sent at once
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        mPermitsPerSecond = permitsPerSecond;
+        mCapacity = capacity;
+        mPermits = capacity;
+        mLastRefillNanos = System.nanoTime();
+        mPausedUntilNanos = mLastRefillNanos;
+    }
+
+    /**
+     * Takes a permit, waiting until one is available. Returns the time waited in milliseconds,
+     * or -1 if the token was cancelled while waiting.
+     * @param token cancels the wait, or null
+     */
+    public long acquire(CancellationToken token) throws InterruptedException {
+        long start = System.nanoTime();
+        while (true) {
+            long waitNanos = tryAcquire();
+            if (waitNanos == 0) {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            if (token == null) {
+                Thread.sleep(waitMillis);
+            } else if (!token.sleep(waitMillis)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Hands out no permits for the time, e.g. because the server asked to retry later.
+     * A longer pause that is already in place is kept.
+     */
+    public synchronized void pauseFor(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - mPausedUntilNanos > 0) {
+            mPausedUntilNanos = until;
+        }
+    }
+
+    /**
+     * Takes a permit if one is available and returns 0, or returns how long to wait for one,
+     * in nanoseconds.
+     */
+    private synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        if (mPausedUntilNanos - now > 0) {
+            return mPausedUntilNanos - now;
+        }
+
+        // Add the permits earned since the last top up.
+        double elapsedSeconds = (now - mLastRefillNanos) / 1e9;
+        mPermits = Math.min(mCapacity, mPermits + elapsedSeconds * mPermitsPerSecond);
+        mLastRefillNanos = now;
+
+        if (mPermits >= 1) {
+            mPermits -= 1;
+            return 0;
+        }
+        return (long) ((1 - mPermits) / mPermitsPerSecond * 1e9);
+    }
+}
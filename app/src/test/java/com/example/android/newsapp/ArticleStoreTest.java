@@ -0,0 +1,159 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the search of the {@link ArticleStore}: the FTS query built from what the user
+ * types, the ranking of the matches, and a search over an index of a few thousand articles,
+ * more than the main feed keeps.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ArticleStoreTest {
+
+    /**
+     * Number of articles of the large index
+     **/
+    private static final int INDEX_SIZE = 3000;
+
+    /**
+     * Generous bound of a search over the large index. Searches take a few milliseconds on
+     * a device; the bound leaves room for the SQLite of the test runner.
+     **/
+    private static final long MAX_SEARCH_MILLIS = 250;
+
+    /**
+     * Every word of the text becomes a prefix, in lower case.
+     */
+    @Test
+    public void matchQueryHasAPrefixPerWord() {
+        assertEquals("climate* chan*", ArticleStore.buildMatchQuery("Climate  Chan"));
+        assertEquals("covid* 19*", ArticleStore.buildMatchQuery(" covid-19 "));
+    }
+
+    /**
+     * Text without words matches nothing rather than everything.
+     */
+    @Test
+    public void matchQueryOfNoWordsIsNull() {
+        assertNull(ArticleStore.buildMatchQuery(null));
+        assertNull(ArticleStore.buildMatchQuery(""));
+        assertNull(ArticleStore.buildMatchQuery(" -*\"() "));
+    }
+
+    /**
+     * FTS operators and column filters typed by the user are taken as plain words.
+     */
+    @Test
+    public void matchQueryCannotInjectOperators() {
+        assertEquals("title* brexit* or* nhs*", ArticleStore.buildMatchQuery("title:brexit OR \"nhs*\""));
+        assertEquals("near* 2* trade*", ArticleStore.buildMatchQuery("NEAR/2 trade^"));
+    }
+
+    /**
+     * Only the first words of a long text are searched for.
+     */
+    @Test
+    public void matchQueryIsCapped() {
+        assertEquals("a* b* c* d* e* f* g* h*", ArticleStore.buildMatchQuery("a b c d e f g h i j"));
+    }
+
+    /**
+     * A hit in the title counts more than a hit in the authors, which counts more than a hit
+     * in the section.
+     */
+    @Test
+    public void titleHitsRankFirst() {
+        double title = ArticleStore.score(matchInfo(new int[][]{{1, 10, 5}, {0, 0, 0}, {0, 0, 0}}));
+        double authors = ArticleStore.score(matchInfo(new int[][]{{0, 0, 0}, {0, 0, 0}, {1, 10, 5}}));
+        double section = ArticleStore.score(matchInfo(new int[][]{{0, 0, 0}, {1, 10, 5}, {0, 0, 0}}));
+        assertTrue(title > authors);
+        assertTrue(authors > section);
+    }
+
+    /**
+     * A hit of a word that is rare in the index counts more than a hit of a common one, and
+     * two hits count more than one.
+     */
+    @Test
+    public void rareWordsRankFirst() {
+        double rare = ArticleStore.score(matchInfo(new int[][]{{1, 2, 2}, {0, 0, 0}, {0, 0, 0}}));
+        double common = ArticleStore.score(matchInfo(new int[][]{{1, 200, 150}, {0, 0, 0}, {0, 0, 0}}));
+        double twice = ArticleStore.score(matchInfo(new int[][]{{2, 200, 150}, {0, 0, 0}, {0, 0, 0}}));
+        assertTrue(rare > common);
+        assertTrue(twice > common);
+    }
+
+    /**
+     * Each phrase of the query adds to the score.
+     */
+    @Test
+    public void everyPhraseCounts() {
+        double one = ArticleStore.score(matchInfo(new int[][]{{1, 10, 5}, {0, 0, 0}, {0, 0, 0}}));
+        double two = ArticleStore.score(matchInfo(new int[][]{{1, 10, 5}, {0, 0, 0}, {0, 0, 0}},
+                new int[][]{{1, 10, 5}, {0, 0, 0}, {0, 0, 0}}));
+        assertEquals(2 * one, two, 1e-9);
+    }
+
+    /**
+     * A search over a few thousand articles finds the best match, including articles that
+     * fell out of the main feed, in a few milliseconds.
+     */
+    @Test
+    public void searchOfAFewThousandArticles() {
+        ArticleStore store = new ArticleStore(RuntimeEnvironment.application);
+        long now = System.currentTimeMillis();
+        List<Article> articles = new ArrayList<>(INDEX_SIZE);
+        for (int i = 0; i < INDEX_SIZE; i++) {
+            String topic = i % 100 == 0 ? "Climate summit" : "Election result";
+            articles.add(new Article("world/" + i, topic + " number " + i, i % 2 == 0 ? "World news" : "Politics",
+                    new String[]{"Reporter " + (i % 40)}, now - TimeUnit.MINUTES.toMillis(i), null, null));
+        }
+        articles.add(new Article("environment/oldest", "Glacier retreat", "Environment",
+                null, now - TimeUnit.DAYS.toMillis(2), null, null));
+        store.upsert(articles);
+        store.evict();
+        assertEquals(500, store.queryArticles(0, INDEX_SIZE).size());
+
+        // The first search warms up the index, as the first keystroke does.
+        store.search("climate", 1);
+        long start = System.nanoTime();
+        List<Article> results = store.search("climate sum", 20);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(20, results.size());
+        assertEquals("world/0", results.get(0).getId());
+        assertTrue("search took " + millis + " ms", millis < MAX_SEARCH_MILLIS);
+        assertEquals("environment/oldest", store.search("glacier", 20).get(0).getId());
+    }
+
+    /**
+     * Returns the matchinfo('pcx') blob of a row: for each phrase, the hits in the row, the
+     * hits in all rows and the rows with hits of each of the three columns.
+     */
+    private static byte[] matchInfo(int[][]... phrases) {
+        int columns = 3;
+        ByteBuffer info = ByteBuffer.allocate(4 * (2 + 3 * phrases.length * columns)).order(ByteOrder.nativeOrder());
+        info.putInt(phrases.length).putInt(columns);
+        for (int[][] phrase : phrases) {
+            for (int[] column : phrase) {
+                info.putInt(column[0]).putInt(column[1]).putInt(column[2]);
+            }
+        }
+        return info.array();
+    }
+}
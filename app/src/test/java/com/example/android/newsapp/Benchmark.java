@@ -0,0 +1,106 @@
+package com.example.android.newsapp;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Small harness that times a piece of work over many iterations and reports its latency
+ * percentiles, throughput and allocation per article.
+ */
+final class Benchmark {
+
+    /**
+     * Fewest measured iterations worth a p99: with fewer, the 99th percentile is the slowest
+     * iteration, so it is not reported
+     **/
+    static final int MIN_P99_ITERATIONS = 100;
+
+    /**
+     * The work to measure.
+     */
+    interface Body {
+        /**
+         * Runs one iteration and returns the number of articles it processed.
+         */
+        int run() throws Exception;
+    }
+
+    /**
+     * Measurements of one benchmark.
+     */
+    static final class Result {
+        final String name;
+        final double p50Millis;
+        /**
+         * 99th percentile, or NaN if too few iterations were measured for one
+         **/
+        final double p99Millis;
+        final double articlesPerSecond;
+        final long bytesPerArticle;
+
+        Result(String name, double p50Millis, double p99Millis, double articlesPerSecond, long bytesPerArticle) {
+            this.name = name;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.articlesPerSecond = articlesPerSecond;
+            this.bytesPerArticle = bytesPerArticle;
+        }
+
+        @Override
+        public String toString() {
+            String p99 = Double.isNaN(p99Millis) ? "     n/a  " : String.format(Locale.US, "%8.3fms", p99Millis);
+            return String.format(Locale.US, "%-44s p50=%8.3fms p99=%s %12.0f articles/s %8d B/article",
+                    name, p50Millis, p99, articlesPerSecond, bytesPerArticle);
+        }
+    }
+
+    private Benchmark() {
+    }
+
+    /**
+     * Runs the body for the warm-up iterations, then measures the following iterations.
+     */
+    static Result run(String name, int warmupIterations, int iterations, Body body) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            body.run();
+        }
+
+        long[] latencies = new long[iterations];
+        long articles = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long iterationStart = System.nanoTime();
+            articles += body.run();
+            latencies[i] = System.nanoTime() - iterationStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(latencies);
+        Result result = new Result(name,
+                percentile(latencies, 50) / 1e6,
+                iterations < MIN_P99_ITERATIONS ? Double.NaN : percentile(latencies, 99) / 1e6,
+                articles / (elapsed / 1e9),
+                articles == 0 ? 0 : allocated / articles);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or 0 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
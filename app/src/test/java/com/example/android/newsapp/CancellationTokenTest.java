@@ -0,0 +1,59 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the child tokens of a {@link CancellationToken}, which the {@link SectionFetchEngine}
+ * gives each of its queries.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class CancellationTokenTest {
+
+    /**
+     * Cancelling the parent cancels its children and runs their listeners.
+     */
+    @Test
+    public void childIsCancelledWithItsParent() {
+        CancellationToken parent = new CancellationToken();
+        CancellationToken child = parent.createChild();
+        final AtomicInteger aborted = new AtomicInteger();
+        child.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                aborted.incrementAndGet();
+            }
+        });
+
+        parent.cancel();
+        assertTrue(child.isCanceled());
+        assertEquals(1, aborted.get());
+        assertTrue("a child of a cancelled token starts cancelled", parent.createChild().isCanceled());
+    }
+
+    /**
+     * A child cancelled on its own, e.g. by a timeout, leaves its parent and siblings running.
+     */
+    @Test
+    public void childIsCancelledAlone() {
+        CancellationToken parent = new CancellationToken();
+        CancellationToken first = parent.createChild();
+        CancellationToken second = parent.createChild();
+
+        first.cancel();
+        assertFalse(parent.isCanceled());
+        assertFalse(second.isCanceled());
+
+        parent.cancel();
+        assertTrue(second.isCanceled());
+    }
+}
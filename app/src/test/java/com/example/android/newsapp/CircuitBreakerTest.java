@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link CircuitBreaker}: opening after failures in a row, the single request
+ * let through once the open time is over, and blocks that successes do not lift.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    /**
+     * The circuit opens after the threshold of failures in a row, and a success in between
+     * starts the count over.
+     */
+    @Test
+    public void opensAfterFailuresInARow() {
+        CircuitBreaker breaker = new CircuitBreaker(2, OPEN_MILLIS);
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    /**
+     * Once the open time is over, one request is let through; its success closes the circuit,
+     * and its failure reopens it.
+     */
+    @Test
+    public void probesOnceTheOpenTimeIsOver() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN_MILLIS);
+        breaker.onFailure();
+        Thread.sleep(OPEN_MILLIS * 2);
+
+        assertTrue(breaker.allowRequest());
+        assertFalse("only one request is let through", breaker.allowRequest());
+        breaker.onFailure();
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+    }
+
+    /**
+     * A block, e.g. for a used up quota, holds through successes and ends on its own.
+     */
+    @Test
+    public void blockOutlastsSuccesses() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN_MILLIS);
+        breaker.blockFor(OPEN_MILLIS);
+        breaker.onSuccess();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+    }
+}
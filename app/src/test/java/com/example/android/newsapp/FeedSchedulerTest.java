@@ -0,0 +1,200 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link FeedScheduler} against a local {@link MockGuardianServer} that holds
+ * every request until the test lets it through: a feed is fetched once however often it is
+ * asked for, the visible feed goes first, and no more than two feeds are fetched at a time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FeedSchedulerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private MockGuardianServer mServer;
+    private FeedScheduler mScheduler;
+
+    /**
+     * Feed queries in the order the server received them
+     **/
+    private final List<String> mArrivals = new ArrayList<>();
+
+    /**
+     * Requests being answered, and the most answered at the same time
+     **/
+    private int mInFlight;
+    private int mMaxInFlight;
+
+    /**
+     * Lets one request through per permit
+     **/
+    private final Semaphore mGate = new Semaphore(0, true);
+
+    @Before
+    public void setUp() throws Exception {
+        final SyntheticGuardianDispatcher synthetic = new SyntheticGuardianDispatcher(1);
+        mServer = new MockGuardianServer(new MockGuardianServer.Dispatcher() {
+            @Override
+            public MockGuardianServer.MockResponse dispatch(String target) throws Exception {
+                synchronized (FeedSchedulerTest.this) {
+                    mArrivals.add(Uri.parse(target).getQueryParameter("q"));
+                    mMaxInFlight = Math.max(mMaxInFlight, ++mInFlight);
+                }
+                try {
+                    mGate.acquire();
+                    return synthetic.dispatch(target);
+                } finally {
+                    synchronized (FeedSchedulerTest.this) {
+                        mInFlight--;
+                    }
+                }
+            }
+        });
+        mServer.start();
+        GuardianQuery.setBaseUrl(mServer.url(""));
+        QueryUtils.setRequestExecutor(new RequestExecutor(new TokenBucket(1000, 1000), new CircuitBreaker(100, 1000)));
+        mScheduler = new FeedScheduler(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mGate.release(1000);
+        GuardianQuery.setBaseUrl(null);
+        QueryUtils.setRequestExecutor(null);
+        mServer.shutdown();
+    }
+
+    /**
+     * A feed asked for again while it is queued or fetched, or once it is fresh, is fetched once.
+     */
+    @Test
+    public void duplicateRequestsFetchOnce() throws Exception {
+        SavedFeed feed = SavedFeed.fromInput("duplicate");
+        mScheduler.request(feed, false);
+        mScheduler.request(feed, false);
+        mScheduler.setVisibleFeed(feed);
+        awaitArrivals(1);
+        mScheduler.request(feed, true);
+        assertTrue(mScheduler.isLoading(feed));
+
+        mGate.release(1000);
+        awaitIdle(feed);
+        mScheduler.request(feed, false);
+
+        assertFalse(mScheduler.isLoading(feed));
+        assertEquals(Arrays.asList("duplicate"), getArrivals());
+    }
+
+    /**
+     * Once a fetch ends, the visible feed is fetched before the feeds asked for earlier.
+     */
+    @Test
+    public void visibleFeedIsFetchedFirst() throws Exception {
+        List<SavedFeed> feeds = feeds("first", "second", "third", "fourth", "visible");
+        mScheduler.requestAll(feeds);
+        awaitArrivals(2);
+        mScheduler.setVisibleFeed(feeds.get(4));
+
+        mGate.release();
+        awaitArrivals(3);
+        assertEquals(new HashSet<>(Arrays.asList("first", "second")), new HashSet<>(getArrivals().subList(0, 2)));
+        assertEquals("visible", getArrivals().get(2));
+
+        mGate.release();
+        awaitArrivals(4);
+        assertEquals("third", getArrivals().get(3));
+
+        mGate.release(1000);
+        awaitIdle(feeds.toArray(new SavedFeed[0]));
+        assertEquals(Arrays.asList("third", "fourth"), getArrivals().subList(3, 5));
+    }
+
+    /**
+     * No more than two feeds are fetched at a time, however many are queued.
+     */
+    @Test
+    public void fetchesAreCapped() throws Exception {
+        List<SavedFeed> feeds = feeds("one", "two", "three", "four", "five");
+        mScheduler.requestAll(feeds);
+        awaitArrivals(2);
+        Thread.sleep(200);
+        assertEquals(2, getArrivals().size());
+
+        mGate.release(1000);
+        awaitIdle(feeds.toArray(new SavedFeed[0]));
+        assertEquals(5, getArrivals().size());
+        synchronized (this) {
+            assertEquals(2, mMaxInFlight);
+        }
+    }
+
+    /**
+     * A feed followed again while its forgotten fetch still runs is fetched once more after it.
+     */
+    @Test
+    public void forgottenFeedIsFetchedAgainWhenFollowed() throws Exception {
+        SavedFeed feed = SavedFeed.fromInput("refollowed");
+        mScheduler.request(feed, false);
+        awaitArrivals(1);
+        mScheduler.forget(feed);
+        assertFalse(mScheduler.isLoading(feed));
+
+        mScheduler.request(feed, false);
+        assertTrue(mScheduler.isLoading(feed));
+        mGate.release(1000);
+        awaitArrivals(2);
+        awaitIdle(feed);
+        assertEquals(Arrays.asList("refollowed", "refollowed"), getArrivals());
+    }
+
+    private static List<SavedFeed> feeds(String... queries) {
+        List<SavedFeed> feeds = new ArrayList<>();
+        for (String query : queries) {
+            feeds.add(SavedFeed.fromInput(query));
+        }
+        return feeds;
+    }
+
+    private synchronized List<String> getArrivals() {
+        return new ArrayList<>(mArrivals);
+    }
+
+    private void awaitArrivals(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (getArrivals().size() < count) {
+            assertTrue("waiting for request " + count, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitIdle(SavedFeed... feeds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (SavedFeed feed : feeds) {
+            while (mScheduler.isLoading(feed)) {
+                assertTrue("still loading " + feed.getId(), System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+}
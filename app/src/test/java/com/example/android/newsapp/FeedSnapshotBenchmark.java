@@ -0,0 +1,96 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks of restoring the feed from a {@link FeedSnapshot} of 10, 100 and 1000 articles:
+ * mapping it and decoding the rows of one screen, as a cold start does, and decoding every
+ * row. Restoring should take about the same time whatever the size of the feed. The
+ * correctness of the snapshot is tested by {@link FeedSnapshotTest}.
+ * Run them with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FeedSnapshotBenchmark {
+
+    private static final int[] SIZES = {10, 100, 1000};
+
+    /**
+     * Number of rows on a screen
+     **/
+    private static final int SCREEN_ROWS = 8;
+
+    /**
+     * Time restoring a snapshot of any size may take, at the median
+     **/
+    private static final double MAX_RESTORE_MILLIS = 5;
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("snapshot", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDirectory.listFiles()) {
+            file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void restoreScreen() throws Exception {
+        for (int size : SIZES) {
+            final File file = write(size);
+            Benchmark.Result result = Benchmark.run("snapshot restore+screen/" + size, 200, 1000,
+                    new Benchmark.Body() {
+                        @Override
+                        public int run() {
+                            List<Article> articles = FeedSnapshot.open(file).asList();
+                            for (int i = 0; i < SCREEN_ROWS && i < articles.size(); i++) {
+                                articles.get(i);
+                            }
+                            return articles.size();
+                        }
+                    });
+            assertTrue(result.name + " took " + result.p50Millis + " ms", result.p50Millis < MAX_RESTORE_MILLIS);
+        }
+    }
+
+    @Test
+    public void decodeAll() throws Exception {
+        for (final int size : SIZES) {
+            final File file = write(size);
+            Benchmark.run("snapshot decode all/" + size, Math.max(4, 20000 / size), Math.max(Benchmark.MIN_P99_ITERATIONS, 40000 / size),
+                    new Benchmark.Body() {
+                        @Override
+                        public int run() {
+                            FeedSnapshot snapshot = FeedSnapshot.open(file);
+                            for (int i = 0; i < snapshot.size(); i++) {
+                                snapshot.get(i);
+                            }
+                            return snapshot.size();
+                        }
+                    });
+        }
+    }
+
+    private File write(int size) {
+        File file = new File(mDirectory, "feed_" + size);
+        assertTrue(FeedSnapshot.write(file, FeedSnapshotTest.articles(size)));
+        return file;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link FeedSnapshot}: it reads back the articles it was written from, and a
+ * truncated or corrupted file is treated as no snapshot at all.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FeedSnapshotTest {
+
+    private static final String[] SECTIONS = {"Politics", "World news", "Business", "Technology"};
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("snapshot", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDirectory.listFiles()) {
+            file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * A snapshot reads back the articles it was written from.
+     */
+    @Test
+    public void roundTrip() {
+        List<Article> articles = articles(100);
+        File file = new File(mDirectory, "round_trip");
+        assertTrue(FeedSnapshot.write(file, articles));
+
+        FeedSnapshot snapshot = FeedSnapshot.open(file);
+        assertNotNull(snapshot);
+        assertEquals(articles.size(), snapshot.size());
+        for (int i = 0; i < articles.size(); i++) {
+            Article expected = articles.get(i);
+            Article actual = snapshot.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getArticleTitle(), actual.getArticleTitle());
+            assertEquals(expected.getSectionTitle(), actual.getSectionTitle());
+            assertTrue(expected.hasSameAuthors(actual));
+            assertEquals(expected.getPublicationTime(), actual.getPublicationTime());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+        }
+    }
+
+    /**
+     * An empty feed is a valid snapshot.
+     */
+    @Test
+    public void emptyFeed() {
+        File file = new File(mDirectory, "empty");
+        assertTrue(FeedSnapshot.write(file, new ArrayList<Article>()));
+        FeedSnapshot snapshot = FeedSnapshot.open(file);
+        assertNotNull(snapshot);
+        assertEquals(0, snapshot.size());
+    }
+
+    /**
+     * A file cut short, e.g. by a full disk, is not opened, however much of it is left.
+     */
+    @Test
+    public void truncatedFileIsIgnored() throws Exception {
+        File file = new File(mDirectory, "truncated");
+        assertTrue(FeedSnapshot.write(file, articles(20)));
+        long length = file.length();
+        for (long cut : new long[]{length - 1, length - 100, length / 2, 30}) {
+            assertTrue(FeedSnapshot.write(file, articles(20)));
+            truncate(file, cut);
+            assertNull("snapshot cut to " + cut + " bytes", FeedSnapshot.open(file));
+        }
+    }
+
+    /**
+     * A string length or record offset that points out of the file makes the whole
+     * snapshot be ignored, instead of failing when the row is shown.
+     */
+    @Test
+    public void corruptedOffsetsAreIgnored() throws Exception {
+        File file = new File(mDirectory, "corrupted");
+
+        // The offset of the last article points past the end.
+        assertTrue(FeedSnapshot.write(file, articles(20)));
+        writeInt(file, 5 * 4 + 4 * 19, Integer.MAX_VALUE - 8);
+        assertNull(FeedSnapshot.open(file));
+
+        // The length of the first article's id runs past the end.
+        assertTrue(FeedSnapshot.write(file, articles(20)));
+        writeInt(file, readInt(file, 5 * 4), 1 << 30);
+        assertNull(FeedSnapshot.open(file));
+
+        // A negative length other than the -1 of null.
+        assertTrue(FeedSnapshot.write(file, articles(20)));
+        writeInt(file, readInt(file, 5 * 4), -7);
+        assertNull(FeedSnapshot.open(file));
+    }
+
+    /**
+     * Snapshots written at the same time, e.g. by the loader and the background sync, each
+     * leave a whole snapshot behind.
+     */
+    @Test
+    public void concurrentWritesLeaveAWholeSnapshot() throws Exception {
+        final File file = new File(mDirectory, "concurrent");
+        final int[] sizes = {10, 40, 70, 100};
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (final int size : sizes) {
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    List<Article> articles = articles(size);
+                    for (int i = 0; i < 20; i++) {
+                        if (!FeedSnapshot.write(file, articles)) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertFalse(failed.get());
+        FeedSnapshot snapshot = FeedSnapshot.open(file);
+        assertNotNull(snapshot);
+        boolean known = false;
+        for (int size : sizes) {
+            known |= snapshot.size() == size;
+        }
+        assertTrue("snapshot of " + snapshot.size() + " articles", known);
+        assertEquals(snapshot.get(snapshot.size() - 1).getId(), articles(snapshot.size()).get(snapshot.size() - 1).getId());
+    }
+
+    /**
+     * Returns synthetic articles with the repeated sections and authors of a real feed.
+     */
+    static List<Article> articles(int count) {
+        List<Article> articles = new ArrayList<>(count);
+        long time = 1530000000000L;
+        for (int i = 0; i < count; i++) {
+            String id = "politics/2018/jul/01/article-" + i;
+            String[] authors = i % 3 == 0 ? null : new String[]{"Author " + (i % 17), "Author " + (i % 5)};
+            String thumbnail = i % 4 == 0 ? null : "https://media.guim.co.uk/" + i + "/500.jpg";
+            articles.add(new Article(id, "Headline of the article number " + i + " \u2013 with \u00fcn\u00efc\u00f6d\u00e9",
+                    SECTIONS[i % SECTIONS.length], authors, time - i * 60000L,
+                    "https://www.theguardian.com/" + id, thumbnail));
+        }
+        return articles;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(length);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static int readInt(File file, long offset) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            input.seek(offset);
+            return input.readInt();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeInt(File file, long offset, int value) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.seek(offset);
+            output.writeInt(value);
+        } finally {
+            output.close();
+        }
+    }
+}
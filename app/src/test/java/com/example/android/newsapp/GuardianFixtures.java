@@ -0,0 +1,77 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Guardian search responses used by the tests and benchmarks. The 10 result fixture is a
+ * response in the shape returned by the Guardian search endpoint with
+ * show-tags=contributor; larger responses repeat its results with unique ids and URLs.
+ */
+final class GuardianFixtures {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String FIXTURE = "fixtures/guardian_search_10.json";
+
+    private GuardianFixtures() {
+    }
+
+    /**
+     * Returns the recorded response with 10 results.
+     */
+    static String recorded() throws IOException {
+        InputStream in = GuardianFixtures.class.getClassLoader().getResourceAsStream(FIXTURE);
+        if (in == null) {
+            throw new IOException("Missing test resource " + FIXTURE);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns a response with the given number of results.
+     */
+    static String search(int resultCount) throws IOException, JSONException {
+        JSONObject base = new JSONObject(recorded());
+        JSONObject response = base.getJSONObject("response");
+        JSONArray recordedResults = response.getJSONArray("results");
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < resultCount; i++) {
+            JSONObject result = new JSONObject(recordedResults.getJSONObject(i % recordedResults.length()).toString());
+            if (i >= recordedResults.length()) {
+                String suffix = "-" + i;
+                result.put("id", result.getString("id") + suffix);
+                result.put("webUrl", result.getString("webUrl") + suffix);
+                result.put("apiUrl", result.getString("apiUrl") + suffix);
+            }
+            results.put(result);
+        }
+        response.put("results", results);
+        response.put("pageSize", resultCount);
+        return base.toString();
+    }
+
+    /**
+     * Returns a response with the given number of results, encoded as UTF-8.
+     */
+    static byte[] searchBytes(int resultCount) throws IOException, JSONException {
+        return search(resultCount).getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.android.newsapp;
+
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link ImageLoader} against a local {@link MockGuardianServer} that has no
+ * images: a view whose image fails to load shows the placeholder, and loading the same image
+ * into it again retries instead of waiting for the failed load.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ImageLoaderTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final int SIZE = 100;
+
+    private MockGuardianServer mServer;
+    private ImageLoader mLoader;
+    private ImageView mView;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockGuardianServer(new MockGuardianServer.Dispatcher() {
+            @Override
+            public MockGuardianServer.MockResponse dispatch(String target) {
+                return MockGuardianServer.MockResponse.status(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+        });
+        mServer.start();
+        mLoader = new ImageLoader(RuntimeEnvironment.application);
+        mView = new ImageView(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    /**
+     * The view is cleared while the image loads, and shows the placeholder once it failed.
+     */
+    @Test
+    public void failedImageShowsThePlaceholder() throws Exception {
+        mLoader.load(mServer.url("/placeholder.jpg"), mView, SIZE, SIZE);
+        assertNull(mView.getDrawable());
+
+        awaitDrawable();
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    /**
+     * Binding the view to the image again after it failed loads it again.
+     */
+    @Test
+    public void failedImageIsLoadedAgain() throws Exception {
+        String url = mServer.url("/retried.jpg");
+        mLoader.load(url, mView, SIZE, SIZE);
+        awaitDrawable();
+
+        mLoader.load(url, mView, SIZE, SIZE);
+        assertNull(mView.getDrawable());
+        awaitDrawable();
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    /**
+     * Runs the main thread tasks until the view shows a drawable.
+     */
+    private void awaitDrawable() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (mView.getDrawable() == null) {
+            assertTrue("no drawable shown", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            Robolectric.flushForegroundThreadScheduler();
+        }
+    }
+}
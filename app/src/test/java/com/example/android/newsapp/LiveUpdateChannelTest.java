@@ -0,0 +1,132 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the {@link LiveUpdateChannel} against a local {@link MockGuardianServer} that
+ * streams server-sent events and ends the stream after them, so the channel has to reconnect.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LiveUpdateChannelTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Longest time to wait for an event
+     **/
+    private static final long EVENT_TIMEOUT_SECONDS = 10;
+
+    /**
+     * First stream: a short reconnection delay, a heartbeat, two article events and an event
+     * of another type in between
+     **/
+    private static final String FIRST_STREAM = "retry: 10\n"
+            + ": heartbeat\n"
+            + "\n"
+            + "id: 1\n"
+            + "event: articles\n"
+            + "data: [\"world/2018/jul/01/first\", \"politics/2018/jul/01/second\"]\n"
+            + "\n"
+            + "id: 2\n"
+            + "event: status\n"
+            + "data: {\"connected\": 12}\n"
+            + "\n"
+            + "id: 3\n"
+            + "data: [\"business/2018/jul/01/third\"]\n"
+            + "\n";
+
+    /**
+     * Stream sent after reconnecting
+     **/
+    private static final String NEXT_STREAM = "id: 4\n"
+            + "data: [\"technology/2018/jul/01/fourth\"]\n"
+            + "\n";
+
+    private final BlockingQueue<List<String>> mEvents = new LinkedBlockingQueue<>();
+    private final AtomicInteger mConnections = new AtomicInteger();
+    private volatile String mResumedAfter;
+
+    private MockGuardianServer mServer;
+    private LiveUpdateChannel mChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockGuardianServer(new MockGuardianServer.Dispatcher() {
+            @Override
+            public MockGuardianServer.MockResponse dispatch(String target) {
+                int connection = mConnections.incrementAndGet();
+                if (connection == 2) {
+                    mResumedAfter = mServer.getLastRequestHeader("Last-Event-ID");
+                }
+                String stream = connection == 1 ? FIRST_STREAM : connection == 2 ? NEXT_STREAM : "";
+                MockGuardianServer.MockResponse response = MockGuardianServer.MockResponse.ok(stream.getBytes(UTF_8));
+                response.headers.put("Content-Type", "text/event-stream");
+                return response;
+            }
+        });
+        mServer.start();
+        mChannel = new LiveUpdateChannel(mServer.url("/live"), new LiveUpdateChannel.Listener() {
+            @Override
+            public void onArticleIds(List<String> ids) {
+                mEvents.add(ids);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mChannel.stop();
+        mServer.shutdown();
+    }
+
+    /**
+     * The ids of each article event are delivered, and heartbeats and other events are skipped.
+     */
+    @Test
+    public void deliversArticleIds() throws Exception {
+        mChannel.start();
+        assertEquals(Arrays.asList("world/2018/jul/01/first", "politics/2018/jul/01/second"), nextEvent());
+        assertEquals(Arrays.asList("business/2018/jul/01/third"), nextEvent());
+    }
+
+    /**
+     * Once the stream ends, the channel reconnects and resumes after the last event it received.
+     */
+    @Test
+    public void resumesAfterLastEvent() throws Exception {
+        mChannel.start();
+        nextEvent();
+        nextEvent();
+        assertEquals(Arrays.asList("technology/2018/jul/01/fourth"), nextEvent());
+        assertEquals("3", mResumedAfter);
+
+        // Nothing is delivered once the channel is stopped.
+        mChannel.stop();
+        assertNull(mEvents.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private List<String> nextEvent() throws InterruptedException {
+        List<String> ids = mEvents.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (ids == null) {
+            throw new AssertionError("no event within " + EVENT_TIMEOUT_SECONDS + " s");
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.android.newsapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local HTTP/1.1 server standing in for the Guardian API in tests and benchmarks.
+ * Every request is answered by a {@link Dispatcher}, and connections are kept alive.
+ * Responses can be delayed, sent at a limited bandwidth, or cut off part way through.
+ */
+final class MockGuardianServer {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Number of slices a throttled body is sent in per second
+     **/
+    private static final int THROTTLE_SLICES_PER_SECOND = 20;
+
+    /**
+     * Answers a request.
+     */
+    interface Dispatcher {
+        /**
+         * Returns the response to a GET of the path and query, e.g. "/search?page=2".
+         */
+        MockResponse dispatch(String target) throws Exception;
+    }
+
+    /**
+     * A response to send.
+     */
+    static final class MockResponse {
+        int code = 200;
+        byte[] body = new byte[0];
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        /**
+         * Time to wait before the response is sent
+         **/
+        long delayMillis;
+
+        /**
+         * Rate the body is sent at, or 0 for as fast as possible
+         **/
+        int bytesPerSecond;
+
+        /**
+         * Number of body bytes sent before the connection is closed, or -1 to send the whole body
+         **/
+        int truncateAfter = -1;
+
+        static MockResponse ok(byte[] body) {
+            MockResponse response = new MockResponse();
+            response.body = body;
+            response.headers.put("Content-Type", "application/json; charset=utf-8");
+            return response;
+        }
+
+        static MockResponse status(int code) {
+            MockResponse response = new MockResponse();
+            response.code = code;
+            return response;
+        }
+
+        MockResponse delay(long millis) {
+            delayMillis = millis;
+            return this;
+        }
+
+        MockResponse throttle(int rate) {
+            bytesPerSecond = rate;
+            return this;
+        }
+
+        MockResponse truncate(int bodyBytes) {
+            truncateAfter = bodyBytes;
+            return this;
+        }
+    }
+
+    private final Dispatcher mDispatcher;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private volatile Map<String, String> mLastRequestHeaders = new HashMap<>();
+    private ServerSocket mServerSocket;
+
+    MockGuardianServer(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * Starts listening on a free local port.
+     */
+    void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * Returns the URL of the path and query on this server.
+     */
+    String url(String target) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + target;
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     */
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the value of the header of the last request, or null if it had none.
+     */
+    String getLastRequestHeader(String name) {
+        return mLastRequestHeaders.get(name.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Stops the server and closes its connections.
+     */
+    void shutdown() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(socket);
+                    }
+                });
+            } catch (IOException e) {
+                // The server socket was closed.
+                return;
+            }
+        }
+    }
+
+    private void serveConnection(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            // Each response is written in one go, so keep-alive connections are not held up
+            // by Nagle's algorithm waiting for the client's delayed ACK.
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String requestLine;
+            while ((requestLine = readLine(in)) != null && !requestLine.isEmpty()) {
+                // Keep the request headers, by lower case name, for the tests that check them.
+                Map<String, String> headers = new HashMap<>();
+                String header;
+                while ((header = readLine(in)) != null && !header.isEmpty()) {
+                    int colon = header.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(header.substring(0, colon).trim().toLowerCase(Locale.US),
+                                header.substring(colon + 1).trim());
+                    }
+                }
+                mLastRequestHeaders = headers;
+                String target = requestLine.split(" ")[1];
+                mRequestCount.incrementAndGet();
+                MockResponse response;
+                try {
+                    response = mDispatcher.dispatch(target);
+                } catch (Exception e) {
+                    response = MockResponse.status(500);
+                }
+                // A truncated response ends the connection, like a dropped network would.
+                if (!writeResponse(out, response)) {
+                    break;
+                }
+            }
+        } catch (SocketException e) {
+            // The client or the server closed the connection.
+        } catch (IOException e) {
+            // The connection broke.
+        } catch (InterruptedException e) {
+            // The server is shutting down.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    /**
+     * Writes the response, and returns false if it was truncated and the connection must be closed.
+     */
+    private static boolean writeResponse(OutputStream out, MockResponse response)
+            throws IOException, InterruptedException {
+        if (response.delayMillis > 0) {
+            Thread.sleep(response.delayMillis);
+        }
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.code).append(" Mock\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("Content-Length: ").append(response.body.length).append("\r\n\r\n");
+        out.write(head.toString().getBytes(ASCII));
+
+        boolean truncated = response.truncateAfter >= 0 && response.truncateAfter < response.body.length;
+        int length = truncated ? response.truncateAfter : response.body.length;
+        if (response.bytesPerSecond <= 0) {
+            out.write(response.body, 0, length);
+            out.flush();
+            return !truncated;
+        }
+
+        // Send the body in slices, each once the bandwidth allows it.
+        int slice = Math.max(1, response.bytesPerSecond / THROTTLE_SLICES_PER_SECOND);
+        long start = System.nanoTime();
+        for (int offset = 0; offset < length; offset += slice) {
+            int count = Math.min(slice, length - offset);
+            out.write(response.body, offset, count);
+            out.flush();
+            long due = start + (offset + count) * 1000000000L / response.bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+        }
+        out.flush();
+        return !truncated;
+    }
+
+    /**
+     * Reads a CRLF terminated line, or returns null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmarks of reading and parsing Guardian responses, and of fetching them end to end from
+ * a local {@link MockGuardianServer}, for responses of 10, 200 and 2000 results. They run on
+ * the JVM under Robolectric, which provides the real Android JSON classes.
+ * Run them with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class QueryUtilsBenchmark {
+
+    private static final int[] SIZES = {10, 200, 2000};
+
+    /**
+     * Total number of articles each benchmark processes, so every size runs for a similar time
+     **/
+    private static final int ARTICLES_PER_RUN = 40000;
+    private static final int WARMUP_ARTICLES = 20000;
+
+    private byte[][] mFixtures;
+    private MockGuardianServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        HttpConnections.configurePool();
+        mFixtures = new byte[SIZES.length][];
+        for (int i = 0; i < SIZES.length; i++) {
+            mFixtures[i] = GuardianFixtures.searchBytes(SIZES[i]);
+        }
+
+        // Serves the fixture whose size is given by the page-size parameter.
+        mServer = new MockGuardianServer(new MockGuardianServer.Dispatcher() {
+            @Override
+            public MockGuardianServer.MockResponse dispatch(String target) {
+                for (int i = 0; i < SIZES.length; i++) {
+                    if (target.contains("page-size=" + SIZES[i] + "&") || target.endsWith("page-size=" + SIZES[i])) {
+                        return MockGuardianServer.MockResponse.ok(mFixtures[i]);
+                    }
+                }
+                return MockGuardianServer.MockResponse.status(404);
+            }
+        });
+        mServer.start();
+
+        // The local server has no quota, so the rate limiter would only time itself.
+        QueryUtils.setRequestExecutor(new RequestExecutor(new TokenBucket(100000, 100000),
+                new CircuitBreaker(100, 1000)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryUtils.setRequestExecutor(null);
+        mServer.shutdown();
+        QueryUtils.setStreamingParserEnabled(true);
+    }
+
+    @Test
+    public void readFromStream() throws Exception {
+        for (int i = 0; i < SIZES.length; i++) {
+            final byte[] fixture = mFixtures[i];
+            final int size = SIZES[i];
+            Benchmark.run("readFromStream/" + size, warmup(size), iterations(size), new Benchmark.Body() {
+                @Override
+                public int run() throws Exception {
+                    QueryUtils.readFromStream(new ByteArrayInputStream(fixture));
+                    return size;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void extractFeatureFromJson() throws Exception {
+        for (int i = 0; i < SIZES.length; i++) {
+            final String json = new String(mFixtures[i], GuardianFixtures.UTF_8);
+            final int size = SIZES[i];
+            Benchmark.run("extractFeatureFromJson/" + size, warmup(size), iterations(size), new Benchmark.Body() {
+                @Override
+                public int run() {
+                    return checkCount(size, QueryUtils.extractFeatureFromJson(json));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void readAndExtractFeatureFromJson() throws Exception {
+        for (int i = 0; i < SIZES.length; i++) {
+            final byte[] fixture = mFixtures[i];
+            final int size = SIZES[i];
+            Benchmark.run("readFromStream+extractFeatureFromJson/" + size, warmup(size), iterations(size),
+                    new Benchmark.Body() {
+                        @Override
+                        public int run() throws Exception {
+                            String json = QueryUtils.readFromStream(new ByteArrayInputStream(fixture));
+                            return checkCount(size, QueryUtils.extractFeatureFromJson(json));
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void extractFeatureFromStream() throws Exception {
+        for (int i = 0; i < SIZES.length; i++) {
+            final byte[] fixture = mFixtures[i];
+            final int size = SIZES[i];
+            Benchmark.run("extractFeatureFromStream/" + size, warmup(size), iterations(size), new Benchmark.Body() {
+                @Override
+                public int run() throws Exception {
+                    return checkCount(size, QueryUtils.extractFeatureFromStream(new ByteArrayInputStream(fixture)));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void fetchArticleDataEndToEnd() throws Exception {
+        for (final boolean streaming : new boolean[]{false, true}) {
+            QueryUtils.setStreamingParserEnabled(streaming);
+            for (final int size : SIZES) {
+                final String url = mServer.url("/search?page-size=" + size);
+                String name = "fetchArticleData/" + (streaming ? "streaming/" : "dom/") + size;
+                Benchmark.run(name, warmup(size) / 4, iterations(size), new Benchmark.Body() {
+                    @Override
+                    public int run() {
+                        return checkCount(size, QueryUtils.fetchArticleData(url));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the number of measured iterations for the size, never too few for a p99.
+     */
+    private static int iterations(int size) {
+        return Math.max(Benchmark.MIN_P99_ITERATIONS, ARTICLES_PER_RUN / size);
+    }
+
+    private static int warmup(int size) {
+        return Math.max(4, WARMUP_ARTICLES / size);
+    }
+
+    private static int checkCount(int expected, List<Article> articles) {
+        assertEquals(expected, articles.size());
+        return articles.size();
+    }
+}
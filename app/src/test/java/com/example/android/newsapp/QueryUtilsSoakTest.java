@@ -0,0 +1,211 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Soak tests of the fetch pipeline that {@link ArticleLoader} runs, against a local
+ * {@link MockGuardianServer} that serves synthetic result sets of up to 1000 articles with
+ * injected latency, limited bandwidth, truncated bodies and 429/5xx responses. Thousands of
+ * fetch and parse cycles are run, and the throughput, the handling of every injected fault,
+ * leaked connections and heap growth are checked and reported.
+ * Run them with: ./gradlew testDebugUnitTest -Psoak --tests '*SoakTest'
+ * and change the number of cycles with -Dsoak.cycles=N.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class QueryUtilsSoakTest {
+
+    private static final int CYCLES = Integer.getInteger("soak.cycles", 2000);
+
+    private static final int[] SIZES = {10, 20, 100, 1000};
+
+    private static final long SEED = 20180701;
+
+    /**
+     * Number of cycles run before the heap is first measured, so caches and JIT state are warm
+     **/
+    private static final int WARMUP_CYCLES = 100;
+
+    /**
+     * Heap growth over a run that is taken as a leak
+     **/
+    private static final long MAX_HEAP_GROWTH_BYTES = 16 * 1024 * 1024;
+
+    private SyntheticGuardianDispatcher mDispatcher;
+    private MockGuardianServer mServer;
+    private RequestExecutor mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        HttpConnections.configurePool();
+        mDispatcher = new SyntheticGuardianDispatcher(SEED)
+                .latency(0, 5)
+                .throttle(0.02, 1024 * 1024)
+                .truncate(0.03)
+                .errors(0.05, 429, 500, 502, 503);
+        mServer = new MockGuardianServer(mDispatcher);
+        mServer.start();
+        GuardianQuery.setBaseUrl(mServer.url(""));
+
+        // The local server has no quota, and the injected faults must not open the circuit.
+        mExecutor = new RequestExecutor(new TokenBucket(1000, 1000), new CircuitBreaker(100, 1000));
+        QueryUtils.setRequestExecutor(mExecutor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GuardianQuery.setBaseUrl(null);
+        QueryUtils.setRequestExecutor(null);
+        mServer.shutdown();
+    }
+
+    /**
+     * Every fetch returns either the whole page or null once all its attempts hit injected
+     * faults, and neither connections nor memory leak over the run.
+     */
+    @Test
+    public void fetchArticleData() throws Exception {
+        int successes = 0;
+        int failures = 0;
+        long articles = 0;
+        long heapAfterWarmup = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CYCLES; i++) {
+            int size = SIZES[i % SIZES.length];
+            String url = new GuardianQuery().page(1 + i).pageSize(size).build();
+            List<Article> result = QueryUtils.fetchArticleData(url);
+            if (result == null) {
+                failures++;
+            } else {
+                assertEquals("articles of cycle " + i, size, result.size());
+                successes++;
+                articles += result.size();
+            }
+            if (i == WARMUP_CYCLES) {
+                heapAfterWarmup = usedHeap();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapGrowth = usedHeap() - heapAfterWarmup;
+
+        report("fetchArticleData", seconds, successes, failures, articles, heapGrowth);
+
+        // Each attempt reaches the server once, an attempt fails exactly when a fault was
+        // injected, and a fetch fails only when it ran out of retries.
+        assertEquals(CYCLES, successes + failures);
+        assertEquals(0, mExecutor.getRejectedCount());
+        assertEquals(mExecutor.getAttemptCount(), mDispatcher.getResponseCount());
+        assertEquals(mDispatcher.getErrorCount() + mDispatcher.getTruncatedCount(),
+                mExecutor.getAttemptCount() - successes);
+        assertEquals(mExecutor.getFailureCount(), failures);
+        assertNoLeakedConnections();
+        assertTrue("heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH_BYTES);
+    }
+
+    /**
+     * Fetches of the whole feed, some of them cancelled part way through, as when the user
+     * refreshes again or leaves, do not leave connections open or grow the heap.
+     */
+    @Test
+    public void fetchFeedWithCancellation() throws Exception {
+        ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor();
+        Random random = new Random(SEED);
+        int cycles = CYCLES / GuardianFeed.getSections().size();
+        int completed = 0;
+        int cancelled = 0;
+        int failed = 0;
+        long articles = 0;
+        long heapAfterWarmup = 0;
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < cycles; i++) {
+                final CancellationToken token = new CancellationToken();
+                if (random.nextInt(4) == 0) {
+                    canceller.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            token.cancel();
+                        }
+                    }, random.nextInt(10), TimeUnit.MILLISECONDS);
+                }
+
+                List<Article> result = SectionFetchEngine.fetch(GuardianFeed.buildPageUrls(1 + i), null, token);
+                if (token.isCanceled()) {
+                    cancelled++;
+                } else if (result == null) {
+                    failed++;
+                } else {
+                    completed++;
+                    articles += result.size();
+                }
+                if (i == WARMUP_CYCLES / 4) {
+                    heapAfterWarmup = usedHeap();
+                }
+            }
+        } finally {
+            canceller.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapGrowth = usedHeap() - heapAfterWarmup;
+
+        report("fetchFeed/cancelled=" + cancelled, seconds, completed, failed, articles, heapGrowth);
+
+        assertEquals(cycles, completed + cancelled + failed);
+        assertNoLeakedConnections();
+        assertTrue("heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH_BYTES);
+    }
+
+    /**
+     * Fails if connections are still open once the requests that were given up have unwound.
+     */
+    private static void assertNoLeakedConnections() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (HttpConnections.getActiveCount() != 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("leaked connections: " + HttpConnections.dump());
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private void report(String name, double seconds, int successes, int failures, long articles, long heapGrowth) {
+        System.out.println(String.format(Locale.US,
+                "%-36s %6.1fs %8.1f fetches/s %10.0f articles/s ok=%d failed=%d"
+                        + " (injected: errors=%d truncated=%d throttled=%d) heap growth=%dKB",
+                name, seconds, (successes + failures) / seconds, articles / seconds, successes, failures,
+                mDispatcher.getErrorCount(), mDispatcher.getTruncatedCount(), mDispatcher.getThrottledCount(),
+                heapGrowth / 1024));
+        System.out.println(HttpConnections.dump());
+        System.out.println(mExecutor.dump());
+    }
+
+    /**
+     * Returns the bytes used on the heap once garbage has been collected.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
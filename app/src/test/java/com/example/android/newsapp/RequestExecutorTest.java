@@ -0,0 +1,203 @@
+package com.example.android.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link RequestExecutor}: retries, the requests that are not retried, and the
+ * circuit blocked by Retry-After and by the quota headers of the Guardian API.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RequestExecutorTest {
+
+    private static final String RESULT = "articles";
+
+    private CircuitBreaker mBreaker;
+    private RequestExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mBreaker = new CircuitBreaker(5, 1000);
+        mExecutor = new RequestExecutor(new TokenBucket(1000, 1000), mBreaker);
+    }
+
+    /**
+     * A request that fails with a retryable status is tried again, after the Retry-After wait.
+     */
+    @Test
+    public void retriesRetryableFailures() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        String result = mExecutor.execute(new RequestExecutor.Request<String>() {
+            @Override
+            public String execute(CancellationToken token) throws IOException {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new HttpStatusException(HttpURLConnection.HTTP_UNAVAILABLE, 10);
+                }
+                return RESULT;
+            }
+        }, null);
+
+        assertEquals(RESULT, result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, mExecutor.getRetryCount());
+        assertFalse(mBreaker.isOpen());
+    }
+
+    /**
+     * A client error is thrown after a single attempt and leaves the circuit closed.
+     */
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            mExecutor.execute(new RequestExecutor.Request<String>() {
+                @Override
+                public String execute(CancellationToken token) throws IOException {
+                    attempts.incrementAndGet();
+                    throw new HttpStatusException(HttpURLConnection.HTTP_NOT_FOUND, 0);
+                }
+            }, null);
+            fail("404 was not thrown");
+        } catch (HttpStatusException e) {
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, e.getCode());
+        }
+        assertEquals(1, attempts.get());
+        assertFalse(mBreaker.isOpen());
+    }
+
+    /**
+     * A Retry-After too long to wait for fails the request at once and refuses the next ones.
+     */
+    @Test
+    public void longRetryAfterBlocksRequests() throws Exception {
+        try {
+            mExecutor.execute(new RequestExecutor.Request<String>() {
+                @Override
+                public String execute(CancellationToken token) throws IOException {
+                    throw new HttpStatusException(429, 60 * 1000);
+                }
+            }, null);
+            fail("429 was not thrown");
+        } catch (HttpStatusException e) {
+            assertEquals(1, mExecutor.getRateLimitedCount());
+        }
+        assertRefused();
+    }
+
+    /**
+     * The successful response that used up the daily quota blocks the requests after it.
+     */
+    @Test
+    public void exhaustedQuotaBlocksRequestsAfterSuccess() throws Exception {
+        final HttpURLConnection response = new QuotaResponse("X-RateLimit-Remaining-day", "0");
+        String result = mExecutor.execute(new RequestExecutor.Request<String>() {
+            @Override
+            public String execute(CancellationToken token) {
+                mExecutor.onResponse(response);
+                return RESULT;
+            }
+        }, null);
+
+        assertEquals(RESULT, result);
+        assertEquals(1, mExecutor.getSuccessCount());
+        assertRefused();
+    }
+
+    /**
+     * A response with quota left does not block anything.
+     */
+    @Test
+    public void quotaLeftDoesNotBlock() throws Exception {
+        mExecutor.onResponse(new QuotaResponse("X-RateLimit-Remaining-day", "12"));
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    /**
+     * A half-open probe that throws an unchecked exception counts as a failed probe, so the
+     * circuit lets the next probe through once the open time is over again.
+     */
+    @Test
+    public void uncheckedFailureEndsTheProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        RequestExecutor executor = new RequestExecutor(new TokenBucket(1000, 1000), breaker);
+        breaker.onFailure();
+        Thread.sleep(100);
+
+        try {
+            executor.execute(new RequestExecutor.Request<String>() {
+                @Override
+                public String execute(CancellationToken token) {
+                    throw new IllegalStateException("parser bug");
+                }
+            }, null);
+            fail("the exception was not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(1, executor.getFailureCount());
+        }
+        assertTrue(breaker.isOpen());
+
+        Thread.sleep(100);
+        assertTrue(breaker.allowRequest());
+    }
+
+    private void assertRefused() throws Exception {
+        try {
+            mExecutor.execute(new RequestExecutor.Request<String>() {
+                @Override
+                public String execute(CancellationToken token) {
+                    fail("request sent while the circuit is blocked");
+                    return null;
+                }
+            }, null);
+            fail("request was not refused");
+        } catch (RequestExecutor.CircuitOpenException e) {
+            assertEquals(1, mExecutor.getRejectedCount());
+        }
+    }
+
+    /**
+     * A response that only has headers.
+     */
+    private static class QuotaResponse extends HttpURLConnection {
+        private final Map<String, String> mHeaders = new HashMap<>();
+
+        QuotaResponse(String name, String value) throws IOException {
+            super(new URL("http://localhost/search"));
+            mHeaders.put(name, value);
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return mHeaders.get(name);
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+}
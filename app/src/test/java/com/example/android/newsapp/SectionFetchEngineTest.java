@@ -0,0 +1,153 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link SectionFetchEngine} against a local {@link MockGuardianServer}: the
+ * sections that miss the first screen's budget are passed to the listener when they arrive,
+ * and every query that is not cancelled is reported once, loaded or failed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SectionFetchEngineTest {
+
+    private static final String SLOW_SECTION = "world";
+    private static final String FAILING_SECTION = "business";
+
+    private static final long SLOW_MILLIS = 1000;
+    private static final long BUDGET_MILLIS = 300;
+
+    private MockGuardianServer mServer;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() throws Exception {
+        final SyntheticGuardianDispatcher synthetic = new SyntheticGuardianDispatcher(1);
+        mServer = new MockGuardianServer(new MockGuardianServer.Dispatcher() {
+            @Override
+            public MockGuardianServer.MockResponse dispatch(String target) throws Exception {
+                String section = Uri.parse(target).getQueryParameter("section");
+                if (FAILING_SECTION.equals(section)) {
+                    return MockGuardianServer.MockResponse.status(HttpURLConnection.HTTP_NOT_FOUND);
+                }
+                MockGuardianServer.MockResponse response = synthetic.dispatch(target);
+                return SLOW_SECTION.equals(section) ? response.delay(SLOW_MILLIS) : response;
+            }
+        });
+        mServer.start();
+        GuardianQuery.setBaseUrl(mServer.url(""));
+        QueryUtils.setRequestExecutor(new RequestExecutor(new TokenBucket(1000, 1000), new CircuitBreaker(100, 1000)));
+        mListener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GuardianQuery.setBaseUrl(null);
+        QueryUtils.setRequestExecutor(null);
+        mServer.shutdown();
+    }
+
+    /**
+     * The fetch returns with the sections that arrived within the budget, and the slow one
+     * is passed to the listener once it arrives.
+     */
+    @Test
+    public void lateSectionReachesTheListener() throws Exception {
+        List<Article> articles = SectionFetchEngine.fetch(GuardianFeed.buildPageUrls(1, 5), mListener,
+                new CancellationToken(), BUDGET_MILLIS);
+
+        assertNotNull(articles);
+        assertEquals(sections("politics", "technology"), mListener.getLoaded());
+        assertEquals(sections(FAILING_SECTION), mListener.getFailed());
+
+        assertTrue("late section not delivered", mListener.awaitFinished(SLOW_MILLIS * 5));
+        assertEquals(sections("politics", "technology", SLOW_SECTION), mListener.getLoaded());
+        assertEquals(sections(FAILING_SECTION), mListener.getFailed());
+    }
+
+    /**
+     * Without a budget every query is waited for, and failures are reported too.
+     */
+    @Test
+    public void everyQueryIsReported() {
+        SectionFetchEngine.fetch(GuardianFeed.buildPageUrls(1, 5), mListener, null);
+        assertEquals(sections("politics", "technology", SLOW_SECTION), mListener.getLoaded());
+        assertEquals(sections(FAILING_SECTION), mListener.getFailed());
+    }
+
+    /**
+     * A section still running when the fetch is cancelled is not reported.
+     */
+    @Test
+    public void cancelledFetchDropsLateSections() throws Exception {
+        CancellationToken token = new CancellationToken();
+        SectionFetchEngine.fetch(GuardianFeed.buildPageUrls(1, 5), mListener, token, BUDGET_MILLIS);
+        token.cancel();
+
+        Thread.sleep(SLOW_MILLIS * 2);
+        assertEquals(sections("politics", "technology"), mListener.getLoaded());
+        assertEquals(sections(FAILING_SECTION), mListener.getFailed());
+    }
+
+    private static List<String> sections(String... sections) {
+        List<String> sorted = new ArrayList<>();
+        Collections.addAll(sorted, sections);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Records the sections of the queries reported to it, from any thread.
+     */
+    private static final class RecordingListener implements SectionFetchEngine.Listener {
+        private final List<String> mLoaded = new ArrayList<>();
+        private final List<String> mFailed = new ArrayList<>();
+        private final CountDownLatch mFinished = new CountDownLatch(4);
+
+        @Override
+        public synchronized void onQueryLoaded(String queryUrl, List<Article> articles) {
+            mLoaded.add(Uri.parse(queryUrl).getQueryParameter("section"));
+            mFinished.countDown();
+        }
+
+        @Override
+        public synchronized void onQueryFailed(String queryUrl) {
+            mFailed.add(Uri.parse(queryUrl).getQueryParameter("section"));
+            mFinished.countDown();
+        }
+
+        boolean awaitFinished(long millis) throws InterruptedException {
+            return mFinished.await(millis, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized List<String> getLoaded() {
+            List<String> loaded = new ArrayList<>(mLoaded);
+            Collections.sort(loaded);
+            return loaded;
+        }
+
+        synchronized List<String> getFailed() {
+            List<String> failed = new ArrayList<>(mFailed);
+            Collections.sort(failed);
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link SingleFlight}: a cancelled caller stops waiting at once while the
+ * shared call carries on for the others.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SingleFlightTest {
+
+    private static final String KEY = "politics";
+    private static final String RESULT = "articles";
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final SingleFlight<String, String> mFlight = new SingleFlight<>();
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * A cancelled waiter returns before the shared call finishes, and the call is not
+     * cancelled for the caller that still waits for it.
+     */
+    @Test
+    public void cancelledWaiterStopsWaiting() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CancellationToken[] callToken = new CancellationToken[1];
+        final AtomicInteger calls = new AtomicInteger();
+        Future<String> owner = mExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return mFlight.run(KEY, new CancellationToken(), new SingleFlight.Call<String>() {
+                    @Override
+                    public String call(CancellationToken token) throws Exception {
+                        calls.incrementAndGet();
+                        callToken[0] = token;
+                        started.countDown();
+                        release.await();
+                        return RESULT;
+                    }
+                });
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        final CancellationToken waiterToken = new CancellationToken();
+        Future<String> waiter = mExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return mFlight.run(KEY, waiterToken, new SingleFlight.Call<String>() {
+                    @Override
+                    public String call(CancellationToken token) {
+                        calls.incrementAndGet();
+                        return RESULT;
+                    }
+                });
+            }
+        });
+        waiterToken.cancel();
+        try {
+            waiter.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("the cancelled waiter returned a result");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+        assertFalse(owner.isDone());
+        assertFalse(callToken[0].isCanceled());
+
+        release.countDown();
+        assertEquals(RESULT, owner.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        mExecutor.shutdown();
+    }
+}
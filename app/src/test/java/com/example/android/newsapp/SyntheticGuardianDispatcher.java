@@ -0,0 +1,161 @@
+package com.example.android.newsapp;
+
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers Guardian search requests on a {@link MockGuardianServer} with synthetic result sets
+ * of the requested page size, and injects faults at configurable rates: latency, limited
+ * bandwidth, bodies cut off part way through, and 429 and 5xx responses. Faults are drawn
+ * from a seeded random sequence, so a run can be repeated exactly.
+ */
+final class SyntheticGuardianDispatcher implements MockGuardianServer.Dispatcher {
+
+    private final Random mRandom;
+
+    /**
+     * Synthetic bodies by result count, built once per size
+     **/
+    private final Map<Integer, byte[]> mBodies = new HashMap<>();
+
+    private long mMinLatencyMillis;
+    private long mMaxLatencyMillis;
+    private double mThrottleRate;
+    private int mBytesPerSecond;
+    private double mTruncateRate;
+    private double mErrorRate;
+    private int[] mErrorCodes = {429, 500, 503};
+
+    private final AtomicInteger mResponseCount = new AtomicInteger();
+    private final AtomicInteger mErrorCount = new AtomicInteger();
+    private final AtomicInteger mTruncatedCount = new AtomicInteger();
+    private final AtomicInteger mThrottledCount = new AtomicInteger();
+
+    SyntheticGuardianDispatcher(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Delays every response by a random time between the two, in milliseconds.
+     */
+    SyntheticGuardianDispatcher latency(long minMillis, long maxMillis) {
+        mMinLatencyMillis = minMillis;
+        mMaxLatencyMillis = maxMillis;
+        return this;
+    }
+
+    /**
+     * Sends the given fraction of the bodies at a limited rate.
+     */
+    SyntheticGuardianDispatcher throttle(double rate, int bytesPerSecond) {
+        mThrottleRate = rate;
+        mBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Cuts off the given fraction of the bodies at a random point and closes the connection.
+     */
+    SyntheticGuardianDispatcher truncate(double rate) {
+        mTruncateRate = rate;
+        return this;
+    }
+
+    /**
+     * Answers the given fraction of the requests with one of the status codes.
+     */
+    SyntheticGuardianDispatcher errors(double rate, int... codes) {
+        mErrorRate = rate;
+        mErrorCodes = codes;
+        return this;
+    }
+
+    @Override
+    public MockGuardianServer.MockResponse dispatch(String target) throws Exception {
+        mResponseCount.incrementAndGet();
+
+        // Draw every fault of the response at once, so the sequence does not depend on
+        // which faults are switched on.
+        double error;
+        double truncate;
+        double throttle;
+        long latency;
+        int errorCode;
+        int truncateAt;
+        synchronized (mRandom) {
+            error = mRandom.nextDouble();
+            truncate = mRandom.nextDouble();
+            throttle = mRandom.nextDouble();
+            latency = mMinLatencyMillis + (long) (mRandom.nextDouble() * (mMaxLatencyMillis - mMinLatencyMillis));
+            errorCode = mErrorCodes[mRandom.nextInt(mErrorCodes.length)];
+            truncateAt = mRandom.nextInt(Integer.MAX_VALUE);
+        }
+
+        MockGuardianServer.MockResponse response;
+        if (error < mErrorRate) {
+            mErrorCount.incrementAndGet();
+            response = MockGuardianServer.MockResponse.status(errorCode);
+            if (errorCode == 429) {
+                response.headers.put("Retry-After", "1");
+            }
+        } else {
+            byte[] body = body(pageSize(target));
+            response = MockGuardianServer.MockResponse.ok(body);
+            if (truncate < mTruncateRate) {
+                mTruncatedCount.incrementAndGet();
+                response.truncate(truncateAt % body.length);
+            }
+            if (throttle < mThrottleRate) {
+                mThrottledCount.incrementAndGet();
+                response.throttle(mBytesPerSecond);
+            }
+        }
+        return response.delay(latency);
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     */
+    int getResponseCount() {
+        return mResponseCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with an error status so far.
+     */
+    int getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    /**
+     * Returns the number of bodies cut off so far.
+     */
+    int getTruncatedCount() {
+        return mTruncatedCount.get();
+    }
+
+    /**
+     * Returns the number of bodies sent at a limited rate so far.
+     */
+    int getThrottledCount() {
+        return mThrottledCount.get();
+    }
+
+    private synchronized byte[] body(int resultCount) throws Exception {
+        byte[] body = mBodies.get(resultCount);
+        if (body == null) {
+            body = GuardianFixtures.searchBytes(resultCount);
+            mBodies.put(resultCount, body);
+        }
+        return body;
+    }
+
+    private static int pageSize(String target) {
+        String pageSize = Uri.parse(target).getQueryParameter("page-size");
+        return pageSize == null ? 10 : Integer.parseInt(pageSize);
+    }
+}